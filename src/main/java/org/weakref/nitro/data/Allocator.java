@@ -15,6 +15,7 @@ package org.weakref.nitro.data;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 // TODO: support hierarchical contexts
@@ -69,9 +70,37 @@ public class Allocator
         return vector;
     }
 
+    public void free(Context context, Vector vector)
+    {
+        recordAllocation(context, -vector.length());
+    }
+
+    public long allocatedBytes(Context context)
+    {
+        Stats contextStats = stats.get(context);
+        return contextStats == null ? 0 : contextStats.current();
+    }
+
+    /**
+     * @return whether the memory currently allocated in the context is above the context's budget
+     */
+    public boolean exceedsBudget(Context context)
+    {
+        return allocatedBytes(context) > context.budget();
+    }
+
+    /**
+     * Accounts for memory held outside of vectors, such as the arrays of a hash table. A negative
+     * number of bytes accounts for memory that is no longer held.
+     */
+    public void recordBytes(Context context, long bytes)
+    {
+        stats.computeIfAbsent(context, _ -> new Stats()).record(bytes);
+    }
+
     private void recordAllocation(Context context, int size)
     {
-        stats.computeIfAbsent(context, _ -> new Stats()).record(size * Long.BYTES);
+        recordBytes(context, (long) size * Long.BYTES);
     }
 
     @Override
@@ -128,5 +157,26 @@ public class Allocator
         }
     }
 
-    public record Context(String name) {}
+    /**
+     * Allocations are accounted per context. Contexts that are equal share their accounting,
+     * so a context with a budget should be specific to the operator instance that uses it
+     * (see {@link #unique}).
+     */
+    public record Context(String name, long budget)
+    {
+        private static final AtomicLong INSTANCES = new AtomicLong();
+
+        public Context(String name)
+        {
+            this(name, Long.MAX_VALUE);
+        }
+
+        /**
+         * @return a context that is not equal to any other, with a name derived from the given one
+         */
+        public static Context unique(String name, long budget)
+        {
+            return new Context(name + "#" + INSTANCES.incrementAndGet(), budget);
+        }
+    }
 }
@@ -0,0 +1,173 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.data;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Growable columnar storage for rows copied out of operator batches, which are only
+ * valid until the next call to next().
+ */
+public class ColumnarBuffer
+{
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Allocator allocator;
+    private final Allocator.Context context;
+    private final Vector[] columns;
+    private final VectorType[] declaredTypes;
+    private int rowCount;
+
+    public ColumnarBuffer(Allocator allocator, Allocator.Context context, int columnCount)
+    {
+        this.allocator = allocator;
+        this.context = context;
+        this.columns = new Vector[columnCount];
+        this.declaredTypes = new VectorType[columnCount];
+    }
+
+    /**
+     * @param types the types of the columns, which are known even before any rows are appended
+     */
+    public ColumnarBuffer(Allocator allocator, Allocator.Context context, List<VectorType> types)
+    {
+        this.allocator = allocator;
+        this.context = context;
+        this.columns = new Vector[types.size()];
+        this.declaredTypes = types.toArray(VectorType[]::new);
+    }
+
+    public void append(Vector[] columns, Mask mask)
+    {
+        checkArgument(columns.length == this.columns.length, "Expected %s columns, but got %s", this.columns.length, columns.length);
+        if (mask.none()) {
+            return;
+        }
+
+        int required = rowCount + mask.count();
+        for (int i = 0; i < columns.length; i++) {
+            checkArgument(
+                    declaredTypes[i] == null || declaredTypes[i] == VectorType.of(columns[i]),
+                    "Column %s is declared as %s, but got %s", i, declaredTypes[i], VectorType.of(columns[i]));
+            ensureCapacity(i, required, VectorType.of(columns[i]));
+            Vectors.copy(columns[i], mask, this.columns[i], rowCount);
+        }
+
+        rowCount = required;
+    }
+
+    /**
+     * Appends a row with a null in every column.
+     */
+    public void appendNull()
+    {
+        for (int i = 0; i < columns.length; i++) {
+            ensureCapacity(i, rowCount + 1, type(i));
+            Vectors.nulls(columns[i])[rowCount] = true;
+        }
+
+        rowCount++;
+    }
+
+    private void ensureCapacity(int column, int required, VectorType type)
+    {
+        Vector vector = columns[column];
+        if (vector == null || vector.length() < required) {
+            int capacity = Math.max(required, vector == null ? INITIAL_CAPACITY : vector.length() * 2);
+            columns[column] = allocator.allocateOrGrow(context, vector, capacity, type::allocate);
+        }
+    }
+
+    /**
+     * Rearranges the rows, so that row i ends up holding what was previously in row order[i].
+     */
+    public void reorder(int[] order)
+    {
+        select(order, rowCount);
+    }
+
+    /**
+     * Keeps only the given rows, in the given order.
+     */
+    public void select(int[] rows, int count)
+    {
+        checkArgument(count <= rowCount && rows.length >= count, "Invalid row count: %s", count);
+        for (int i = 0; i < columns.length; i++) {
+            Vector column = columns[i];
+            if (column == null) {
+                continue;
+            }
+
+            Vector selected = allocator.allocate(context, column.length(), VectorType.of(column)::allocate);
+            Vectors.gather(column, rows, count, selected);
+            allocator.free(context, column);
+            columns[i] = selected;
+        }
+
+        rowCount = count;
+    }
+
+    /**
+     * Discards all rows, keeping the storage for reuse.
+     */
+    public void reset()
+    {
+        rowCount = 0;
+    }
+
+    /**
+     * Discards all rows and frees the storage.
+     */
+    public void release()
+    {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] != null) {
+                allocator.free(context, columns[i]);
+                columns[i] = null;
+            }
+        }
+        rowCount = 0;
+    }
+
+    public int columnCount()
+    {
+        return columns.length;
+    }
+
+    public int rowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * @return the column, or null if no rows have been appended yet
+     */
+    public Vector column(int column)
+    {
+        return columns[column];
+    }
+
+    /**
+     * @return the type of the column. A column without rows or a declared type is reported as I64.
+     */
+    public VectorType type(int column)
+    {
+        if (columns[column] != null) {
+            return VectorType.of(columns[column]);
+        }
+        return declaredTypes[column] == null ? VectorType.I64 : declaredTypes[column];
+    }
+}
@@ -52,7 +52,8 @@ public class Mask
 
     public static Mask sparse(int[] positions, int count)
     {
-        return new Mask(positions, count, count == positions.length);
+        // positions are strictly increasing, so they cover [0, count) iff the last one is count - 1
+        return new Mask(positions, count, count == 0 || positions[count - 1] == count - 1);
     }
 
     public boolean all()
@@ -60,8 +61,14 @@ public class Mask
         return all;
     }
 
+    /**
+     * @return the largest active position, or -1 if the mask is empty
+     */
     public int maxPosition()
     {
+        if (count == 0) {
+            return -1;
+        }
         return positions[count - 1];
     }
 
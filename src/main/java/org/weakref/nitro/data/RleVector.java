@@ -17,24 +17,59 @@ import java.util.Arrays;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+/**
+ * A vector where the value at position i of the underlying values vector is repeated counts[i] times.
+ */
 public class RleVector
         implements Vector
 {
     private final int length;
     private final int[] counts;
+    private final Vector values;
 
     public RleVector(int[] counts, Vector values)
     {
         checkArgument(counts.length == values.length(), "Run lengths counts (%s) must match the length of the underlying values vector (%s)", counts.length, values.length());
         this.counts = counts;
+        this.values = values;
 
         length = Arrays.stream(counts).sum();
     }
 
+    /**
+     * @return a vector with the value at the given position of the source repeated length times
+     */
+    public static RleVector constant(Vector source, int position, int length)
+    {
+        if (source instanceof RleVector rle) {
+            // repeat the value of the run that covers the position, rather than flattening the source
+            int run = 0;
+            while (position >= rle.counts[run]) {
+                position -= rle.counts[run];
+                run++;
+            }
+            return constant(rle.values, run, length);
+        }
+
+        Vector value = VectorType.of(source).allocate(1);
+        Vectors.copy(source, Mask.range(position, 1), value, 0);
+        return new RleVector(new int[] {length}, value);
+    }
+
+    public int[] counts()
+    {
+        return counts;
+    }
+
+    public Vector values()
+    {
+        return values;
+    }
+
     @Override
     public Vector copy(int size)
     {
-        throw new UnsupportedOperationException("not yet implemented");
+        return Vectors.flatten(this).copy(size);
     }
 
     @Override
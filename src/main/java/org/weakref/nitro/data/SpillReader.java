@@ -0,0 +1,145 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Reads back the blocks written by {@link SpillWriter}, one at a time. The columns of a block are
+ * valid until the next call to {@link #next()}.
+ */
+public class SpillReader
+        implements Closeable
+{
+    private final FileChannel channel;
+    private final Vector[] columns;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(0).order(ByteOrder.nativeOrder());
+    private final ByteBuffer header = ByteBuffer.allocateDirect(Integer.BYTES).order(ByteOrder.nativeOrder());
+    private int rowCount;
+
+    public SpillReader(Path path, int columnCount)
+    {
+        try {
+            channel = FileChannel.open(path, READ);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        columns = new Vector[columnCount];
+    }
+
+    /**
+     * Reads the next block
+     *
+     * @return false if there are no more blocks
+     */
+    public boolean next()
+    {
+        header.clear();
+        if (!read(header)) {
+            rowCount = 0;
+            return false;
+        }
+        int size = header.flip().getInt();
+
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+        }
+        buffer.clear().limit(size);
+        checkState(read(buffer), "Truncated spill file");
+        buffer.flip();
+
+        rowCount = buffer.getInt();
+        for (int i = 0; i < columns.length; i++) {
+            VectorType type = VectorType.values()[buffer.get()];
+            if (columns[i] == null || columns[i].length() < rowCount || VectorType.of(columns[i]) != type) {
+                columns[i] = type.allocate(rowCount);
+            }
+            Vector column = columns[i];
+
+            boolean[] nulls = Vectors.nulls(column);
+            if (buffer.get() == 1) {
+                for (int row = 0; row < rowCount; row += 8) {
+                    int bits = buffer.get();
+                    for (int j = 0; j < 8 && row + j < rowCount; j++) {
+                        nulls[row + j] = (bits & (1 << j)) != 0;
+                    }
+                }
+            }
+            else {
+                Arrays.fill(nulls, 0, rowCount, false);
+            }
+
+            int start = buffer.position();
+            switch (column) {
+                case I32Vector v -> buffer.asIntBuffer().get(v.values(), 0, rowCount);
+                case I64Vector v -> buffer.asLongBuffer().get(v.values(), 0, rowCount);
+                case F64Vector v -> buffer.asDoubleBuffer().get(v.values(), 0, rowCount);
+                default -> throw new IllegalStateException("Unexpected vector: " + column.getClass().getSimpleName());
+            }
+            buffer.position(start + rowCount * SpillWriter.width(type));
+        }
+        return true;
+    }
+
+    public int rowCount()
+    {
+        return rowCount;
+    }
+
+    public Vector column(int column)
+    {
+        return columns[column];
+    }
+
+    /**
+     * @return false if the file ended before the first byte
+     */
+    private boolean read(ByteBuffer target)
+    {
+        try {
+            while (target.hasRemaining()) {
+                if (channel.read(target) < 0) {
+                    checkState(target.position() == 0, "Truncated spill file");
+                    return false;
+                }
+            }
+            return true;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
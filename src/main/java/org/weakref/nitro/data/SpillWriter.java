@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Writes batches of rows to a local file in a compact columnar format, to be read back with
+ * {@link SpillReader}. Spill files are transient, so values are written in native byte order.
+ * <p>
+ * Each block is laid out as:
+ * <pre>
+ *   int    size of the rest of the block, in bytes
+ *   int    row count
+ *   for each column:
+ *     byte   vector type
+ *     byte   1 if the column has nulls
+ *     bytes  null flags, one bit per row, only present if the column has nulls
+ *     bytes  values, packed
+ * </pre>
+ */
+public class SpillWriter
+        implements Closeable
+{
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(0).order(ByteOrder.nativeOrder());
+
+    public SpillWriter(Path path)
+    {
+        try {
+            channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the rows at positions [0, count) of the given columns as one block
+     */
+    public void write(Vector[] columns, int count)
+    {
+        Vector[] flat = new Vector[columns.length];
+        boolean[] hasNulls = new boolean[columns.length];
+        int size = Integer.BYTES;
+        for (int i = 0; i < columns.length; i++) {
+            flat[i] = Vectors.flatten(columns[i]);
+            boolean[] nulls = Vectors.nulls(flat[i]);
+            for (int row = 0; row < count && !hasNulls[i]; row++) {
+                hasNulls[i] = nulls[row];
+            }
+            size += 2 + (hasNulls[i] ? (count + 7) / 8 : 0) + count * width(VectorType.of(flat[i]));
+        }
+
+        if (buffer.capacity() < Integer.BYTES + size) {
+            buffer = ByteBuffer.allocateDirect(Integer.BYTES + size).order(ByteOrder.nativeOrder());
+        }
+        buffer.clear();
+        buffer.putInt(size);
+        buffer.putInt(count);
+
+        for (int i = 0; i < flat.length; i++) {
+            Vector column = flat[i];
+            buffer.put((byte) VectorType.of(column).ordinal());
+            buffer.put((byte) (hasNulls[i] ? 1 : 0));
+            if (hasNulls[i]) {
+                writeNulls(Vectors.nulls(column), count);
+            }
+
+            int start = buffer.position();
+            switch (column) {
+                case I32Vector v -> buffer.asIntBuffer().put(v.values(), 0, count);
+                case I64Vector v -> buffer.asLongBuffer().put(v.values(), 0, count);
+                case F64Vector v -> buffer.asDoubleBuffer().put(v.values(), 0, count);
+                default -> throw new IllegalArgumentException("Unsupported vector: " + column.getClass().getSimpleName());
+            }
+            buffer.position(start + count * width(VectorType.of(column)));
+        }
+
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeNulls(boolean[] nulls, int count)
+    {
+        for (int i = 0; i < count; i += 8) {
+            int bits = 0;
+            for (int j = 0; j < 8 && i + j < count; j++) {
+                bits |= (nulls[i + j] ? 1 : 0) << j;
+            }
+            buffer.put((byte) bits);
+        }
+    }
+
+    static int width(VectorType type)
+    {
+        return switch (type) {
+            case I32 -> Integer.BYTES;
+            case I64 -> Long.BYTES;
+            case F64 -> Double.BYTES;
+        };
+    }
+
+    @Override
+    public void close()
+    {
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.data;
+
+import static java.util.Locale.ENGLISH;
+
+public enum VectorType
+{
+    I32,
+    I64,
+    F64;
+
+    public Vector allocate(int size)
+    {
+        return switch (this) {
+            case I32 -> new I32Vector(size);
+            case I64 -> new I64Vector(size);
+            case F64 -> new F64Vector(size);
+        };
+    }
+
+    public static VectorType of(Vector vector)
+    {
+        return switch (vector) {
+            case I32Vector _ -> I32;
+            case I64Vector _ -> I64;
+            case F64Vector _ -> F64;
+            case RleVector v -> of(v.values());
+            default -> throw new IllegalArgumentException("Unsupported vector: " + vector.getClass().getSimpleName());
+        };
+    }
+
+    @Override
+    public String toString()
+    {
+        return name().toLowerCase(ENGLISH);
+    }
+}
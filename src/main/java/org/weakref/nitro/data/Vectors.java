@@ -0,0 +1,492 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.data;
+
+import java.util.Arrays;
+
+/**
+ * Type-dispatched operations over vectors. Each operation dispatches on the vector type once
+ * and then runs a loop specialized for the underlying primitive array.
+ * <p>
+ * Run-length encoded vectors are flattened before they are processed, except for a single run,
+ * which copy, gather, hash and sortKeys handle directly by repeating the value of the run.
+ */
+public final class Vectors
+{
+    private static final long NULL_HASH = 0;
+
+    private Vectors() {}
+
+    public static boolean[] nulls(Vector vector)
+    {
+        return switch (vector) {
+            case I32Vector v -> v.nulls();
+            case I64Vector v -> v.nulls();
+            case F64Vector v -> v.nulls();
+            default -> throw unsupported(vector);
+        };
+    }
+
+    /**
+     * @return the vector itself, or a flat copy of it if it's run-length encoded. Operators that
+     * flatten the columns of each batch should reuse a buffer instead (see {@link #flatten(RleVector, Vector)}).
+     */
+    public static Vector flatten(Vector vector)
+    {
+        if (!(vector instanceof RleVector rle)) {
+            return vector;
+        }
+
+        Vector result = VectorType.of(rle.values()).allocate(rle.length());
+        flatten(rle, result);
+        return result;
+    }
+
+    /**
+     * Writes the values of the run-length encoded vector to positions [0, vector.length()) of the target
+     */
+    public static void flatten(RleVector vector, Vector target)
+    {
+        int[] counts = vector.counts();
+        int offset = 0;
+        for (int run = 0; run < counts.length; run++) {
+            fill(vector.values(), run, target, offset, offset + counts[run]);
+            offset += counts[run];
+        }
+    }
+
+    /**
+     * @return the vector holding the single value of a run-length encoded vector with a single run, or null
+     */
+    private static Vector constantValue(Vector vector)
+    {
+        if (vector instanceof RleVector rle && rle.counts().length == 1) {
+            return rle.values();
+        }
+        return null;
+    }
+
+    /**
+     * Sets positions [from, to) of the target to the value at the given position of the source
+     */
+    private static void fill(Vector source, int position, Vector target, int from, int to)
+    {
+        Arrays.fill(nulls(target), from, to, nulls(source)[position]);
+        switch (source) {
+            case I32Vector v -> Arrays.fill(((I32Vector) target).values(), from, to, v.values()[position]);
+            case I64Vector v -> Arrays.fill(((I64Vector) target).values(), from, to, v.values()[position]);
+            case F64Vector v -> Arrays.fill(((F64Vector) target).values(), from, to, v.values()[position]);
+            default -> throw unsupported(source);
+        }
+    }
+
+    /**
+     * Copies the active positions of the source into consecutive positions of the target, starting at targetOffset
+     */
+    public static void copy(Vector source, Mask mask, Vector target, int targetOffset)
+    {
+        Vector constant = constantValue(source);
+        if (constant != null) {
+            fill(constant, 0, target, targetOffset, targetOffset + mask.count());
+            return;
+        }
+
+        source = flatten(source);
+        if (mask.all()) {
+            System.arraycopy(nulls(source), 0, nulls(target), targetOffset, mask.count());
+            switch (source) {
+                case I32Vector v -> System.arraycopy(v.values(), 0, ((I32Vector) target).values(), targetOffset, mask.count());
+                case I64Vector v -> System.arraycopy(v.values(), 0, ((I64Vector) target).values(), targetOffset, mask.count());
+                case F64Vector v -> System.arraycopy(v.values(), 0, ((F64Vector) target).values(), targetOffset, mask.count());
+                default -> throw unsupported(source);
+            }
+            return;
+        }
+
+        boolean[] sourceNulls = nulls(source);
+        boolean[] targetNulls = nulls(target);
+        for (int i = 0; i < mask.count(); i++) {
+            targetNulls[targetOffset + i] = sourceNulls[mask.position(i)];
+        }
+
+        switch (source) {
+            case I32Vector v -> {
+                int[] sourceValues = v.values();
+                int[] targetValues = ((I32Vector) target).values();
+                for (int i = 0; i < mask.count(); i++) {
+                    targetValues[targetOffset + i] = sourceValues[mask.position(i)];
+                }
+            }
+            case I64Vector v -> {
+                long[] sourceValues = v.values();
+                long[] targetValues = ((I64Vector) target).values();
+                for (int i = 0; i < mask.count(); i++) {
+                    targetValues[targetOffset + i] = sourceValues[mask.position(i)];
+                }
+            }
+            case F64Vector v -> {
+                double[] sourceValues = v.values();
+                double[] targetValues = ((F64Vector) target).values();
+                for (int i = 0; i < mask.count(); i++) {
+                    targetValues[targetOffset + i] = sourceValues[mask.position(i)];
+                }
+            }
+            default -> throw unsupported(source);
+        }
+    }
+
+    /**
+     * Sets target[i] = source[positions[i]] for i in [0, count)
+     */
+    public static void gather(Vector source, int[] positions, int count, Vector target)
+    {
+        Vector constant = constantValue(source);
+        if (constant != null) {
+            fill(constant, 0, target, 0, count);
+            return;
+        }
+
+        source = flatten(source);
+        boolean[] sourceNulls = nulls(source);
+        boolean[] targetNulls = nulls(target);
+        for (int i = 0; i < count; i++) {
+            targetNulls[i] = sourceNulls[positions[i]];
+        }
+
+        switch (source) {
+            case I32Vector v -> {
+                int[] sourceValues = v.values();
+                int[] targetValues = ((I32Vector) target).values();
+                for (int i = 0; i < count; i++) {
+                    targetValues[i] = sourceValues[positions[i]];
+                }
+            }
+            case I64Vector v -> {
+                long[] sourceValues = v.values();
+                long[] targetValues = ((I64Vector) target).values();
+                for (int i = 0; i < count; i++) {
+                    targetValues[i] = sourceValues[positions[i]];
+                }
+            }
+            case F64Vector v -> {
+                double[] sourceValues = v.values();
+                double[] targetValues = ((F64Vector) target).values();
+                for (int i = 0; i < count; i++) {
+                    targetValues[i] = sourceValues[positions[i]];
+                }
+            }
+            default -> throw unsupported(source);
+        }
+    }
+
+    /**
+     * Sets target[i] = sources[sourceIndexes[i]][positions[i]] for i in [0, count). All the sources must have the same type.
+     */
+    public static void gather(Vector[] sources, int[] sourceIndexes, int[] positions, int count, Vector target)
+    {
+        Vector[] flat = new Vector[sources.length];
+        boolean[][] sourceNulls = new boolean[sources.length][];
+        for (int i = 0; i < sources.length; i++) {
+            flat[i] = flatten(sources[i]);
+            sourceNulls[i] = nulls(flat[i]);
+        }
+
+        boolean[] targetNulls = nulls(target);
+        for (int i = 0; i < count; i++) {
+            targetNulls[i] = sourceNulls[sourceIndexes[i]][positions[i]];
+        }
+
+        switch (target) {
+            case I32Vector t -> {
+                int[][] sourceValues = new int[sources.length][];
+                for (int i = 0; i < sources.length; i++) {
+                    sourceValues[i] = ((I32Vector) flat[i]).values();
+                }
+                int[] targetValues = t.values();
+                for (int i = 0; i < count; i++) {
+                    targetValues[i] = sourceValues[sourceIndexes[i]][positions[i]];
+                }
+            }
+            case I64Vector t -> {
+                long[][] sourceValues = new long[sources.length][];
+                for (int i = 0; i < sources.length; i++) {
+                    sourceValues[i] = ((I64Vector) flat[i]).values();
+                }
+                long[] targetValues = t.values();
+                for (int i = 0; i < count; i++) {
+                    targetValues[i] = sourceValues[sourceIndexes[i]][positions[i]];
+                }
+            }
+            case F64Vector t -> {
+                double[][] sourceValues = new double[sources.length][];
+                for (int i = 0; i < sources.length; i++) {
+                    sourceValues[i] = ((F64Vector) flat[i]).values();
+                }
+                double[] targetValues = t.values();
+                for (int i = 0; i < count; i++) {
+                    targetValues[i] = sourceValues[sourceIndexes[i]][positions[i]];
+                }
+            }
+            default -> throw unsupported(target);
+        }
+    }
+
+    /**
+     * Hashes the values at the active positions into hashes[position]. If combine is true, the
+     * hash is mixed into the existing value, which allows hashing multiple columns one at a time.
+     * Nulls hash to a fixed value.
+     */
+    public static void hash(Vector vector, Mask mask, long[] hashes, boolean combine)
+    {
+        Vector constant = constantValue(vector);
+        if (constant != null) {
+            long hash = nulls(constant)[0] ? NULL_HASH : switch (constant) {
+                case I32Vector v -> hash(v.values()[0]);
+                case I64Vector v -> hash(v.values()[0]);
+                case F64Vector v -> hash(v.values()[0]);
+                default -> throw unsupported(constant);
+            };
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                hashes[position] = combine ? combineHash(hashes[position], hash) : hash;
+            }
+            return;
+        }
+
+        vector = flatten(vector);
+        boolean[] nulls = nulls(vector);
+        switch (vector) {
+            case I32Vector v -> {
+                int[] values = v.values();
+                for (int i = 0; i < mask.count(); i++) {
+                    int position = mask.position(i);
+                    long hash = nulls[position] ? NULL_HASH : hash(values[position]);
+                    hashes[position] = combine ? combineHash(hashes[position], hash) : hash;
+                }
+            }
+            case I64Vector v -> {
+                long[] values = v.values();
+                for (int i = 0; i < mask.count(); i++) {
+                    int position = mask.position(i);
+                    long hash = nulls[position] ? NULL_HASH : hash(values[position]);
+                    hashes[position] = combine ? combineHash(hashes[position], hash) : hash;
+                }
+            }
+            case F64Vector v -> {
+                double[] values = v.values();
+                for (int i = 0; i < mask.count(); i++) {
+                    int position = mask.position(i);
+                    long hash = nulls[position] ? NULL_HASH : hash(values[position]);
+                    hashes[position] = combine ? combineHash(hashes[position], hash) : hash;
+                }
+            }
+            default -> throw unsupported(vector);
+        }
+    }
+
+    /**
+     * Encodes the values at the active positions as longs that compare (as signed longs) in the
+     * same order as the values. Equal values get equal keys, including -0.0 and 0.0. Positions that
+     * are null get an arbitrary key.
+     */
+    public static void sortKeys(Vector vector, Mask mask, long[] keys)
+    {
+        Vector constant = constantValue(vector);
+        if (constant != null) {
+            long key = switch (constant) {
+                case I32Vector v -> v.values()[0];
+                case I64Vector v -> v.values()[0];
+                case F64Vector v -> sortKey(v.values()[0]);
+                default -> throw unsupported(constant);
+            };
+            for (int i = 0; i < mask.count(); i++) {
+                keys[mask.position(i)] = key;
+            }
+            return;
+        }
+
+        vector = flatten(vector);
+        switch (vector) {
+            case I32Vector v -> {
+                int[] values = v.values();
+                for (int i = 0; i < mask.count(); i++) {
+                    int position = mask.position(i);
+                    keys[position] = values[position];
+                }
+            }
+            case I64Vector v -> {
+                long[] values = v.values();
+                for (int i = 0; i < mask.count(); i++) {
+                    int position = mask.position(i);
+                    keys[position] = values[position];
+                }
+            }
+            case F64Vector v -> {
+                double[] values = v.values();
+                for (int i = 0; i < mask.count(); i++) {
+                    int position = mask.position(i);
+                    keys[position] = sortKey(values[position]);
+                }
+            }
+            default -> throw unsupported(vector);
+        }
+    }
+
+    public static long sortKey(double value)
+    {
+        // adding 0.0 turns -0.0 into 0.0. Flipping all but the sign bit of negative values makes them order like integers.
+        long bits = Double.doubleToLongBits(value + 0.0);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    public static long hash(long value)
+    {
+        // finalizer from MurmurHash3
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    public static long hash(double value)
+    {
+        // +0.0 and -0.0 are equal, so they must hash the same
+        return hash(value == 0 ? 0 : Double.doubleToLongBits(value));
+    }
+
+    public static long combineHash(long previous, long hash)
+    {
+        return previous * 31 + hash;
+    }
+
+    /**
+     * Compares non-null values at the given positions. Nulls are not considered equal to anything.
+     */
+    public static boolean equal(Vector left, int leftPosition, Vector right, int rightPosition)
+    {
+        if (nulls(left)[leftPosition] || nulls(right)[rightPosition]) {
+            return false;
+        }
+
+        return switch (left) {
+            case I32Vector v -> v.values()[leftPosition] == ((I32Vector) right).values()[rightPosition];
+            case I64Vector v -> v.values()[leftPosition] == ((I64Vector) right).values()[rightPosition];
+            case F64Vector v -> v.values()[leftPosition] == ((F64Vector) right).values()[rightPosition];
+            default -> throw unsupported(left);
+        };
+    }
+
+    /**
+     * Batch version of {@link #equal(Vector, int, Vector, int)}. Clears result[i] if
+     * left[leftPositions[i]] is not equal to right[rightPositions[i]], for i in [0, count).
+     */
+    public static void equal(Vector left, int[] leftPositions, Vector right, int[] rightPositions, int count, boolean[] result)
+    {
+        left = flatten(left);
+        right = flatten(right);
+        boolean[] leftNulls = nulls(left);
+        boolean[] rightNulls = nulls(right);
+        switch (left) {
+            case I32Vector v -> {
+                int[] leftValues = v.values();
+                int[] rightValues = ((I32Vector) right).values();
+                for (int i = 0; i < count; i++) {
+                    result[i] &= leftValues[leftPositions[i]] == rightValues[rightPositions[i]];
+                }
+            }
+            case I64Vector v -> {
+                long[] leftValues = v.values();
+                long[] rightValues = ((I64Vector) right).values();
+                for (int i = 0; i < count; i++) {
+                    result[i] &= leftValues[leftPositions[i]] == rightValues[rightPositions[i]];
+                }
+            }
+            case F64Vector v -> {
+                double[] leftValues = v.values();
+                double[] rightValues = ((F64Vector) right).values();
+                for (int i = 0; i < count; i++) {
+                    result[i] &= leftValues[leftPositions[i]] == rightValues[rightPositions[i]];
+                }
+            }
+            default -> throw unsupported(left);
+        }
+
+        for (int i = 0; i < count; i++) {
+            result[i] &= !leftNulls[leftPositions[i]] & !rightNulls[rightPositions[i]];
+        }
+    }
+
+    /**
+     * Like {@link #equal(Vector, int, Vector, int)}, but two nulls are considered equal, as in
+     * IS NOT DISTINCT FROM.
+     */
+    public static boolean notDistinct(Vector left, int leftPosition, Vector right, int rightPosition)
+    {
+        boolean leftNull = nulls(left)[leftPosition];
+        boolean rightNull = nulls(right)[rightPosition];
+        if (leftNull || rightNull) {
+            return leftNull == rightNull;
+        }
+        return equal(left, leftPosition, right, rightPosition);
+    }
+
+    /**
+     * Batch version of {@link #notDistinct(Vector, int, Vector, int)}. Clears result[i] if
+     * left[leftPositions[i]] is distinct from right[rightPositions[i]], for i in [0, count).
+     */
+    public static void notDistinct(Vector left, int[] leftPositions, Vector right, int[] rightPositions, int count, boolean[] result)
+    {
+        left = flatten(left);
+        right = flatten(right);
+        boolean[] leftNulls = nulls(left);
+        boolean[] rightNulls = nulls(right);
+        switch (left) {
+            case I32Vector v -> {
+                int[] leftValues = v.values();
+                int[] rightValues = ((I32Vector) right).values();
+                for (int i = 0; i < count; i++) {
+                    boolean leftNull = leftNulls[leftPositions[i]];
+                    boolean rightNull = rightNulls[rightPositions[i]];
+                    result[i] &= leftNull == rightNull & (leftNull | leftValues[leftPositions[i]] == rightValues[rightPositions[i]]);
+                }
+            }
+            case I64Vector v -> {
+                long[] leftValues = v.values();
+                long[] rightValues = ((I64Vector) right).values();
+                for (int i = 0; i < count; i++) {
+                    boolean leftNull = leftNulls[leftPositions[i]];
+                    boolean rightNull = rightNulls[rightPositions[i]];
+                    result[i] &= leftNull == rightNull & (leftNull | leftValues[leftPositions[i]] == rightValues[rightPositions[i]]);
+                }
+            }
+            case F64Vector v -> {
+                double[] leftValues = v.values();
+                double[] rightValues = ((F64Vector) right).values();
+                for (int i = 0; i < count; i++) {
+                    boolean leftNull = leftNulls[leftPositions[i]];
+                    boolean rightNull = rightNulls[rightPositions[i]];
+                    result[i] &= leftNull == rightNull & (leftNull | leftValues[leftPositions[i]] == rightValues[rightPositions[i]]);
+                }
+            }
+            default -> throw unsupported(left);
+        }
+    }
+
+    private static IllegalArgumentException unsupported(Vector vector)
+    {
+        return new IllegalArgumentException("Unsupported vector: " + vector.getClass().getSimpleName());
+    }
+}
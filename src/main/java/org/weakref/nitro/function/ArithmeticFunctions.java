@@ -0,0 +1,502 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.function;
+
+import org.weakref.nitro.data.F64Vector;
+import org.weakref.nitro.data.I32Vector;
+import org.weakref.nitro.data.I64Vector;
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.Vector;
+
+import java.util.List;
+
+import static org.weakref.nitro.data.VectorType.F64;
+import static org.weakref.nitro.data.VectorType.I32;
+import static org.weakref.nitro.data.VectorType.I64;
+
+final class ArithmeticFunctions
+{
+    private ArithmeticFunctions() {}
+
+    static void register(FunctionRegistry registry)
+    {
+        registry.register("add", List.of(I32, I32), I32, ArithmeticFunctions::addI32);
+        registry.register("subtract", List.of(I32, I32), I32, ArithmeticFunctions::subtractI32);
+        registry.register("multiply", List.of(I32, I32), I32, ArithmeticFunctions::multiplyI32);
+        registry.register("divide", List.of(I32, I32), I32, ArithmeticFunctions::divideI32Nullable, ArithmeticFunctions::divideI32);
+        registry.register("modulo", List.of(I32, I32), I32, ArithmeticFunctions::moduloI32Nullable, ArithmeticFunctions::moduloI32);
+        registry.register("negate", List.of(I32), I32, ArithmeticFunctions::negateI32);
+
+        registry.register("add", List.of(I64, I64), I64, ArithmeticFunctions::addI64);
+        registry.register("subtract", List.of(I64, I64), I64, ArithmeticFunctions::subtractI64);
+        registry.register("multiply", List.of(I64, I64), I64, ArithmeticFunctions::multiplyI64);
+        registry.register("divide", List.of(I64, I64), I64, ArithmeticFunctions::divideI64Nullable, ArithmeticFunctions::divideI64);
+        registry.register("modulo", List.of(I64, I64), I64, ArithmeticFunctions::moduloI64Nullable, ArithmeticFunctions::moduloI64);
+        registry.register("negate", List.of(I64), I64, ArithmeticFunctions::negateI64);
+
+        registry.register("add", List.of(F64, F64), F64, ArithmeticFunctions::addF64);
+        registry.register("subtract", List.of(F64, F64), F64, ArithmeticFunctions::subtractF64);
+        registry.register("multiply", List.of(F64, F64), F64, ArithmeticFunctions::multiplyF64);
+        registry.register("divide", List.of(F64, F64), F64, ArithmeticFunctions::divideF64);
+        registry.register("modulo", List.of(F64, F64), F64, ArithmeticFunctions::moduloF64);
+        registry.register("negate", List.of(F64), F64, ArithmeticFunctions::negateF64);
+    }
+
+    private static void addI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] left = ((I32Vector) inputs[0]).values();
+        int[] right = ((I32Vector) inputs[1]).values();
+        int[] result = ((I32Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] + right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] + right[position];
+            }
+        }
+    }
+
+    private static void subtractI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] left = ((I32Vector) inputs[0]).values();
+        int[] right = ((I32Vector) inputs[1]).values();
+        int[] result = ((I32Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] - right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] - right[position];
+            }
+        }
+    }
+
+    private static void multiplyI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] left = ((I32Vector) inputs[0]).values();
+        int[] right = ((I32Vector) inputs[1]).values();
+        int[] result = ((I32Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] * right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] * right[position];
+            }
+        }
+    }
+
+    private static void divideI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] left = ((I32Vector) inputs[0]).values();
+        int[] right = ((I32Vector) inputs[1]).values();
+        int[] result = ((I32Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] / right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] / right[position];
+            }
+        }
+    }
+
+    private static void divideI32Nullable(Vector output, Vector[] inputs, Mask mask)
+    {
+        I32Vector left = (I32Vector) inputs[0];
+        I32Vector right = (I32Vector) inputs[1];
+        I32Vector result = (I32Vector) output;
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                boolean isNull = left.nulls()[position] | right.nulls()[position];
+                result.nulls()[position] = isNull;
+                if (!isNull) {
+                    result.values()[position] = left.values()[position] / right.values()[position];
+                }
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                boolean isNull = left.nulls()[position] | right.nulls()[position];
+                result.nulls()[position] = isNull;
+                if (!isNull) {
+                    result.values()[position] = left.values()[position] / right.values()[position];
+                }
+            }
+        }
+    }
+
+    private static void moduloI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] left = ((I32Vector) inputs[0]).values();
+        int[] right = ((I32Vector) inputs[1]).values();
+        int[] result = ((I32Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] % right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] % right[position];
+            }
+        }
+    }
+
+    private static void moduloI32Nullable(Vector output, Vector[] inputs, Mask mask)
+    {
+        I32Vector left = (I32Vector) inputs[0];
+        I32Vector right = (I32Vector) inputs[1];
+        I32Vector result = (I32Vector) output;
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                boolean isNull = left.nulls()[position] | right.nulls()[position];
+                result.nulls()[position] = isNull;
+                if (!isNull) {
+                    result.values()[position] = left.values()[position] % right.values()[position];
+                }
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                boolean isNull = left.nulls()[position] | right.nulls()[position];
+                result.nulls()[position] = isNull;
+                if (!isNull) {
+                    result.values()[position] = left.values()[position] % right.values()[position];
+                }
+            }
+        }
+    }
+
+    private static void negateI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] input = ((I32Vector) inputs[0]).values();
+        int[] result = ((I32Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = -input[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = -input[position];
+            }
+        }
+    }
+
+    private static void addI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] left = ((I64Vector) inputs[0]).values();
+        long[] right = ((I64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] + right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] + right[position];
+            }
+        }
+    }
+
+    private static void subtractI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] left = ((I64Vector) inputs[0]).values();
+        long[] right = ((I64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] - right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] - right[position];
+            }
+        }
+    }
+
+    private static void multiplyI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] left = ((I64Vector) inputs[0]).values();
+        long[] right = ((I64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] * right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] * right[position];
+            }
+        }
+    }
+
+    private static void divideI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] left = ((I64Vector) inputs[0]).values();
+        long[] right = ((I64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] / right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] / right[position];
+            }
+        }
+    }
+
+    private static void divideI64Nullable(Vector output, Vector[] inputs, Mask mask)
+    {
+        I64Vector left = (I64Vector) inputs[0];
+        I64Vector right = (I64Vector) inputs[1];
+        I64Vector result = (I64Vector) output;
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                boolean isNull = left.nulls()[position] | right.nulls()[position];
+                result.nulls()[position] = isNull;
+                if (!isNull) {
+                    result.values()[position] = left.values()[position] / right.values()[position];
+                }
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                boolean isNull = left.nulls()[position] | right.nulls()[position];
+                result.nulls()[position] = isNull;
+                if (!isNull) {
+                    result.values()[position] = left.values()[position] / right.values()[position];
+                }
+            }
+        }
+    }
+
+    private static void moduloI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] left = ((I64Vector) inputs[0]).values();
+        long[] right = ((I64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] % right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] % right[position];
+            }
+        }
+    }
+
+    private static void moduloI64Nullable(Vector output, Vector[] inputs, Mask mask)
+    {
+        I64Vector left = (I64Vector) inputs[0];
+        I64Vector right = (I64Vector) inputs[1];
+        I64Vector result = (I64Vector) output;
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                boolean isNull = left.nulls()[position] | right.nulls()[position];
+                result.nulls()[position] = isNull;
+                if (!isNull) {
+                    result.values()[position] = left.values()[position] % right.values()[position];
+                }
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                boolean isNull = left.nulls()[position] | right.nulls()[position];
+                result.nulls()[position] = isNull;
+                if (!isNull) {
+                    result.values()[position] = left.values()[position] % right.values()[position];
+                }
+            }
+        }
+    }
+
+    private static void negateI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] input = ((I64Vector) inputs[0]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = -input[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = -input[position];
+            }
+        }
+    }
+
+    private static void addF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] left = ((F64Vector) inputs[0]).values();
+        double[] right = ((F64Vector) inputs[1]).values();
+        double[] result = ((F64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] + right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] + right[position];
+            }
+        }
+    }
+
+    private static void subtractF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] left = ((F64Vector) inputs[0]).values();
+        double[] right = ((F64Vector) inputs[1]).values();
+        double[] result = ((F64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] - right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] - right[position];
+            }
+        }
+    }
+
+    private static void multiplyF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] left = ((F64Vector) inputs[0]).values();
+        double[] right = ((F64Vector) inputs[1]).values();
+        double[] result = ((F64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] * right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] * right[position];
+            }
+        }
+    }
+
+    private static void divideF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] left = ((F64Vector) inputs[0]).values();
+        double[] right = ((F64Vector) inputs[1]).values();
+        double[] result = ((F64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] / right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] / right[position];
+            }
+        }
+    }
+
+    private static void moduloF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] left = ((F64Vector) inputs[0]).values();
+        double[] right = ((F64Vector) inputs[1]).values();
+        double[] result = ((F64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] % right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] % right[position];
+            }
+        }
+    }
+
+    private static void negateF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] input = ((F64Vector) inputs[0]).values();
+        double[] result = ((F64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = -input[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = -input[position];
+            }
+        }
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.function;
+
+import org.weakref.nitro.data.I32Vector;
+import org.weakref.nitro.data.I64Vector;
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.Vector;
+
+import java.util.List;
+
+import static org.weakref.nitro.data.VectorType.I32;
+import static org.weakref.nitro.data.VectorType.I64;
+
+final class BitwiseFunctions
+{
+    private BitwiseFunctions() {}
+
+    static void register(FunctionRegistry registry)
+    {
+        registry.register("bitwise_and", List.of(I32, I32), I32, BitwiseFunctions::bitwiseAndI32);
+        registry.register("bitwise_or", List.of(I32, I32), I32, BitwiseFunctions::bitwiseOrI32);
+        registry.register("bitwise_xor", List.of(I32, I32), I32, BitwiseFunctions::bitwiseXorI32);
+        registry.register("shift_left", List.of(I32, I32), I32, BitwiseFunctions::shiftLeftI32);
+        registry.register("shift_right", List.of(I32, I32), I32, BitwiseFunctions::shiftRightI32);
+        registry.register("shift_right_logical", List.of(I32, I32), I32, BitwiseFunctions::shiftRightLogicalI32);
+        registry.register("bitwise_not", List.of(I32), I32, BitwiseFunctions::bitwiseNotI32);
+
+        registry.register("bitwise_and", List.of(I64, I64), I64, BitwiseFunctions::bitwiseAndI64);
+        registry.register("bitwise_or", List.of(I64, I64), I64, BitwiseFunctions::bitwiseOrI64);
+        registry.register("bitwise_xor", List.of(I64, I64), I64, BitwiseFunctions::bitwiseXorI64);
+        registry.register("shift_left", List.of(I64, I64), I64, BitwiseFunctions::shiftLeftI64);
+        registry.register("shift_right", List.of(I64, I64), I64, BitwiseFunctions::shiftRightI64);
+        registry.register("shift_right_logical", List.of(I64, I64), I64, BitwiseFunctions::shiftRightLogicalI64);
+        registry.register("bitwise_not", List.of(I64), I64, BitwiseFunctions::bitwiseNotI64);
+    }
+
+    private static void bitwiseAndI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] left = ((I32Vector) inputs[0]).values();
+        int[] right = ((I32Vector) inputs[1]).values();
+        int[] result = ((I32Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] & right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] & right[position];
+            }
+        }
+    }
+
+    private static void bitwiseOrI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] left = ((I32Vector) inputs[0]).values();
+        int[] right = ((I32Vector) inputs[1]).values();
+        int[] result = ((I32Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] | right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] | right[position];
+            }
+        }
+    }
+
+    private static void bitwiseXorI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] left = ((I32Vector) inputs[0]).values();
+        int[] right = ((I32Vector) inputs[1]).values();
+        int[] result = ((I32Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] ^ right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] ^ right[position];
+            }
+        }
+    }
+
+    private static void shiftLeftI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] left = ((I32Vector) inputs[0]).values();
+        int[] right = ((I32Vector) inputs[1]).values();
+        int[] result = ((I32Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] << right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] << right[position];
+            }
+        }
+    }
+
+    private static void shiftRightI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] left = ((I32Vector) inputs[0]).values();
+        int[] right = ((I32Vector) inputs[1]).values();
+        int[] result = ((I32Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] >> right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] >> right[position];
+            }
+        }
+    }
+
+    private static void shiftRightLogicalI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] left = ((I32Vector) inputs[0]).values();
+        int[] right = ((I32Vector) inputs[1]).values();
+        int[] result = ((I32Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] >>> right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] >>> right[position];
+            }
+        }
+    }
+
+    private static void bitwiseNotI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] input = ((I32Vector) inputs[0]).values();
+        int[] result = ((I32Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = ~input[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = ~input[position];
+            }
+        }
+    }
+
+    private static void bitwiseAndI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] left = ((I64Vector) inputs[0]).values();
+        long[] right = ((I64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] & right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] & right[position];
+            }
+        }
+    }
+
+    private static void bitwiseOrI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] left = ((I64Vector) inputs[0]).values();
+        long[] right = ((I64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] | right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] | right[position];
+            }
+        }
+    }
+
+    private static void bitwiseXorI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] left = ((I64Vector) inputs[0]).values();
+        long[] right = ((I64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] ^ right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] ^ right[position];
+            }
+        }
+    }
+
+    private static void shiftLeftI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] left = ((I64Vector) inputs[0]).values();
+        long[] right = ((I64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] << right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] << right[position];
+            }
+        }
+    }
+
+    private static void shiftRightI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] left = ((I64Vector) inputs[0]).values();
+        long[] right = ((I64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] >> right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] >> right[position];
+            }
+        }
+    }
+
+    private static void shiftRightLogicalI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] left = ((I64Vector) inputs[0]).values();
+        long[] right = ((I64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] >>> right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] >>> right[position];
+            }
+        }
+    }
+
+    private static void bitwiseNotI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] input = ((I64Vector) inputs[0]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = ~input[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = ~input[position];
+            }
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.function;
+
+import org.weakref.nitro.data.F64Vector;
+import org.weakref.nitro.data.I32Vector;
+import org.weakref.nitro.data.I64Vector;
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.VectorType;
+import org.weakref.nitro.data.Vectors;
+
+import java.util.List;
+
+import static java.util.Locale.ENGLISH;
+import static org.weakref.nitro.data.VectorType.F64;
+import static org.weakref.nitro.data.VectorType.I32;
+import static org.weakref.nitro.data.VectorType.I64;
+
+/**
+ * Narrowing casts fail with {@link ArithmeticException} if any non-null value doesn't fit the target type.
+ * Floating point values are truncated towards zero.
+ */
+final class CastFunctions
+{
+    // exclusive bounds of the floating point values that can be converted without overflow
+    private static final double MIN_I32 = Integer.MIN_VALUE - 1.0;
+    private static final double MAX_I32 = Integer.MAX_VALUE + 1.0;
+    private static final double MIN_I64 = -0x1p63;
+    private static final double MAX_I64 = 0x1p63;
+
+    private CastFunctions() {}
+
+    static String castName(VectorType type)
+    {
+        return "cast_to_" + type.name().toLowerCase(ENGLISH);
+    }
+
+    static void register(FunctionRegistry registry)
+    {
+        registry.register(castName(I64), List.of(I32), I64, CastFunctions::castI32ToI64);
+        registry.register(castName(F64), List.of(I32), F64, CastFunctions::castI32ToF64);
+        registry.register(castName(F64), List.of(I64), F64, CastFunctions::castI64ToF64);
+
+        registry.register(castName(I32), List.of(I64), I32, CastFunctions::castI64ToI32Nullable, CastFunctions::castI64ToI32);
+        registry.register(castName(I32), List.of(F64), I32, CastFunctions::castF64ToI32Nullable, CastFunctions::castF64ToI32);
+        registry.register(castName(I64), List.of(F64), I64, CastFunctions::castF64ToI64Nullable, CastFunctions::castF64ToI64);
+    }
+
+    private static void castI32ToI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] input = ((I32Vector) inputs[0]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = input[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = input[position];
+            }
+        }
+    }
+
+    private static void castI32ToF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] input = ((I32Vector) inputs[0]).values();
+        double[] result = ((F64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = input[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = input[position];
+            }
+        }
+    }
+
+    private static void castI64ToF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] input = ((I64Vector) inputs[0]).values();
+        double[] result = ((F64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = input[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = input[position];
+            }
+        }
+    }
+
+    private static void castI64ToI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] values = ((I64Vector) inputs[0]).values();
+        int[] result = ((I32Vector) output).values();
+
+        boolean overflow = false;
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                long value = values[position];
+                result[position] = (int) value;
+                overflow |= value != (int) value;
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                long value = values[position];
+                result[position] = (int) value;
+                overflow |= value != (int) value;
+            }
+        }
+
+        if (overflow) {
+            throw outOfRange(inputs[0], mask, I32);
+        }
+    }
+
+    private static void castI64ToI32Nullable(Vector output, Vector[] inputs, Mask mask)
+    {
+        I64Vector input = (I64Vector) inputs[0];
+        I32Vector result = (I32Vector) output;
+        boolean[] nulls = input.nulls();
+        long[] values = input.values();
+
+        boolean overflow = false;
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                long value = values[position];
+                result.nulls()[position] = nulls[position];
+                result.values()[position] = (int) value;
+                overflow |= !nulls[position] & (value != (int) value);
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                long value = values[position];
+                result.nulls()[position] = nulls[position];
+                result.values()[position] = (int) value;
+                overflow |= !nulls[position] & (value != (int) value);
+            }
+        }
+
+        if (overflow) {
+            throw outOfRange(input, mask, I32);
+        }
+    }
+
+    private static void castF64ToI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] values = ((F64Vector) inputs[0]).values();
+        int[] result = ((I32Vector) output).values();
+
+        boolean overflow = false;
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                double value = values[position];
+                result[position] = (int) value;
+                overflow |= !(value > MIN_I32 && value < MAX_I32);
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                double value = values[position];
+                result[position] = (int) value;
+                overflow |= !(value > MIN_I32 && value < MAX_I32);
+            }
+        }
+
+        if (overflow) {
+            throw outOfRange(inputs[0], mask, I32);
+        }
+    }
+
+    private static void castF64ToI32Nullable(Vector output, Vector[] inputs, Mask mask)
+    {
+        F64Vector input = (F64Vector) inputs[0];
+        I32Vector result = (I32Vector) output;
+        boolean[] nulls = input.nulls();
+        double[] values = input.values();
+
+        boolean overflow = false;
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                double value = values[position];
+                result.nulls()[position] = nulls[position];
+                result.values()[position] = (int) value;
+                overflow |= !nulls[position] & !(value > MIN_I32 && value < MAX_I32);
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                double value = values[position];
+                result.nulls()[position] = nulls[position];
+                result.values()[position] = (int) value;
+                overflow |= !nulls[position] & !(value > MIN_I32 && value < MAX_I32);
+            }
+        }
+
+        if (overflow) {
+            throw outOfRange(input, mask, I32);
+        }
+    }
+
+    private static void castF64ToI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] values = ((F64Vector) inputs[0]).values();
+        long[] result = ((I64Vector) output).values();
+
+        boolean overflow = false;
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                double value = values[position];
+                result[position] = (long) value;
+                overflow |= !(value >= MIN_I64 && value < MAX_I64);
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                double value = values[position];
+                result[position] = (long) value;
+                overflow |= !(value >= MIN_I64 && value < MAX_I64);
+            }
+        }
+
+        if (overflow) {
+            throw outOfRange(inputs[0], mask, I64);
+        }
+    }
+
+    private static void castF64ToI64Nullable(Vector output, Vector[] inputs, Mask mask)
+    {
+        F64Vector input = (F64Vector) inputs[0];
+        I64Vector result = (I64Vector) output;
+        boolean[] nulls = input.nulls();
+        double[] values = input.values();
+
+        boolean overflow = false;
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                double value = values[position];
+                result.nulls()[position] = nulls[position];
+                result.values()[position] = (long) value;
+                overflow |= !nulls[position] & !(value >= MIN_I64 && value < MAX_I64);
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                double value = values[position];
+                result.nulls()[position] = nulls[position];
+                result.values()[position] = (long) value;
+                overflow |= !nulls[position] & !(value >= MIN_I64 && value < MAX_I64);
+            }
+        }
+
+        if (overflow) {
+            throw outOfRange(input, mask, I64);
+        }
+    }
+
+    private static ArithmeticException outOfRange(Vector input, Mask mask, VectorType type)
+    {
+        boolean[] nulls = Vectors.nulls(input);
+        for (int i = 0; i < mask.count(); i++) {
+            int position = mask.position(i);
+            if (nulls[position]) {
+                continue;
+            }
+
+            if (input instanceof I64Vector vector && vector.values()[position] != (int) vector.values()[position]) {
+                return new ArithmeticException("Value %s is out of range for %s".formatted(vector.values()[position], type));
+            }
+            if (input instanceof F64Vector vector && !fits(vector.values()[position], type)) {
+                return new ArithmeticException("Value %s is out of range for %s".formatted(vector.values()[position], type));
+            }
+        }
+
+        return new ArithmeticException("Value is out of range for " + type);
+    }
+
+    private static boolean fits(double value, VectorType type)
+    {
+        return switch (type) {
+            case I32 -> value > MIN_I32 && value < MAX_I32;
+            case I64 -> value >= MIN_I64 && value < MAX_I64;
+            case F64 -> true;
+        };
+    }
+}
@@ -0,0 +1,400 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.function;
+
+import org.weakref.nitro.data.F64Vector;
+import org.weakref.nitro.data.I32Vector;
+import org.weakref.nitro.data.I64Vector;
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.Vector;
+
+import java.util.List;
+
+import static org.weakref.nitro.data.VectorType.F64;
+import static org.weakref.nitro.data.VectorType.I32;
+import static org.weakref.nitro.data.VectorType.I64;
+
+/**
+ * Comparisons produce an {@link I64Vector} holding 1 for true and 0 for false.
+ */
+final class ComparisonFunctions
+{
+    private ComparisonFunctions() {}
+
+    static void register(FunctionRegistry registry)
+    {
+        registry.register("equal", List.of(I32, I32), I64, ComparisonFunctions::equalI32);
+        registry.register("not_equal", List.of(I32, I32), I64, ComparisonFunctions::notEqualI32);
+        registry.register("less_than", List.of(I32, I32), I64, ComparisonFunctions::lessThanI32);
+        registry.register("less_than_or_equal", List.of(I32, I32), I64, ComparisonFunctions::lessThanOrEqualI32);
+        registry.register("greater_than", List.of(I32, I32), I64, ComparisonFunctions::greaterThanI32);
+        registry.register("greater_than_or_equal", List.of(I32, I32), I64, ComparisonFunctions::greaterThanOrEqualI32);
+
+        registry.register("equal", List.of(I64, I64), I64, ComparisonFunctions::equalI64);
+        registry.register("not_equal", List.of(I64, I64), I64, ComparisonFunctions::notEqualI64);
+        registry.register("less_than", List.of(I64, I64), I64, ComparisonFunctions::lessThanI64);
+        registry.register("less_than_or_equal", List.of(I64, I64), I64, ComparisonFunctions::lessThanOrEqualI64);
+        registry.register("greater_than", List.of(I64, I64), I64, ComparisonFunctions::greaterThanI64);
+        registry.register("greater_than_or_equal", List.of(I64, I64), I64, ComparisonFunctions::greaterThanOrEqualI64);
+
+        registry.register("equal", List.of(F64, F64), I64, ComparisonFunctions::equalF64);
+        registry.register("not_equal", List.of(F64, F64), I64, ComparisonFunctions::notEqualF64);
+        registry.register("less_than", List.of(F64, F64), I64, ComparisonFunctions::lessThanF64);
+        registry.register("less_than_or_equal", List.of(F64, F64), I64, ComparisonFunctions::lessThanOrEqualF64);
+        registry.register("greater_than", List.of(F64, F64), I64, ComparisonFunctions::greaterThanF64);
+        registry.register("greater_than_or_equal", List.of(F64, F64), I64, ComparisonFunctions::greaterThanOrEqualF64);
+    }
+
+    private static void equalI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] left = ((I32Vector) inputs[0]).values();
+        int[] right = ((I32Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] == right[position] ? 1 : 0;
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] == right[position] ? 1 : 0;
+            }
+        }
+    }
+
+    private static void notEqualI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] left = ((I32Vector) inputs[0]).values();
+        int[] right = ((I32Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] != right[position] ? 1 : 0;
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] != right[position] ? 1 : 0;
+            }
+        }
+    }
+
+    private static void lessThanI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] left = ((I32Vector) inputs[0]).values();
+        int[] right = ((I32Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] < right[position] ? 1 : 0;
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] < right[position] ? 1 : 0;
+            }
+        }
+    }
+
+    private static void lessThanOrEqualI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] left = ((I32Vector) inputs[0]).values();
+        int[] right = ((I32Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] <= right[position] ? 1 : 0;
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] <= right[position] ? 1 : 0;
+            }
+        }
+    }
+
+    private static void greaterThanI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] left = ((I32Vector) inputs[0]).values();
+        int[] right = ((I32Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] > right[position] ? 1 : 0;
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] > right[position] ? 1 : 0;
+            }
+        }
+    }
+
+    private static void greaterThanOrEqualI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] left = ((I32Vector) inputs[0]).values();
+        int[] right = ((I32Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] >= right[position] ? 1 : 0;
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] >= right[position] ? 1 : 0;
+            }
+        }
+    }
+
+    private static void equalI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] left = ((I64Vector) inputs[0]).values();
+        long[] right = ((I64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] == right[position] ? 1 : 0;
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] == right[position] ? 1 : 0;
+            }
+        }
+    }
+
+    private static void notEqualI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] left = ((I64Vector) inputs[0]).values();
+        long[] right = ((I64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] != right[position] ? 1 : 0;
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] != right[position] ? 1 : 0;
+            }
+        }
+    }
+
+    private static void lessThanI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] left = ((I64Vector) inputs[0]).values();
+        long[] right = ((I64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] < right[position] ? 1 : 0;
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] < right[position] ? 1 : 0;
+            }
+        }
+    }
+
+    private static void lessThanOrEqualI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] left = ((I64Vector) inputs[0]).values();
+        long[] right = ((I64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] <= right[position] ? 1 : 0;
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] <= right[position] ? 1 : 0;
+            }
+        }
+    }
+
+    private static void greaterThanI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] left = ((I64Vector) inputs[0]).values();
+        long[] right = ((I64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] > right[position] ? 1 : 0;
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] > right[position] ? 1 : 0;
+            }
+        }
+    }
+
+    private static void greaterThanOrEqualI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] left = ((I64Vector) inputs[0]).values();
+        long[] right = ((I64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] >= right[position] ? 1 : 0;
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] >= right[position] ? 1 : 0;
+            }
+        }
+    }
+
+    private static void equalF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] left = ((F64Vector) inputs[0]).values();
+        double[] right = ((F64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] == right[position] ? 1 : 0;
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] == right[position] ? 1 : 0;
+            }
+        }
+    }
+
+    private static void notEqualF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] left = ((F64Vector) inputs[0]).values();
+        double[] right = ((F64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] != right[position] ? 1 : 0;
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] != right[position] ? 1 : 0;
+            }
+        }
+    }
+
+    private static void lessThanF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] left = ((F64Vector) inputs[0]).values();
+        double[] right = ((F64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] < right[position] ? 1 : 0;
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] < right[position] ? 1 : 0;
+            }
+        }
+    }
+
+    private static void lessThanOrEqualF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] left = ((F64Vector) inputs[0]).values();
+        double[] right = ((F64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] <= right[position] ? 1 : 0;
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] <= right[position] ? 1 : 0;
+            }
+        }
+    }
+
+    private static void greaterThanF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] left = ((F64Vector) inputs[0]).values();
+        double[] right = ((F64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] > right[position] ? 1 : 0;
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] > right[position] ? 1 : 0;
+            }
+        }
+    }
+
+    private static void greaterThanOrEqualF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] left = ((F64Vector) inputs[0]).values();
+        double[] right = ((F64Vector) inputs[1]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] >= right[position] ? 1 : 0;
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] >= right[position] ? 1 : 0;
+            }
+        }
+    }
+}
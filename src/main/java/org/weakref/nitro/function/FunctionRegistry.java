@@ -0,0 +1,166 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.function;
+
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.VectorAllocator;
+import org.weakref.nitro.data.VectorType;
+import org.weakref.nitro.data.Vectors;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Catalog of scalar functions, keyed by name and argument types.
+ * <p>
+ * Every function is registered with two kernels: one that propagates nulls from
+ * its inputs and one that assumes none of the inputs contain nulls. The null-free kernels
+ * never read or write null flags, so they must only be used with output vectors that don't
+ * carry any nulls (e.g., freshly allocated buffers owned by the caller).
+ * <p>
+ * Kernels are resolved once, when the expression is planned, so evaluation only pays for
+ * a single virtual call per batch rather than per-row type checks.
+ */
+public final class FunctionRegistry
+{
+    private final Map<Signature, Implementation> functions = new HashMap<>();
+
+    public FunctionRegistry()
+    {
+        ArithmeticFunctions.register(this);
+        ComparisonFunctions.register(this);
+        CastFunctions.register(this);
+        MathFunctions.register(this);
+        BitwiseFunctions.register(this);
+    }
+
+    /**
+     * Registers a function whose output is null iff any of its inputs is null. The
+     * nullable variant is derived from the null-free kernel by propagating null flags
+     * before evaluating it.
+     */
+    public void register(String name, List<VectorType> argumentTypes, VectorType returnType, Function kernel)
+    {
+        register(name, argumentTypes, returnType, propagateNulls(kernel), kernel);
+    }
+
+    public void register(String name, List<VectorType> argumentTypes, VectorType returnType, Function nullable, Function nullFree)
+    {
+        Signature signature = new Signature(name, argumentTypes);
+        checkArgument(!functions.containsKey(signature), "Function already registered: %s", signature);
+        functions.put(signature, new Implementation(returnType, nullable, nullFree));
+    }
+
+    public ResolvedFunction resolve(String name, List<VectorType> argumentTypes)
+    {
+        return resolve(name, argumentTypes, true);
+    }
+
+    public ResolvedFunction resolve(String name, List<VectorType> argumentTypes, boolean nullable)
+    {
+        Signature signature = new Signature(name, argumentTypes);
+        Implementation implementation = functions.get(signature);
+        if (implementation == null) {
+            throw new IllegalArgumentException("Function not found: " + signature);
+        }
+
+        return new ResolvedFunction(
+                signature,
+                implementation.returnType(),
+                nullable ? implementation.nullable() : implementation.nullFree());
+    }
+
+    public ResolvedFunction resolveCast(VectorType from, VectorType to, boolean nullable)
+    {
+        return resolve(CastFunctions.castName(to), List.of(from), nullable);
+    }
+
+    private static Function propagateNulls(Function kernel)
+    {
+        return (output, inputs, mask) -> {
+            boolean[] result = Vectors.nulls(output);
+            switch (inputs.length) {
+                case 1 -> copyNulls(result, Vectors.nulls(inputs[0]), mask);
+                case 2 -> orNulls(result, Vectors.nulls(inputs[0]), Vectors.nulls(inputs[1]), mask);
+                default -> {
+                    copyNulls(result, Vectors.nulls(inputs[0]), mask);
+                    for (int i = 1; i < inputs.length; i++) {
+                        orNulls(result, result, Vectors.nulls(inputs[i]), mask);
+                    }
+                }
+            }
+
+            kernel.apply(output, inputs, mask);
+        };
+    }
+
+    private static void copyNulls(boolean[] result, boolean[] input, Mask mask)
+    {
+        if (mask.all()) {
+            System.arraycopy(input, 0, result, 0, mask.count());
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = input[position];
+            }
+        }
+    }
+
+    private static void orNulls(boolean[] result, boolean[] left, boolean[] right, Mask mask)
+    {
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = left[position] | right[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = left[position] | right[position];
+            }
+        }
+    }
+
+    public record Signature(String name, List<VectorType> argumentTypes)
+    {
+        public Signature
+        {
+            argumentTypes = List.copyOf(argumentTypes);
+        }
+
+        @Override
+        public String toString()
+        {
+            return argumentTypes.stream()
+                    .map(VectorType::toString)
+                    .collect(Collectors.joining(", ", name + "(", ")"));
+        }
+    }
+
+    public record ResolvedFunction(Signature signature, VectorType returnType, Function function)
+    {
+        public VectorAllocator allocator()
+        {
+            return returnType::allocate;
+        }
+    }
+
+    private record Implementation(VectorType returnType, Function nullable, Function nullFree) {}
+}
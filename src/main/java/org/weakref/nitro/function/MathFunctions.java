@@ -0,0 +1,227 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.function;
+
+import org.weakref.nitro.data.F64Vector;
+import org.weakref.nitro.data.I32Vector;
+import org.weakref.nitro.data.I64Vector;
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.Vector;
+
+import java.util.List;
+
+import static org.weakref.nitro.data.VectorType.F64;
+import static org.weakref.nitro.data.VectorType.I32;
+import static org.weakref.nitro.data.VectorType.I64;
+
+final class MathFunctions
+{
+    private MathFunctions() {}
+
+    static void register(FunctionRegistry registry)
+    {
+        registry.register("abs", List.of(I32), I32, MathFunctions::absI32);
+        registry.register("abs", List.of(I64), I64, MathFunctions::absI64);
+        registry.register("abs", List.of(F64), F64, MathFunctions::absF64);
+
+        registry.register("sqrt", List.of(F64), F64, MathFunctions::sqrtF64);
+        registry.register("exp", List.of(F64), F64, MathFunctions::expF64);
+        registry.register("ln", List.of(F64), F64, MathFunctions::lnF64);
+        registry.register("floor", List.of(F64), F64, MathFunctions::floorF64);
+        registry.register("ceil", List.of(F64), F64, MathFunctions::ceilF64);
+        registry.register("round", List.of(F64), F64, MathFunctions::roundF64);
+        registry.register("power", List.of(F64, F64), F64, MathFunctions::powerF64);
+    }
+
+    private static void absI32(Vector output, Vector[] inputs, Mask mask)
+    {
+        int[] input = ((I32Vector) inputs[0]).values();
+        int[] result = ((I32Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = Math.abs(input[position]);
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = Math.abs(input[position]);
+            }
+        }
+    }
+
+    private static void absI64(Vector output, Vector[] inputs, Mask mask)
+    {
+        long[] input = ((I64Vector) inputs[0]).values();
+        long[] result = ((I64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = Math.abs(input[position]);
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = Math.abs(input[position]);
+            }
+        }
+    }
+
+    private static void absF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] input = ((F64Vector) inputs[0]).values();
+        double[] result = ((F64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = Math.abs(input[position]);
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = Math.abs(input[position]);
+            }
+        }
+    }
+
+    private static void sqrtF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] input = ((F64Vector) inputs[0]).values();
+        double[] result = ((F64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = Math.sqrt(input[position]);
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = Math.sqrt(input[position]);
+            }
+        }
+    }
+
+    private static void expF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] input = ((F64Vector) inputs[0]).values();
+        double[] result = ((F64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = Math.exp(input[position]);
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = Math.exp(input[position]);
+            }
+        }
+    }
+
+    private static void lnF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] input = ((F64Vector) inputs[0]).values();
+        double[] result = ((F64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = Math.log(input[position]);
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = Math.log(input[position]);
+            }
+        }
+    }
+
+    private static void floorF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] input = ((F64Vector) inputs[0]).values();
+        double[] result = ((F64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = Math.floor(input[position]);
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = Math.floor(input[position]);
+            }
+        }
+    }
+
+    private static void ceilF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] input = ((F64Vector) inputs[0]).values();
+        double[] result = ((F64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = Math.ceil(input[position]);
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = Math.ceil(input[position]);
+            }
+        }
+    }
+
+    private static void roundF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] input = ((F64Vector) inputs[0]).values();
+        double[] result = ((F64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = Math.rint(input[position]);
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = Math.rint(input[position]);
+            }
+        }
+    }
+
+    private static void powerF64(Vector output, Vector[] inputs, Mask mask)
+    {
+        double[] base = ((F64Vector) inputs[0]).values();
+        double[] exponent = ((F64Vector) inputs[1]).values();
+        double[] result = ((F64Vector) output).values();
+
+        if (mask.all()) {
+            for (int position = 0; position < mask.count(); position++) {
+                result[position] = Math.pow(base[position], exponent[position]);
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                result[position] = Math.pow(base[position], exponent[position]);
+            }
+        }
+    }
+}
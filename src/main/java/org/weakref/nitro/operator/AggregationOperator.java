@@ -27,6 +27,7 @@ public class AggregationOperator
     private final Allocator allocator;
 
     private final Operator source;
+    private final FlatColumns flat;
     private final List<Accumulator> aggregations;
 
     private final Vector[] results;
@@ -39,6 +40,7 @@ public class AggregationOperator
         this.allocator = allocator;
         this.source = source;
         this.aggregations = aggregations;
+        flat = new FlatColumns(allocator, ALLOCATION_CONTEXT, source);
 
         results = new Vector[aggregations.size()];
         for (int i = 0; i < results.length; i++) {
@@ -91,10 +93,11 @@ public class AggregationOperator
 
             while (source.hasNext()) {
                 Mask mask = source.next();
+                flat.reset();
 
                 for (int aggregation = 0; aggregation < aggregations.size(); aggregation++) {
                     Accumulator accumulator = aggregations.get(aggregation);
-                    accumulator.accumulate(state[aggregation], 0, mask, source::column);
+                    accumulator.accumulate(state[aggregation], 0, mask, flat::column);
                     results[aggregation] = accumulator.result(1, state[aggregation], results[aggregation]);
                 }
             }
@@ -0,0 +1,376 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.operator;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import org.weakref.nitro.data.Allocator;
+import org.weakref.nitro.data.ColumnarBuffer;
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.VectorType;
+import org.weakref.nitro.data.Vectors;
+
+import java.util.Arrays;
+import java.util.OptionalInt;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Joins each left row with the most recent right row at or before its time, optionally
+ * restricted to right rows with the same key. Both inputs must be sorted by time in ascending
+ * order. Rows with a null time or key have no match.
+ * <p>
+ * Both inputs are consumed in a single merge pass. Right rows are copied out as the left
+ * side's time passes them, and a primitive map tracks the latest one for each key. Once most
+ * of the copied rows have been superseded, they're compacted down to the latest row per key.
+ * <p>
+ * There is exactly one output row per left row, so the left batch is passed through as is,
+ * including its mask, and only the right columns are gathered.
+ */
+public class AsOfJoinOperator
+        implements Operator
+{
+    private static final Allocator.Context ALLOCATION_CONTEXT = new Allocator.Context("AsOfJoinOperator");
+    private static final int MIN_ROWS_FOR_COMPACTION = 4096;
+    private static final int NO_MATCH = -1;
+
+    private final Allocator allocator;
+    private final Operator left;
+    private final FlatColumns flatLeft;
+    private final int leftTime;
+    private final OptionalInt leftKey;
+    private final Operator right;
+    private final FlatColumns flatRight;
+    private final int rightTime;
+    private final OptionalInt rightKey;
+
+    // the key of every right row seen so far -> slot, and slot -> latest right row in history
+    private final Long2IntOpenHashMap slots = new Long2IntOpenHashMap();
+    private int[] slotRows = new int[16];
+    private int slotCount;
+
+    private final ColumnarBuffer history;
+    private int nullRow = -1;
+
+    // the types of the right columns, as soon as the right side produces its first batch
+    private final VectorType[] rightTypes;
+    private boolean rightStarted;
+    private Mask rightMask = Mask.all(0);
+    private int rightIndex;
+    private long[] rightTimes = new long[0];
+    private long[] rightKeys = new long[0];
+    private boolean[] rightNulls = new boolean[0];
+    private int[] pending = new int[0];
+    private int pendingCount;
+
+    private Mask mask;
+    private long[] leftTimes = new long[0];
+    private long[] leftKeys = new long[0];
+    private boolean[] leftNulls = new boolean[0];
+    private int[] matches = new int[0];
+
+    private final Vector[] result;
+    private final boolean[] filled;
+
+    public AsOfJoinOperator(Allocator allocator, Operator left, int leftTime, Operator right, int rightTime)
+    {
+        this(allocator, left, leftTime, OptionalInt.empty(), right, rightTime, OptionalInt.empty());
+    }
+
+    public AsOfJoinOperator(Allocator allocator, Operator left, int leftTime, int leftKey, Operator right, int rightTime, int rightKey)
+    {
+        this(allocator, left, leftTime, OptionalInt.of(leftKey), right, rightTime, OptionalInt.of(rightKey));
+    }
+
+    private AsOfJoinOperator(Allocator allocator, Operator left, int leftTime, OptionalInt leftKey, Operator right, int rightTime, OptionalInt rightKey)
+    {
+        this.allocator = allocator;
+        this.left = left;
+        this.leftTime = leftTime;
+        this.leftKey = leftKey;
+        this.right = right;
+        this.rightTime = rightTime;
+        this.rightKey = rightKey;
+        flatLeft = new FlatColumns(allocator, ALLOCATION_CONTEXT, left);
+        flatRight = new FlatColumns(allocator, ALLOCATION_CONTEXT, right);
+
+        slots.defaultReturnValue(-1);
+        history = new ColumnarBuffer(allocator, ALLOCATION_CONTEXT, right.columnCount());
+        rightTypes = new VectorType[right.columnCount()];
+        result = new Vector[right.columnCount()];
+        filled = new boolean[right.columnCount()];
+    }
+
+    @Override
+    public int columnCount()
+    {
+        return left.columnCount() + right.columnCount();
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return left.hasNext();
+    }
+
+    @Override
+    public Mask next()
+    {
+        Arrays.fill(filled, false);
+
+        mask = left.next();
+        flatLeft.reset();
+        if (mask.none()) {
+            return mask;
+        }
+
+        if (!rightStarted) {
+            // left rows that precede all right rows still need the types of the right columns
+            rightStarted = true;
+            nextRightBatch();
+        }
+
+        compactIfNecessary();
+
+        int size = mask.maxPosition() + 1;
+        if (matches.length < size) {
+            matches = new int[size];
+            leftTimes = new long[size];
+            leftKeys = new long[size];
+            leftNulls = new boolean[size];
+        }
+        Arrays.fill(matches, 0, size, NO_MATCH);
+        loadKeys(flatLeft, leftTime, leftKey, mask, leftTimes, leftKeys, leftNulls);
+
+        for (int i = 0; i < mask.count(); i++) {
+            int position = mask.position(i);
+            if (leftNulls[position]) {
+                continue;
+            }
+
+            advanceRight(leftTimes[position]);
+
+            int slot = slots.get(leftKeys[position]);
+            if (slot != -1) {
+                matches[position] = slotRows[slot];
+            }
+        }
+
+        flushPending();
+
+        if (nullRow != -1) {
+            for (int position = 0; position < size; position++) {
+                matches[position] = matches[position] == NO_MATCH ? nullRow : matches[position];
+            }
+        }
+
+        return mask;
+    }
+
+    /**
+     * Consumes the right rows up to and including the given time.
+     */
+    private void advanceRight(long time)
+    {
+        while (true) {
+            if (rightIndex == rightMask.count()) {
+                flushPending();
+                if (!nextRightBatch()) {
+                    return;
+                }
+            }
+
+            int position = rightMask.position(rightIndex);
+            if (!rightNulls[position]) {
+                if (rightTimes[position] > time) {
+                    return;
+                }
+
+                int slot = slots.putIfAbsent(rightKeys[position], slotCount);
+                if (slot == -1) {
+                    slot = slotCount;
+                    slotCount++;
+                    if (slotCount > slotRows.length) {
+                        slotRows = Arrays.copyOf(slotRows, slotRows.length * 2);
+                    }
+                }
+
+                // the row ends up here once the pending rows are flushed
+                slotRows[slot] = history.rowCount() + pendingCount;
+                pending[pendingCount] = position;
+                pendingCount++;
+            }
+
+            rightIndex++;
+        }
+    }
+
+    private boolean nextRightBatch()
+    {
+        while (right.hasNext()) {
+            rightMask = right.next();
+            flatRight.reset();
+            rightIndex = 0;
+            observeRightTypes();
+            if (rightMask.none()) {
+                continue;
+            }
+
+            int size = rightMask.maxPosition() + 1;
+            if (rightTimes.length < size) {
+                rightTimes = new long[size];
+                rightKeys = new long[size];
+                rightNulls = new boolean[size];
+            }
+            if (pending.length < rightMask.count()) {
+                pending = new int[rightMask.count()];
+            }
+            checkTypes(leftTime, rightTime);
+            if (leftKey.isPresent()) {
+                checkTypes(leftKey.getAsInt(), rightKey.getAsInt());
+            }
+            loadKeys(flatRight, rightTime, rightKey, rightMask, rightTimes, rightKeys, rightNulls);
+            return true;
+        }
+
+        rightMask = Mask.all(0);
+        rightIndex = 0;
+        return false;
+    }
+
+    private void observeRightTypes()
+    {
+        for (int column = 0; column < rightTypes.length; column++) {
+            if (rightTypes[column] == null) {
+                rightTypes[column] = VectorType.of(right.column(column));
+            }
+        }
+    }
+
+    private void checkTypes(int leftColumn, int rightColumn)
+    {
+        VectorType leftType = VectorType.of(left.column(leftColumn));
+        VectorType rightType = VectorType.of(right.column(rightColumn));
+        checkArgument(leftType == rightType, "Join column types don't match: %s vs %s", leftType, rightType);
+    }
+
+    private void flushPending()
+    {
+        if (pendingCount == 0) {
+            return;
+        }
+
+        Vector[] columns = new Vector[right.columnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = right.column(i);
+        }
+        history.append(columns, Mask.sparse(pending, pendingCount));
+        pendingCount = 0;
+
+        if (nullRow == -1) {
+            history.appendNull();
+            nullRow = history.rowCount() - 1;
+        }
+    }
+
+    /**
+     * Drops the right rows that have been superseded by a later row with the same key.
+     */
+    private void compactIfNecessary()
+    {
+        int rowCount = history.rowCount();
+        if (rowCount < MIN_ROWS_FOR_COMPACTION || rowCount < 2 * (slotCount + 1)) {
+            return;
+        }
+
+        int[] rows = new int[slotCount + 1];
+        rows[0] = nullRow;
+        for (int slot = 0; slot < slotCount; slot++) {
+            rows[slot + 1] = slotRows[slot];
+            slotRows[slot] = slot + 1;
+        }
+        history.select(rows, rows.length);
+        nullRow = 0;
+    }
+
+    private static void loadKeys(FlatColumns columns, int timeColumn, OptionalInt keyColumn, Mask mask, long[] times, long[] keys, boolean[] nulls)
+    {
+        Vector time = columns.column(timeColumn);
+        Vectors.sortKeys(time, mask, times);
+        boolean[] timeNulls = Vectors.nulls(time);
+
+        if (keyColumn.isPresent()) {
+            Vector key = columns.column(keyColumn.getAsInt());
+            Vectors.sortKeys(key, mask, keys);
+            boolean[] keyNulls = Vectors.nulls(key);
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                nulls[position] = timeNulls[position] | keyNulls[position];
+            }
+        }
+        else {
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                keys[position] = 0;
+                nulls[position] = timeNulls[position];
+            }
+        }
+    }
+
+    @Override
+    public void constrain(Mask mask)
+    {
+        left.constrain(mask);
+    }
+
+    @Override
+    public Vector column(int column)
+    {
+        int leftColumns = left.columnCount();
+        if (column < leftColumns) {
+            return left.column(column);
+        }
+
+        int rightColumn = column - leftColumns;
+        if (!filled[rightColumn]) {
+            filled[rightColumn] = true;
+
+            int size = mask.maxPosition() + 1;
+            // a right side without any batch has no types, and its columns are all null
+            VectorType type = rightTypes[rightColumn] != null ? rightTypes[rightColumn] : history.type(rightColumn);
+            if (result[rightColumn] != null && VectorType.of(result[rightColumn]) != type) {
+                allocator.free(ALLOCATION_CONTEXT, result[rightColumn]);
+                result[rightColumn] = null;
+            }
+            result[rightColumn] = allocator.reallocateIfNecessary(ALLOCATION_CONTEXT, result[rightColumn], size, type::allocate);
+            if (nullRow == -1) {
+                // no right rows so far
+                Arrays.fill(Vectors.nulls(result[rightColumn]), 0, size, true);
+            }
+            else {
+                Vectors.gather(history.column(rightColumn), matches, size, result[rightColumn]);
+            }
+        }
+
+        return result[rightColumn];
+    }
+
+    @Override
+    public void close()
+    {
+        left.close();
+        right.close();
+        allocator.release(ALLOCATION_CONTEXT);
+    }
+}
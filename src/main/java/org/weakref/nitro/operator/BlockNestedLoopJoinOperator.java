@@ -0,0 +1,223 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.operator;
+
+import org.weakref.nitro.data.Allocator;
+import org.weakref.nitro.data.ColumnarBuffer;
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.VectorType;
+import org.weakref.nitro.data.Vectors;
+import org.weakref.nitro.operator.join.JoinPredicate;
+
+import java.util.Arrays;
+
+/**
+ * Inner join of every outer row with every inner row that satisfies a join predicate.
+ * <p>
+ * The inner side is loaded into memory and processed in tiles small enough to stay in the L1
+ * cache. Each outer batch forms a block, and every row of the block is tested against a tile
+ * before moving on to the next one, so the tile is read from cache for all but the first outer
+ * row. The predicate is evaluated inside the tile and only the matching pairs are materialized.
+ * <p>
+ * An output batch only refers to the current outer batch, so it ends early whenever the outer
+ * side needs to advance.
+ */
+public class BlockNestedLoopJoinOperator
+        implements Operator
+{
+    private static final Allocator.Context ALLOCATION_CONTEXT = new Allocator.Context("BlockNestedLoopJoinOperator");
+    private static final int TILE_ROWS = 1024;
+    private static final int BATCH_SIZE = 4 * TILE_ROWS;
+
+    private final Allocator allocator;
+    private final Operator outer;
+    private final Operator inner;
+    private final JoinPredicate predicate;
+
+    private final ColumnarBuffer innerRows;
+    private Vector[] innerColumns;
+    private boolean innerLoaded;
+
+    private final FlatColumns flatOuter;
+    private final Vector[] outerColumns;
+    private Mask outerMask;
+    private int outerIndex;
+    private int tileStart;
+
+    private final int[] outerPositions = new int[BATCH_SIZE];
+    private final int[] innerMatches = new int[BATCH_SIZE];
+    private int outputCount;
+
+    private final Vector[] result;
+    private final boolean[] filled;
+    private boolean done;
+
+    public BlockNestedLoopJoinOperator(Allocator allocator, Operator outer, Operator inner, JoinPredicate predicate)
+    {
+        this.allocator = allocator;
+        this.outer = outer;
+        this.inner = inner;
+        this.predicate = predicate;
+
+        innerRows = new ColumnarBuffer(allocator, ALLOCATION_CONTEXT, inner.columnCount());
+        flatOuter = new FlatColumns(allocator, ALLOCATION_CONTEXT, outer);
+        outerColumns = new Vector[outer.columnCount()];
+        result = new Vector[outer.columnCount() + inner.columnCount()];
+        filled = new boolean[result.length];
+    }
+
+    @Override
+    public int columnCount()
+    {
+        return result.length;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return !done;
+    }
+
+    @Override
+    public Mask next()
+    {
+        Arrays.fill(filled, false);
+        outputCount = 0;
+
+        loadInnerIfNecessary();
+        if (innerRows.rowCount() == 0) {
+            done = true;
+            return Mask.all(0);
+        }
+
+        // make sure a full tile of matches always fits
+        while (outputCount + TILE_ROWS <= BATCH_SIZE) {
+            if (tileStart == innerRows.rowCount()) {
+                // the output refers to the current outer batch
+                if (outputCount > 0) {
+                    break;
+                }
+                if (!nextOuterBlock()) {
+                    done = true;
+                    break;
+                }
+            }
+
+            int outerPosition = outerMask.position(outerIndex);
+            int tileEnd = Math.min(tileStart + TILE_ROWS, innerRows.rowCount());
+            int matches = predicate.test(outerColumns, outerPosition, innerColumns, tileStart, tileEnd, innerMatches, outputCount);
+            Arrays.fill(outerPositions, outputCount, outputCount + matches, outerPosition);
+            outputCount += matches;
+
+            outerIndex++;
+            if (outerIndex == outerMask.count()) {
+                outerIndex = 0;
+                tileStart = tileEnd;
+            }
+        }
+
+        return Mask.all(outputCount);
+    }
+
+    private boolean nextOuterBlock()
+    {
+        while (outer.hasNext()) {
+            Mask mask = outer.next();
+            flatOuter.reset();
+            if (!mask.none()) {
+                for (int i = 0; i < outerColumns.length; i++) {
+                    outerColumns[i] = flatOuter.column(i);
+                }
+                outerMask = mask;
+                outerIndex = 0;
+                tileStart = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void loadInnerIfNecessary()
+    {
+        if (innerLoaded) {
+            return;
+        }
+        innerLoaded = true;
+
+        Vector[] columns = new Vector[inner.columnCount()];
+        while (inner.hasNext()) {
+            Mask mask = inner.next();
+            if (mask.none()) {
+                continue;
+            }
+
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = inner.column(i);
+            }
+            innerRows.append(columns, mask);
+        }
+
+        innerColumns = new Vector[inner.columnCount()];
+        for (int i = 0; i < innerColumns.length; i++) {
+            innerColumns[i] = innerRows.column(i);
+        }
+
+        // no outer block yet
+        tileStart = innerRows.rowCount();
+    }
+
+    @Override
+    public void constrain(Mask mask)
+    {
+    }
+
+    @Override
+    public Vector column(int column)
+    {
+        if (!filled[column]) {
+            filled[column] = true;
+
+            int outerColumnCount = outerColumns.length;
+            if (outputCount == 0) {
+                if (result[column] == null) {
+                    result[column] = allocator.allocate(ALLOCATION_CONTEXT, 0, VectorType.I64::allocate);
+                }
+            }
+            else if (column < outerColumnCount) {
+                result[column] = gather(outerColumns[column], outerPositions, result[column]);
+            }
+            else {
+                result[column] = gather(innerColumns[column - outerColumnCount], innerMatches, result[column]);
+            }
+        }
+
+        return result[column];
+    }
+
+    private Vector gather(Vector source, int[] positions, Vector buffer)
+    {
+        buffer = allocator.reallocateIfNecessary(ALLOCATION_CONTEXT, buffer, BATCH_SIZE, VectorType.of(source)::allocate);
+        Vectors.gather(source, positions, outputCount, buffer);
+        return buffer;
+    }
+
+    @Override
+    public void close()
+    {
+        outer.close();
+        inner.close();
+        allocator.release(ALLOCATION_CONTEXT);
+    }
+}
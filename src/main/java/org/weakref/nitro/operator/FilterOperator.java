@@ -14,7 +14,9 @@
 package org.weakref.nitro.operator;
 
 import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.RleVector;
 import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.Vectors;
 import org.weakref.nitro.operator.filter.VectorPredicate;
 
 public class FilterOperator
@@ -74,6 +76,15 @@ public class FilterOperator
     private void doFilter()
     {
         Vector column = source.column(this.filterColumn);
+        if (column instanceof RleVector rle && rle.counts().length == 1) {
+            // a single value passes or fails for every row
+            if (!filter.test(rle.values(), 0)) {
+                mask = Mask.all(0);
+                source.constrain(mask);
+            }
+            return;
+        }
+        column = Vectors.flatten(column);
 
         ensureCapacity(mask.count());
         int maskSize = 0;
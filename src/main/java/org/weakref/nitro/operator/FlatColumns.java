@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.operator;
+
+import org.weakref.nitro.data.Allocator;
+import org.weakref.nitro.data.RleVector;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.VectorType;
+import org.weakref.nitro.data.Vectors;
+
+import java.util.Arrays;
+
+/**
+ * Flat columns of the current batch of an operator, for consumers that read values positionally.
+ * A run-length encoded column is flattened at most once per batch, no matter how many times it's
+ * requested, into a buffer that is reused across batches and accounted in the given context.
+ */
+public class FlatColumns
+{
+    private final Allocator allocator;
+    private final Allocator.Context context;
+    private final Operator source;
+
+    private final Vector[] buffers;
+    private final boolean[] flattened;
+
+    public FlatColumns(Allocator allocator, Allocator.Context context, Operator source)
+    {
+        this.allocator = allocator;
+        this.context = context;
+        this.source = source;
+
+        buffers = new Vector[source.columnCount()];
+        flattened = new boolean[source.columnCount()];
+    }
+
+    /**
+     * Must be called whenever the source moves to another batch
+     */
+    public void reset()
+    {
+        Arrays.fill(flattened, false);
+    }
+
+    public Vector column(int column)
+    {
+        Vector vector = source.column(column);
+        if (!(vector instanceof RleVector rle)) {
+            return vector;
+        }
+
+        if (!flattened[column]) {
+            flattened[column] = true;
+
+            VectorType type = VectorType.of(rle.values());
+            if (buffers[column] != null && VectorType.of(buffers[column]) != type) {
+                allocator.free(context, buffers[column]);
+                buffers[column] = null;
+            }
+            buffers[column] = allocator.reallocateIfNecessary(context, buffers[column], rle.length(), type::allocate);
+            Vectors.flatten(rle, buffers[column]);
+        }
+        return buffers[column];
+    }
+}
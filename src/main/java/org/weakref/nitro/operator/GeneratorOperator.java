@@ -109,10 +109,25 @@ public class GeneratorOperator
         I64Generator generator = generators.get(column);
         I64Vector result = results.get(column);
 
-        for (int position = 0; position < currentBatchSize; position++) {
-            generator.next();
-            result.nulls()[position] = generator.isNull();
-            result.values()[position] = generator.value();
+        if (mask.all()) {
+            for (int position = 0; position < currentBatchSize; position++) {
+                generator.next();
+                result.nulls()[position] = generator.isNull();
+                result.values()[position] = generator.value();
+            }
+        }
+        else {
+            // only produce values for the active positions, skipping over the rest
+            int next = 0;
+            for (int i = 0; i < mask.count(); i++) {
+                int position = mask.position(i);
+                generator.skip(position - next);
+                generator.next();
+                result.nulls()[position] = generator.isNull();
+                result.values()[position] = generator.value();
+                next = position + 1;
+            }
+            generator.skip(currentBatchSize - next);
         }
 
         return result;
@@ -13,34 +13,53 @@
  */
 package org.weakref.nitro.operator;
 
-import it.unimi.dsi.fastutil.longs.Long2LongMap;
-import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
 import org.weakref.nitro.data.Allocator;
 import org.weakref.nitro.data.I64Vector;
 import org.weakref.nitro.data.Mask;
 import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.operator.group.GroupHashTable;
 
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Prepends a column with the id of the group of each row, as determined by the values of the
+ * group by columns. Ids are dense and assigned in order of first appearance. Rows with a null in
+ * any of the group by columns get a null id.
+ */
 public class GroupOperator
         implements Operator
 {
     private static final Allocator.Context ALLOCATION_CONTEXT = new Allocator.Context("GroupOperator");
     private final Allocator allocator;
 
-    private final int groupByColumn;
+    private final int[] groupByColumns;
     private final Operator source;
+    private final FlatColumns flat;
 
-    private final Long2LongMap groups = new Long2LongOpenHashMap();
+    private final GroupHashTable groups;
     private boolean filled;
     private Mask mask;
     private I64Vector result;
 
     public GroupOperator(Allocator allocator, int groupByColumn, Operator source)
     {
+        this(allocator, List.of(groupByColumn), source);
+    }
+
+    public GroupOperator(Allocator allocator, List<Integer> groupByColumns, Operator source)
+    {
+        for (int column : groupByColumns) {
+            checkArgument(column < source.columnCount(), "Invalid group by column: %s", column);
+        }
+
         this.allocator = allocator;
-        this.groupByColumn = groupByColumn;
+        this.groupByColumns = groupByColumns.stream().mapToInt(Integer::intValue).toArray();
         this.source = source;
+        flat = new FlatColumns(allocator, ALLOCATION_CONTEXT, source);
 
-        groups.defaultReturnValue(-1);
+        groups = new GroupHashTable(allocator, ALLOCATION_CONTEXT, this.groupByColumns.length);
     }
 
     @Override
@@ -54,6 +73,7 @@ public class GroupOperator
     {
         filled = false;
         mask = source.next();
+        flat.reset();
         return mask;
     }
 
@@ -66,6 +86,7 @@ public class GroupOperator
     @Override
     public void constrain(Mask mask)
     {
+        this.mask = mask;
         source.constrain(mask);
     }
 
@@ -83,28 +104,13 @@ public class GroupOperator
     {
         if (!filled && !mask.none()) {
             filled = true;
-            result = (I64Vector) allocator.reallocateIfNecessary(ALLOCATION_CONTEXT, result, mask.count(), I64Vector::new);
-
-            // TODO: support arbitrary types
-            I64Vector column = (I64Vector) source.column(groupByColumn);
-
-            for (int position : mask) {
-                if (column.nulls()[position]) {
-                    result.nulls()[position] = true;
-                }
-                else {
-                    long value = column.values()[position];
-                    long group = groups.size();
-
-                    long existing = groups.putIfAbsent(value, group);
-                    if (existing != -1) {
-                        group = existing;
-                    }
-
-                    result.values()[position] = group;
-                    result.nulls()[position] = false;
-                }
+            result = (I64Vector) allocator.reallocateIfNecessary(ALLOCATION_CONTEXT, result, mask.maxPosition() + 1, I64Vector::new);
+
+            Vector[] keys = new Vector[groupByColumns.length];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = flat.column(groupByColumns[i]);
             }
+            groups.groupIds(keys, mask, result);
         }
     }
 
@@ -32,6 +32,7 @@ public class GroupedAggregationOperator
     private final int groupColumn;
     private final List<Accumulator> aggregations;
     private final Operator source;
+    private final FlatColumns flat;
     private final Vector[] result;
     private boolean done;
 
@@ -41,6 +42,7 @@ public class GroupedAggregationOperator
         this.groupColumn = groupColumn;
         this.aggregations = aggregations;
         this.source = source;
+        flat = new FlatColumns(allocator, ALLOCATION_CONTEXT, source);
 
         result = new Vector[aggregations.size()];
     }
@@ -65,7 +67,8 @@ public class GroupedAggregationOperator
         long maxGroup = -1;
         while (source.hasNext()) {
             Mask mask = source.next();
-            I64Vector group = (I64Vector) source.column(groupColumn);
+            flat.reset();
+            I64Vector group = (I64Vector) flat.column(groupColumn);
 
             long previousMaxGroup = maxGroup;
             if (mask.all()) {
@@ -85,7 +88,7 @@ public class GroupedAggregationOperator
 
                 states[i] = allocator.allocateOrGrow(ALLOCATION_CONTEXT, states[i], newCapacity, accumulator::allocate);
                 accumulator.initialize(states[i], toIntExact(previousMaxGroup + 1), toIntExact(maxGroup - previousMaxGroup));
-                accumulator.accumulate(states[i], group, mask, source::column);
+                accumulator.accumulate(states[i], group, mask, flat::column);
             }
         }
 
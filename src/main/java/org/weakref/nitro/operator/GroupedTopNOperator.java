@@ -0,0 +1,258 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.operator;
+
+import org.weakref.nitro.data.Allocator;
+import org.weakref.nitro.data.I64Vector;
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.operator.sort.SortKey;
+import org.weakref.nitro.operator.sort.TopNSlots;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.toIntExact;
+
+/**
+ * Keeps the first n rows of each group in the order of the sort keys.
+ * <p>
+ * The groups are identified by a column of dense group ids, such as the one produced by
+ * {@link GroupOperator}. Rows with a null group id form a group of their own.
+ * <p>
+ * Each group gets n slots (see {@link TopNSlots}) and a bounded heap over them, laid out in flat
+ * arrays at offset group * n, so memory is proportional to the number of groups times n. As in
+ * {@link TopNOperator}, rows are materialized late, and the top of the heap of a full group acts
+ * as a dynamic filter for the rows of that group.
+ * <p>
+ * The output has the same columns as the input, with the rows of each group together, in sort order.
+ */
+public class GroupedTopNOperator
+        implements Operator
+{
+    private static final Allocator.Context ALLOCATION_CONTEXT = new Allocator.Context("GroupedTopNOperator");
+
+    private final Allocator allocator;
+
+    private final int n;
+    private final int groupColumn;
+    private final List<SortKey> keys;
+    private final Operator source;
+    private final FlatColumns flat;
+
+    private final TopNSlots slots;
+    private int groupCount;
+    private int[] heapSizes = new int[0];
+    private int[] heaps = new int[0];
+    private int size;
+
+    private int[] groups = new int[0];
+    private int[] passed = new int[0];
+
+    private Vector[] result;
+    private boolean done;
+
+    public GroupedTopNOperator(Allocator allocator, int n, int groupColumn, List<SortKey> keys, Operator source)
+    {
+        checkArgument(n >= 0, "n must be non-negative: %s", n);
+        checkArgument(groupColumn < source.columnCount(), "Invalid group column: %s", groupColumn);
+        checkArgument(!keys.isEmpty(), "At least one sort key is required");
+        for (SortKey key : keys) {
+            checkArgument(key.column() < source.columnCount(), "Invalid sort column: %s", key.column());
+        }
+
+        this.allocator = allocator;
+        this.n = n;
+        this.groupColumn = groupColumn;
+        this.keys = List.copyOf(keys);
+        this.source = source;
+        flat = new FlatColumns(allocator, ALLOCATION_CONTEXT, source);
+
+        slots = new TopNSlots(allocator, ALLOCATION_CONTEXT, keys, source.columnCount());
+    }
+
+    @Override
+    public int columnCount()
+    {
+        return source.columnCount();
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return !done;
+    }
+
+    @Override
+    public Mask next()
+    {
+        while (source.hasNext()) {
+            Mask mask = source.next();
+            flat.reset();
+            if (mask.none() || n == 0) {
+                continue;
+            }
+
+            addBatch(mask);
+        }
+
+        int count = size;
+        int[] order = new int[count];
+        int offset = 0;
+        for (int group = 0; group < groupCount; group++) {
+            slots.drain(heaps, group * n, heapSizes[group], order, offset);
+            offset += heapSizes[group];
+            heapSizes[group] = 0;
+        }
+        size = 0;
+        result = slots.gather(order, count);
+
+        done = true;
+        return Mask.all(count);
+    }
+
+    private void addBatch(Mask mask)
+    {
+        slots.startBatch(mask.count());
+
+        int length = mask.maxPosition() + 1;
+        if (groups.length < length) {
+            groups = new int[length];
+        }
+
+        I64Vector groupIds = (I64Vector) flat.column(groupColumn);
+        int maxGroup = 0;
+        for (int i = 0; i < mask.count(); i++) {
+            int position = mask.position(i);
+            // group 0 is reserved for the null group
+            int group = groupIds.nulls()[position] ? 0 : toIntExact(groupIds.values()[position] + 1);
+            groups[position] = group;
+            maxGroup = Math.max(maxGroup, group);
+        }
+        ensureGroupCapacity(maxGroup + 1);
+
+        slots.encodeKey(0, flat.column(keys.get(0).column()), length);
+        mask = applyThreshold(mask);
+        if (mask.none()) {
+            return;
+        }
+        length = mask.maxPosition() + 1;
+        for (int i = 1; i < keys.size(); i++) {
+            slots.encodeKey(i, flat.column(keys.get(i).column()), length);
+        }
+
+        for (int i = 0; i < mask.count(); i++) {
+            int position = mask.position(i);
+            int group = groups[position];
+            int base = group * n;
+            int groupSize = heapSizes[group];
+
+            if (groupSize < n) {
+                int slot = base + groupSize;
+                heaps[slot] = slot;
+                slots.accept(slot, position);
+                heapSizes[group]++;
+                size++;
+                slots.siftUp(heaps, base, groupSize);
+            }
+            else if (slots.sortsBefore(position, heaps[base])) {
+                slots.accept(heaps[base], position);
+                slots.siftDown(heaps, base, groupSize, 0);
+            }
+        }
+
+        slots.retain(source);
+        if (slots.needsCompaction(size)) {
+            slots.compact(liveSlots(), size);
+        }
+    }
+
+    /**
+     * Narrows the mask to the rows of groups that are not full yet, and the rows that pass the
+     * threshold set by the top of the heap of their group on the first key alone. If any row is
+     * dropped, the source is constrained to the rest, so that the other columns are only produced
+     * for those.
+     */
+    private Mask applyThreshold(Mask mask)
+    {
+        if (passed.length < mask.count()) {
+            passed = new int[mask.count()];
+        }
+
+        int count = 0;
+        for (int i = 0; i < mask.count(); i++) {
+            int position = mask.position(i);
+            int group = groups[position];
+            passed[count] = position;
+            count += heapSizes[group] < n || slots.mayPrecede(position, heaps[group * n]) ? 1 : 0;
+        }
+
+        if (count == mask.count()) {
+            return mask;
+        }
+        mask = Mask.sparse(Arrays.copyOf(passed, count), count);
+        source.constrain(mask);
+        return mask;
+    }
+
+    private void ensureGroupCapacity(int groups)
+    {
+        if (groups > heapSizes.length) {
+            int capacity = Math.max(groups, heapSizes.length * 2);
+            int slotCount = Math.multiplyExact(capacity, n);
+
+            heapSizes = Arrays.copyOf(heapSizes, capacity);
+            heaps = Arrays.copyOf(heaps, slotCount);
+            slots.ensureCapacity(slotCount);
+        }
+        groupCount = Math.max(groupCount, groups);
+    }
+
+    /**
+     * @return the occupied slots, which are the first heapSizes[group] slots of each group
+     */
+    private int[] liveSlots()
+    {
+        int[] live = new int[size];
+        int count = 0;
+        for (int group = 0; group < groupCount; group++) {
+            int base = group * n;
+            for (int slot = base; slot < base + heapSizes[group]; slot++) {
+                live[count] = slot;
+                count++;
+            }
+        }
+        return live;
+    }
+
+    @Override
+    public void constrain(Mask mask)
+    {
+        // Nothing to do. All output is already computed
+    }
+
+    @Override
+    public Vector column(int column)
+    {
+        return result[column];
+    }
+
+    @Override
+    public void close()
+    {
+        source.close();
+        allocator.release(ALLOCATION_CONTEXT);
+    }
+}
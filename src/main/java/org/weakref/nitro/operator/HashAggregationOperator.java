@@ -0,0 +1,631 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.operator;
+
+import org.weakref.nitro.data.Allocator;
+import org.weakref.nitro.data.ColumnarBuffer;
+import org.weakref.nitro.data.I64Vector;
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.SpillReader;
+import org.weakref.nitro.data.SpillWriter;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.VectorType;
+import org.weakref.nitro.data.Vectors;
+import org.weakref.nitro.operator.aggregation.Accumulator;
+import org.weakref.nitro.operator.group.GroupHashTable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Grouped aggregation that assigns the groups itself, rather than consuming group ids from a
+ * {@link GroupOperator}. The output has the group by columns followed by the aggregations, one
+ * row per group, in order of first appearance unless the operator spills.
+ * <p>
+ * The distinct keys are kept in columnar form by the group table, and are emitted as they are.
+ * Unlike {@link GroupOperator}, keys with nulls form groups of their own.
+ * <p>
+ * The aggregations either accumulate raw input, or, in a final aggregation, combine the
+ * intermediate states output by partial aggregations (see {@link Accumulator#combine}).
+ * <p>
+ * With a {@link Bypass}, the operator is a partial aggregation whose output is merged by a final
+ * aggregation downstream, so a key may appear in more than one output row. Its aggregation
+ * columns are the intermediate states, rather than the results. If the keys turn out to
+ * be nearly unique, the groups found so far are flushed and every following row is passed through
+ * with the state of a group of its own, instead of paying for a hash table that doesn't reduce
+ * the data.
+ * <p>
+ * With a memory budget, the operator spills once the groups no longer fit. From then on, rows
+ * whose key already has a group keep being aggregated in memory, while rows with any other key are
+ * written as they are to one of several partition files, by the high bits of the hash of the key.
+ * Since every key ends up either in memory or in exactly one partition, the groups in memory are
+ * final and are output first. Each partition is then aggregated on its own, spilling again with
+ * the next bits of the hash if it still doesn't fit. The aggregation fails if a partition doesn't
+ * fit once there are no bits left to split it by.
+ */
+public class HashAggregationOperator
+        implements Operator
+{
+    /**
+     * Once minRows rows have been seen, aggregation is bypassed if the number of groups is above
+     * maxGroupRatio times the number of rows.
+     */
+    public record Bypass(long minRows, double maxGroupRatio)
+    {
+        public static final Bypass DEFAULT = new Bypass(100_000, 0.5);
+
+        public Bypass
+        {
+            checkArgument(minRows > 0, "minRows must be positive: %s", minRows);
+            checkArgument(maxGroupRatio > 0 && maxGroupRatio <= 1, "maxGroupRatio must be in (0, 1]: %s", maxGroupRatio);
+        }
+    }
+
+    private static final Allocator.Context ALLOCATION_CONTEXT = new Allocator.Context("HashAggregationOperator");
+    private static final int PARTITION_BITS = 3;
+    private static final int PARTITIONS = 1 << PARTITION_BITS;
+    // The group table indexes its slots with at most the low 31 bits of the hash, and each level takes the next
+    // PARTITION_BITS from the top. Past this level, the partitions would no longer split the keys of a slot.
+    private static final int MAX_SPILL_LEVEL = (Long.SIZE - (Integer.SIZE - 1)) / PARTITION_BITS;
+
+    private final Allocator allocator;
+    private final Allocator.Context context;
+
+    private final int[] groupByColumns;
+    private final List<Accumulator> aggregations;
+    private final int[] intermediateColumns;
+    private final Operator source;
+    private final FlatColumns flat;
+    private final Optional<Bypass> bypass;
+    private final Path spillDirectory;
+    private final int spillLevel;
+
+    private GroupHashTable groups;
+    private I64Vector groupIds;
+    private final Vector[] states;
+    private int stateCapacity;
+    private long inputRows;
+
+    private boolean bypassed;
+    private I64Vector rowGroups;
+    private final Vector[] rowStates;
+
+    private boolean spilling;
+    private final Path[] partitionFiles = new Path[PARTITIONS];
+    private final SpillWriter[] partitionWriters = new SpillWriter[PARTITIONS];
+    private final long[] partitionRows = new long[PARTITIONS];
+    private final int[][] partitionPositions = new int[PARTITIONS][0];
+    private final int[] partitionCounts = new int[PARTITIONS];
+    private long[] hashes = new long[0];
+    private int[] foundPositions = new int[0];
+    private int[] missingPositions = new int[0];
+    private final Vector[] spillBlock;
+    private int nextPartition;
+    private HashAggregationOperator partition;
+
+    private final Vector[] result;
+    private final Vector[] flushedResults;
+    private boolean done;
+
+    public HashAggregationOperator(Allocator allocator, List<Integer> groupByColumns, List<Accumulator> aggregations, Operator source)
+    {
+        this(allocator, groupByColumns, aggregations, source, Optional.empty());
+    }
+
+    public HashAggregationOperator(Allocator allocator, List<Integer> groupByColumns, List<Accumulator> aggregations, Operator source, Optional<Bypass> bypass)
+    {
+        this(allocator, ALLOCATION_CONTEXT, groupByColumns, aggregations, Optional.empty(), source, bypass, null, 0);
+    }
+
+    /**
+     * Creates a final aggregation over the output of partial aggregations
+     *
+     * @param intermediateColumns the columns with the intermediate state of each aggregation
+     */
+    public HashAggregationOperator(Allocator allocator, List<Integer> groupByColumns, List<Accumulator> aggregations, List<Integer> intermediateColumns, Operator source)
+    {
+        this(allocator, ALLOCATION_CONTEXT, groupByColumns, aggregations, Optional.of(intermediateColumns), source, Optional.empty(), null, 0);
+    }
+
+    /**
+     * @param memoryBudget bytes that can be used by the groups before spilling rows to spillDirectory
+     */
+    public HashAggregationOperator(Allocator allocator, List<Integer> groupByColumns, List<Accumulator> aggregations, Operator source, long memoryBudget, Path spillDirectory)
+    {
+        this(allocator, Allocator.Context.unique("HashAggregationOperator", memoryBudget), groupByColumns, aggregations, Optional.empty(), source, Optional.empty(), spillDirectory, 0);
+        checkArgument(memoryBudget > 0, "Memory budget must be positive: %s", memoryBudget);
+    }
+
+    private HashAggregationOperator(
+            Allocator allocator,
+            Allocator.Context context,
+            List<Integer> groupByColumns,
+            List<Accumulator> aggregations,
+            Optional<List<Integer>> intermediateColumns,
+            Operator source,
+            Optional<Bypass> bypass,
+            Path spillDirectory,
+            int spillLevel)
+    {
+        checkArgument(!groupByColumns.isEmpty(), "At least one group by column is required");
+        for (int column : groupByColumns) {
+            checkArgument(column < source.columnCount(), "Invalid group by column: %s", column);
+        }
+        intermediateColumns.ifPresent(columns -> {
+            checkArgument(columns.size() == aggregations.size(), "Expected %s intermediate columns, but got %s", aggregations.size(), columns.size());
+            for (int column : columns) {
+                checkArgument(column < source.columnCount(), "Invalid intermediate column: %s", column);
+            }
+        });
+
+        this.allocator = allocator;
+        this.context = context;
+        this.groupByColumns = groupByColumns.stream().mapToInt(Integer::intValue).toArray();
+        this.aggregations = List.copyOf(aggregations);
+        this.intermediateColumns = intermediateColumns.map(columns -> columns.stream().mapToInt(Integer::intValue).toArray()).orElse(null);
+        this.source = source;
+        flat = new FlatColumns(allocator, context, source);
+        this.bypass = bypass;
+        this.spillDirectory = spillDirectory;
+        this.spillLevel = spillLevel;
+
+        groups = new GroupHashTable(allocator, context, this.groupByColumns.length, true);
+        states = new Vector[aggregations.size()];
+        rowStates = new Vector[aggregations.size()];
+        spillBlock = new Vector[source.columnCount()];
+        result = new Vector[groupByColumns.size() + aggregations.size()];
+        flushedResults = new Vector[aggregations.size()];
+    }
+
+    @Override
+    public int columnCount()
+    {
+        return result.length;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if (bypassed) {
+            return source.hasNext();
+        }
+        if (!done) {
+            return true;
+        }
+        return (partition != null && partition.hasNext()) || nextSpilledPartition() < PARTITIONS;
+    }
+
+    @Override
+    public Mask next()
+    {
+        if (bypassed) {
+            return passThrough();
+        }
+        if (done) {
+            return nextPartitionBatch();
+        }
+
+        while (source.hasNext()) {
+            Mask mask = source.next();
+            flat.reset();
+            if (mask.none()) {
+                continue;
+            }
+
+            if (spilling) {
+                addOrSpillBatch(mask);
+                continue;
+            }
+
+            addBatch(mask);
+            if (spillDirectory != null && allocator.exceedsBudget(context)) {
+                checkState(
+                        spillLevel < MAX_SPILL_LEVEL,
+                        "Groups exceed the memory budget of %s bytes after spilling %s levels deep",
+                        context.budget(),
+                        spillLevel);
+                startSpilling();
+            }
+
+            inputRows += mask.count();
+            if (bypass.isPresent() && inputRows >= bypass.get().minRows() && groups.groupCount() > inputRows * bypass.get().maxGroupRatio()) {
+                bypassed = true;
+                return flush();
+            }
+        }
+
+        done = true;
+        if (spilling) {
+            for (SpillWriter writer : partitionWriters) {
+                writer.close();
+            }
+        }
+        return flush();
+    }
+
+    /**
+     * Outputs the groups found so far
+     */
+    private Mask flush()
+    {
+        int groupCount = groups.groupCount();
+        ColumnarBuffer keys = groups.keys();
+        for (int i = 0; i < groupByColumns.length; i++) {
+            // with no input, there's no key to take the type from
+            result[i] = groupCount == 0 ? new I64Vector(0) : keys.column(i);
+        }
+        for (int i = 0; i < aggregations.size(); i++) {
+            Accumulator accumulator = aggregations.get(i);
+            states[i] = allocator.allocateOrGrow(context, states[i], groupCount, accumulator::allocate);
+
+            if (bypass.isPresent()) {
+                // the final aggregation combines the states
+                result[groupByColumns.length + i] = states[i];
+            }
+            else {
+                flushedResults[i] = allocator.allocate(context, groupCount, accumulator::allocate);
+                result[groupByColumns.length + i] = accumulator.result(groupCount - 1, states[i], flushedResults[i]);
+            }
+        }
+
+        return Mask.all(groupCount);
+    }
+
+    /**
+     * Outputs the next batch as is, with each row in a group of its own
+     */
+    private Mask passThrough()
+    {
+        Mask mask = source.next();
+        flat.reset();
+        if (mask.none()) {
+            return mask;
+        }
+
+        for (int i = 0; i < groupByColumns.length; i++) {
+            result[i] = flat.column(groupByColumns[i]);
+        }
+
+        int length = mask.maxPosition() + 1;
+        rowGroups = (I64Vector) allocator.reallocateIfNecessary(context, rowGroups, length, I64Vector::new);
+        for (int position = 0; position < length; position++) {
+            rowGroups.values()[position] = position;
+        }
+
+        for (int i = 0; i < aggregations.size(); i++) {
+            Accumulator accumulator = aggregations.get(i);
+
+            rowStates[i] = allocator.reallocateIfNecessary(context, rowStates[i], length, accumulator::allocate);
+            accumulator.initialize(rowStates[i], 0, length);
+        }
+        accumulate(rowStates, rowGroups, mask);
+        System.arraycopy(rowStates, 0, result, groupByColumns.length, aggregations.size());
+
+        return mask;
+    }
+
+    private void addBatch(Mask mask)
+    {
+        Vector[] keys = keys();
+
+        int previousGroupCount = groups.groupCount();
+        groupIds = (I64Vector) allocator.reallocateIfNecessary(context, groupIds, mask.maxPosition() + 1, I64Vector::new);
+        groups.groupIds(keys, mask, groupIds);
+        int groupCount = groups.groupCount();
+
+        if (groupCount > stateCapacity) {
+            stateCapacity = Math.max(groupCount, stateCapacity * 2);
+        }
+        for (int i = 0; i < aggregations.size(); i++) {
+            Accumulator accumulator = aggregations.get(i);
+
+            states[i] = allocator.allocateOrGrow(context, states[i], stateCapacity, accumulator::allocate);
+            accumulator.initialize(states[i], previousGroupCount, groupCount - previousGroupCount);
+        }
+        accumulate(states, groupIds, mask);
+    }
+
+    private void accumulate(Vector[] states, I64Vector groups, Mask mask)
+    {
+        for (int i = 0; i < aggregations.size(); i++) {
+            if (intermediateColumns == null) {
+                aggregations.get(i).accumulate(states[i], groups, mask, flat::column);
+            }
+            else {
+                aggregations.get(i).combine(states[i], flat.column(intermediateColumns[i]), groups, mask);
+            }
+        }
+    }
+
+    private void startSpilling()
+    {
+        spilling = true;
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            try {
+                partitionFiles[partition] = Files.createTempFile(spillDirectory, "aggregation-", ".partition");
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            partitionWriters[partition] = new SpillWriter(partitionFiles[partition]);
+        }
+    }
+
+    /**
+     * Aggregates the rows whose key already has a group, and spills the rest
+     */
+    private void addOrSpillBatch(Mask mask)
+    {
+        Vector[] keys = keys();
+
+        int length = mask.maxPosition() + 1;
+        groupIds = (I64Vector) allocator.reallocateIfNecessary(context, groupIds, length, I64Vector::new);
+        groups.lookup(keys, mask, groupIds);
+
+        if (foundPositions.length < mask.count()) {
+            foundPositions = new int[mask.count()];
+            missingPositions = new int[mask.count()];
+        }
+        int found = 0;
+        int missing = 0;
+        for (int i = 0; i < mask.count(); i++) {
+            int position = mask.position(i);
+            if (groupIds.values()[position] >= 0) {
+                foundPositions[found] = position;
+                found++;
+            }
+            else {
+                missingPositions[missing] = position;
+                missing++;
+            }
+        }
+
+        if (found > 0) {
+            accumulate(states, groupIds, Mask.sparse(foundPositions, found));
+        }
+        if (missing > 0) {
+            spill(keys, Mask.sparse(missingPositions, missing));
+        }
+    }
+
+    private void spill(Vector[] keys, Mask mask)
+    {
+        if (hashes.length < mask.maxPosition() + 1) {
+            hashes = new long[mask.maxPosition() + 1];
+        }
+        for (int i = 0; i < keys.length; i++) {
+            Vectors.hash(keys[i], mask, hashes, i > 0);
+        }
+
+        // the partition comes from the high bits, which the group table doesn't use, and shifts to the next bits at each level
+        int shift = Long.SIZE - PARTITION_BITS * (spillLevel + 1);
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            partitionCounts[partition] = 0;
+            if (partitionPositions[partition].length < mask.count()) {
+                partitionPositions[partition] = new int[mask.count()];
+            }
+        }
+        for (int i = 0; i < mask.count(); i++) {
+            int position = mask.position(i);
+            int partition = (int) (hashes[position] >>> shift) & (PARTITIONS - 1);
+            partitionPositions[partition][partitionCounts[partition]] = position;
+            partitionCounts[partition]++;
+        }
+
+        Vector[] columns = new Vector[source.columnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = flat.column(i);
+        }
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            int count = partitionCounts[partition];
+            if (count == 0) {
+                continue;
+            }
+
+            for (int i = 0; i < columns.length; i++) {
+                spillBlock[i] = allocator.reallocateIfNecessary(context, spillBlock[i], count, VectorType.of(columns[i])::allocate);
+                Vectors.gather(columns[i], partitionPositions[partition], count, spillBlock[i]);
+            }
+            partitionWriters[partition].write(spillBlock, count);
+            partitionRows[partition] += count;
+        }
+    }
+
+    /**
+     * @return the index of the next spilled partition with rows, or PARTITIONS if there are none left
+     */
+    private int nextSpilledPartition()
+    {
+        if (!spilling) {
+            return PARTITIONS;
+        }
+        int next = nextPartition;
+        while (next < PARTITIONS && partitionRows[next] == 0) {
+            next++;
+        }
+        return next;
+    }
+
+    private Mask nextPartitionBatch()
+    {
+        if (groups != null) {
+            // the groups that were kept in memory have been output
+            releaseGroups();
+        }
+
+        while (partition == null || !partition.hasNext()) {
+            closePartition();
+
+            nextPartition = nextSpilledPartition();
+            checkState(nextPartition < PARTITIONS, "No more partitions");
+            partition = new HashAggregationOperator(
+                    allocator,
+                    Allocator.Context.unique(context.name(), context.budget()),
+                    IntStream.of(groupByColumns).boxed().toList(),
+                    aggregations,
+                    Optional.ofNullable(intermediateColumns).map(columns -> IntStream.of(columns).boxed().toList()),
+                    new SpillFileOperator(partitionFiles[nextPartition], source.columnCount()),
+                    Optional.empty(),
+                    spillDirectory,
+                    spillLevel + 1);
+            nextPartition++;
+        }
+
+        Mask mask = partition.next();
+        for (int i = 0; i < result.length; i++) {
+            result[i] = partition.column(i);
+        }
+        return mask;
+    }
+
+    private void releaseGroups()
+    {
+        groups.release();
+        groups = null;
+        for (int i = 0; i < aggregations.size(); i++) {
+            allocator.free(context, states[i]);
+            if (flushedResults[i] != null) {
+                allocator.free(context, flushedResults[i]);
+            }
+            states[i] = null;
+            flushedResults[i] = null;
+        }
+    }
+
+    private void closePartition()
+    {
+        if (partition != null) {
+            partition.close();
+            partition = null;
+            deletePartitionFile(nextPartition - 1);
+        }
+    }
+
+    private void deletePartitionFile(int partition)
+    {
+        try {
+            if (partitionFiles[partition] != null) {
+                Files.deleteIfExists(partitionFiles[partition]);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Vector[] keys()
+    {
+        Vector[] keys = new Vector[groupByColumns.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = flat.column(groupByColumns[i]);
+        }
+        return keys;
+    }
+
+    @Override
+    public void constrain(Mask mask)
+    {
+        // Nothing to do. All output is already computed
+    }
+
+    @Override
+    public Vector column(int column)
+    {
+        return result[column];
+    }
+
+    @Override
+    public void close()
+    {
+        source.close();
+        if (partition != null) {
+            partition.close();
+        }
+        if (spilling) {
+            for (int partition = 0; partition < PARTITIONS; partition++) {
+                partitionWriters[partition].close();
+                deletePartitionFile(partition);
+            }
+        }
+        allocator.release(context);
+    }
+
+    /**
+     * Reads back the rows of a spilled partition. The columns of a batch are valid until the next
+     * call to {@link #hasNext()}, since that's when the next block is read.
+     */
+    private static class SpillFileOperator
+            implements Operator
+    {
+        private final SpillReader reader;
+        private final int columnCount;
+        private boolean loaded;
+        private boolean hasBlock;
+
+        public SpillFileOperator(Path file, int columnCount)
+        {
+            this.reader = new SpillReader(file, columnCount);
+            this.columnCount = columnCount;
+        }
+
+        @Override
+        public int columnCount()
+        {
+            return columnCount;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            if (!loaded) {
+                hasBlock = reader.next();
+                loaded = true;
+            }
+            return hasBlock;
+        }
+
+        @Override
+        public Mask next()
+        {
+            checkState(hasNext(), "No more blocks");
+            loaded = false;
+            return Mask.all(reader.rowCount());
+        }
+
+        @Override
+        public void constrain(Mask mask)
+        {
+        }
+
+        @Override
+        public Vector column(int column)
+        {
+            return reader.column(column);
+        }
+
+        @Override
+        public void close()
+        {
+            reader.close();
+        }
+    }
+}
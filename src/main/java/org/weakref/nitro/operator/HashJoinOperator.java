@@ -0,0 +1,561 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.operator;
+
+import org.weakref.nitro.data.Allocator;
+import org.weakref.nitro.data.ColumnarBuffer;
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.VectorType;
+import org.weakref.nitro.data.Vectors;
+import org.weakref.nitro.operator.join.JoinHashTable;
+import org.weakref.nitro.operator.join.JoinType;
+import org.weakref.nitro.operator.join.RuntimeFilter;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Equi-join. The build side is fully loaded into a {@link JoinHashTable} on the first
+ * call to next(), and the probe side is then streamed through it one batch at a time.
+ * <p>
+ * The output contains the probe columns followed by the build columns. Output columns are
+ * gathered lazily, when requested.
+ * <p>
+ * Once the build side is loaded, a {@link RuntimeFilter} is derived from each integer build key.
+ * For every probe batch, only the key columns are read first. Rows rejected by the runtime
+ * filters are dropped from the batch via {@link Operator#constrain(Mask)}, so the probe side
+ * can skip producing the remaining columns for them. If the filters turn out not to be
+ * selective, they are disabled.
+ * <p>
+ * When the build side is too large for its hash table to stay in cache, the table is radix
+ * partitioned (see {@link JoinHashTable}). In that mode, probe rows are accumulated into large
+ * chunks, which are reordered by partition before probing. That way, enough probes fall into each
+ * partition for its part of the table and of the build rows to be reused from cache.
+ * <p>
+ * For outer joins (see {@link JoinType}), probe rows without a match are paired with an extra
+ * all-null row appended to the build side, so they go through the same gather as matched rows.
+ * Build rows that are matched are flagged as the probe side is streamed, and the unmatched ones
+ * are emitted after it's exhausted. Columns of an output batch that are null-extended entirely
+ * are served from a shared, pre-filled null vector instead. The type of a null-extended column is
+ * taken from the batches of its side of the join, including empty ones. If that side produces no
+ * batches at all, the column types of the inputs have to be declared (see {@link Options}), or
+ * producing the column fails.
+ */
+public class HashJoinOperator
+        implements Operator
+{
+    private static final Allocator.Context ALLOCATION_CONTEXT = new Allocator.Context("HashJoinOperator");
+    private static final int BATCH_SIZE = 1024;
+
+    // runtime filters that let more than this fraction of rows through are not worth the cost of evaluating them
+    private static final double MAX_RUNTIME_FILTER_PASS_RATIO = 0.9;
+    private static final long MIN_ROWS_FOR_RUNTIME_FILTER_ADAPTATION = 64 * 1024;
+
+    // Hash tables for build sides larger than this are far beyond the size of the last level cache, so that
+    // lookups miss in the TLB as well. Below that, batched lookups into a single table keep enough misses
+    // in flight to beat the cost of partitioning the probe side.
+    private static final int MIN_BUILD_ROWS_FOR_PARTITIONING = 16 * 1024 * 1024;
+    private static final int PROBE_CHUNK_ROWS = 128 * 1024;
+
+    public enum Partitioning
+    {
+        AUTOMATIC,
+        NONE,
+        RADIX,
+    }
+
+    /**
+     * @param probeTypes the types of the probe columns, for null-extending them when the probe side produces no batches
+     * @param buildTypes the types of the build columns, for null-extending them when the build side produces no batches
+     */
+    public record Options(Partitioning partitioning, Optional<List<VectorType>> probeTypes, Optional<List<VectorType>> buildTypes)
+    {
+        public static final Options DEFAULT = new Options(Partitioning.AUTOMATIC, Optional.empty(), Optional.empty());
+
+        public Options
+        {
+            probeTypes = probeTypes.map(List::copyOf);
+            buildTypes = buildTypes.map(List::copyOf);
+        }
+
+        public Options withPartitioning(Partitioning partitioning)
+        {
+            return new Options(partitioning, probeTypes, buildTypes);
+        }
+
+        public Options withColumnTypes(List<VectorType> probeTypes, List<VectorType> buildTypes)
+        {
+            return new Options(partitioning, Optional.of(probeTypes), Optional.of(buildTypes));
+        }
+    }
+
+    private final Allocator allocator;
+    private final JoinType joinType;
+    private final Operator probe;
+    private final FlatColumns flatProbe;
+    private final Operator build;
+    private final int[] probeKeys;
+    private final int[] buildKeys;
+    private final Partitioning partitioning;
+    private final boolean buildTypesDeclared;
+
+    private JoinHashTable table;
+    private int buildRowCount;
+    private ColumnarBuffer probeChunk;
+
+    // build rows that have been matched so far, for joins that preserve the build side
+    private boolean[] matched;
+    private int unmatchedBuildRow;
+
+    private RuntimeFilter[] runtimeFilters;
+    private boolean runtimeFiltersEnabled;
+    private int[] filteredPositions = new int[0];
+    private long runtimeFilterInputRows;
+    private long runtimeFilterOutputRows;
+
+    private Mask probeMask;
+    private int[] matches = new int[0];
+    private int probeIndex;
+    private int nextBuildRow = -1;
+
+    private final int[] probePositions = new int[BATCH_SIZE];
+    private final int[] buildRows = new int[BATCH_SIZE];
+    private int outputCount;
+    private int matchedCount;
+    private boolean probeNullExtended;
+
+    private final Vector[] result;
+    private final Vector[] buffers;
+    private final boolean[] filled;
+    private final VectorType[] probeTypes;
+    private final VectorType[] buildTypes;
+    private final Map<VectorType, Vector> nullVectors = new EnumMap<>(VectorType.class);
+    private boolean done;
+
+    public HashJoinOperator(Allocator allocator, Operator probe, List<Integer> probeKeys, Operator build, List<Integer> buildKeys)
+    {
+        this(allocator, probe, probeKeys, build, buildKeys, JoinType.INNER, Options.DEFAULT);
+    }
+
+    public HashJoinOperator(Allocator allocator, Operator probe, List<Integer> probeKeys, Operator build, List<Integer> buildKeys, JoinType joinType)
+    {
+        this(allocator, probe, probeKeys, build, buildKeys, joinType, Options.DEFAULT);
+    }
+
+    public HashJoinOperator(Allocator allocator, Operator probe, List<Integer> probeKeys, Operator build, List<Integer> buildKeys, JoinType joinType, Options options)
+    {
+        checkArgument(!probeKeys.isEmpty(), "At least one join key is required");
+        checkArgument(probeKeys.size() == buildKeys.size(), "Probe keys (%s) and build keys (%s) must have the same size", probeKeys.size(), buildKeys.size());
+        options.probeTypes().ifPresent(types -> checkArgument(types.size() == probe.columnCount(), "Expected %s probe types, but got %s", probe.columnCount(), types.size()));
+        options.buildTypes().ifPresent(types -> checkArgument(types.size() == build.columnCount(), "Expected %s build types, but got %s", build.columnCount(), types.size()));
+
+        this.allocator = allocator;
+        this.joinType = joinType;
+        this.probe = probe;
+        flatProbe = new FlatColumns(allocator, ALLOCATION_CONTEXT, probe);
+        this.build = build;
+        this.probeKeys = probeKeys.stream().mapToInt(Integer::intValue).toArray();
+        this.buildKeys = buildKeys.stream().mapToInt(Integer::intValue).toArray();
+        this.partitioning = options.partitioning();
+        this.buildTypesDeclared = options.buildTypes().isPresent();
+
+        result = new Vector[probe.columnCount() + build.columnCount()];
+        buffers = new Vector[result.length];
+        filled = new boolean[result.length];
+        // until a batch of each side is seen, only declared types are known
+        probeTypes = options.probeTypes()
+                .map(types -> types.toArray(VectorType[]::new))
+                .orElseGet(() -> new VectorType[probe.columnCount()]);
+        buildTypes = options.buildTypes()
+                .map(types -> types.toArray(VectorType[]::new))
+                .orElseGet(() -> new VectorType[build.columnCount()]);
+    }
+
+    @Override
+    public int columnCount()
+    {
+        return probe.columnCount() + build.columnCount();
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return !done;
+    }
+
+    @Override
+    public Mask next()
+    {
+        buildIfNecessary();
+        Arrays.fill(filled, false);
+        outputCount = 0;
+        matchedCount = 0;
+        probeNullExtended = false;
+
+        while (outputCount == 0 && !done) {
+            if (probeMask != null && probeIndex < probeMask.count()) {
+                emitMatches();
+            }
+            else if (!probeFinished()) {
+                probeNextBatch();
+            }
+            else if (hasUnmatchedBuildRows()) {
+                emitUnmatchedBuildRows();
+            }
+            else {
+                done = true;
+            }
+        }
+
+        if ((probeMask == null || probeIndex == probeMask.count()) && probeFinished() && !hasUnmatchedBuildRows()) {
+            done = true;
+        }
+
+        return Mask.all(outputCount);
+    }
+
+    private boolean probeFinished()
+    {
+        return !probe.hasNext() || (buildRowCount == 0 && !joinType.preservesProbe());
+    }
+
+    /**
+     * Only valid once the probe side is finished.
+     */
+    private boolean hasUnmatchedBuildRows()
+    {
+        if (matched == null) {
+            return false;
+        }
+
+        while (unmatchedBuildRow < buildRowCount && matched[unmatchedBuildRow]) {
+            unmatchedBuildRow++;
+        }
+        return unmatchedBuildRow < buildRowCount;
+    }
+
+    private void emitUnmatchedBuildRows()
+    {
+        while (unmatchedBuildRow < buildRowCount && outputCount < BATCH_SIZE) {
+            buildRows[outputCount] = unmatchedBuildRow;
+            outputCount += matched[unmatchedBuildRow] ? 0 : 1;
+            unmatchedBuildRow++;
+        }
+        matchedCount = outputCount;
+        probeNullExtended = true;
+    }
+
+    private void buildIfNecessary()
+    {
+        if (table != null) {
+            return;
+        }
+
+        ColumnarBuffer rows = buildTypesDeclared
+                ? new ColumnarBuffer(allocator, ALLOCATION_CONTEXT, List.of(buildTypes))
+                : new ColumnarBuffer(allocator, ALLOCATION_CONTEXT, build.columnCount());
+        Vector[] columns = new Vector[build.columnCount()];
+        while (build.hasNext()) {
+            Mask mask = build.next();
+            // an empty batch still tells the types of the build columns, which unmatched probe rows are null-extended with
+            observeTypes(build, buildTypes);
+            if (mask.none()) {
+                continue;
+            }
+
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = build.column(i);
+            }
+            rows.append(columns, mask);
+        }
+
+        boolean partitioned = switch (partitioning) {
+            case AUTOMATIC -> rows.rowCount() >= MIN_BUILD_ROWS_FOR_PARTITIONING;
+            case NONE -> false;
+            case RADIX -> true;
+        };
+
+        if (partitioned) {
+            table = new JoinHashTable(rows, buildKeys, JoinHashTable.partitionBits(rows.rowCount()));
+            probeChunk = new ColumnarBuffer(allocator, ALLOCATION_CONTEXT, probe.columnCount());
+        }
+        else {
+            table = new JoinHashTable(rows, buildKeys);
+        }
+
+        buildRowCount = rows.rowCount();
+        if (joinType.preservesProbe()) {
+            // unmatched probe rows are paired with this row
+            rows.appendNull();
+        }
+        if (joinType.preservesBuild()) {
+            matched = new boolean[buildRowCount];
+        }
+
+        runtimeFilters = new RuntimeFilter[buildKeys.length];
+        for (int i = 0; i < buildKeys.length; i++) {
+            Optional<RuntimeFilter> filter = Optional.empty();
+            if (rows.rowCount() > 0) {
+                filter = RuntimeFilter.create(rows.column(buildKeys[i]), rows.rowCount());
+            }
+            runtimeFilters[i] = filter.orElse(null);
+            // probe rows rejected by the filters are still needed when the probe side is preserved
+            runtimeFiltersEnabled |= filter.isPresent() && !joinType.preservesProbe();
+        }
+    }
+
+    private void probeNextBatch()
+    {
+        probeIndex = 0;
+        nextBuildRow = -1;
+
+        probeMask = probeChunk != null ? nextProbeChunk() : nextProbeBatch();
+        if (probeMask.none()) {
+            return;
+        }
+
+        Vector[] keys = new Vector[probeKeys.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = probeChunk != null ? probeChunk.column(probeKeys[i]) : flatProbe.column(probeKeys[i]);
+        }
+
+        if (matches.length < probeMask.maxPosition() + 1) {
+            matches = new int[probeMask.maxPosition() + 1];
+        }
+        table.lookup(keys, probeMask, matches);
+    }
+
+    private Mask nextProbeChunk()
+    {
+        probeChunk.reset();
+
+        Vector[] columns = new Vector[probe.columnCount()];
+        while (probeChunk.rowCount() < PROBE_CHUNK_ROWS && probe.hasNext()) {
+            Mask mask = nextProbeBatch();
+            if (mask.none()) {
+                continue;
+            }
+
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = probe.column(i);
+            }
+            probeChunk.append(columns, mask);
+        }
+
+        if (probeChunk.rowCount() > 0) {
+            Vector[] keys = new Vector[probeKeys.length];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = probeChunk.column(probeKeys[i]);
+            }
+            probeChunk.reorder(table.partitionOrder(keys, probeChunk.rowCount()));
+        }
+
+        return Mask.all(probeChunk.rowCount());
+    }
+
+    private Mask nextProbeBatch()
+    {
+        Mask mask = probe.next();
+        flatProbe.reset();
+        if (joinType.preservesBuild()) {
+            // unmatched build rows are null-extended with the probe types, even if no probe row is ever output
+            observeTypes(probe, probeTypes);
+        }
+        if (mask.none()) {
+            return mask;
+        }
+
+        // an empty build side has no key types to check against, unless they were declared
+        for (int i = 0; i < probeKeys.length && (buildRowCount > 0 || buildTypesDeclared); i++) {
+            VectorType type = VectorType.of(probe.column(probeKeys[i]));
+            checkArgument(type == table.rows().type(buildKeys[i]), "Join key types don't match: %s vs %s", type, table.rows().type(buildKeys[i]));
+        }
+
+        if (runtimeFiltersEnabled) {
+            mask = applyRuntimeFilters(mask);
+        }
+        return mask;
+    }
+
+    private Mask applyRuntimeFilters(Mask mask)
+    {
+        int inputRows = mask.count();
+        if (filteredPositions.length < mask.maxPosition() + 1) {
+            filteredPositions = new int[mask.maxPosition() + 1];
+        }
+
+        for (int i = 0; i < runtimeFilters.length && !mask.none(); i++) {
+            if (runtimeFilters[i] != null) {
+                int count = runtimeFilters[i].filter(flatProbe.column(probeKeys[i]), mask, filteredPositions);
+                if (count < mask.count()) {
+                    // copy, since the buffer is reused for the next filter
+                    mask = Mask.sparse(Arrays.copyOf(filteredPositions, count), count);
+                }
+            }
+        }
+
+        if (mask.count() < inputRows) {
+            probe.constrain(mask);
+        }
+
+        runtimeFilterInputRows += inputRows;
+        runtimeFilterOutputRows += mask.count();
+        if (runtimeFilterInputRows >= MIN_ROWS_FOR_RUNTIME_FILTER_ADAPTATION &&
+                runtimeFilterOutputRows > runtimeFilterInputRows * MAX_RUNTIME_FILTER_PASS_RATIO) {
+            runtimeFiltersEnabled = false;
+        }
+
+        return mask;
+    }
+
+    private static void observeTypes(Operator operator, VectorType[] types)
+    {
+        for (int column = 0; column < types.length; column++) {
+            if (types[column] == null) {
+                types[column] = VectorType.of(operator.column(column));
+            }
+        }
+    }
+
+    private Vector probeColumn(int column)
+    {
+        return probeChunk != null ? probeChunk.column(column) : probe.column(column);
+    }
+
+    /**
+     * Expands the matches of the current probe batch into (probe position, build row) pairs,
+     * stopping when the output batch is full. Resumes from where the previous call left off.
+     */
+    private void emitMatches()
+    {
+        while (probeIndex < probeMask.count() && outputCount < BATCH_SIZE) {
+            int position = probeMask.position(probeIndex);
+            int row = nextBuildRow != -1 ? nextBuildRow : matches[position];
+
+            if (row == -1 && joinType.preservesProbe()) {
+                probePositions[outputCount] = position;
+                buildRows[outputCount] = buildRowCount;
+                outputCount++;
+                probeIndex++;
+                continue;
+            }
+
+            while (row != -1 && outputCount < BATCH_SIZE) {
+                probePositions[outputCount] = position;
+                buildRows[outputCount] = row;
+                outputCount++;
+                matchedCount++;
+                if (matched != null) {
+                    matched[row] = true;
+                }
+                row = table.nextRow(row);
+            }
+
+            if (row != -1) {
+                // output is full, continue with the rest of the chain in the next batch
+                nextBuildRow = row;
+                return;
+            }
+
+            nextBuildRow = -1;
+            probeIndex++;
+        }
+    }
+
+    @Override
+    public void constrain(Mask mask)
+    {
+    }
+
+    @Override
+    public Vector column(int column)
+    {
+        if (!filled[column]) {
+            filled[column] = true;
+
+            int probeColumns = probe.columnCount();
+            if (column < probeColumns) {
+                if (outputCount == 0 || probeNullExtended) {
+                    result[column] = nullVector(probeType(column));
+                }
+                else {
+                    Vector source = probeColumn(column);
+                    probeTypes[column] = VectorType.of(source);
+                    result[column] = gather(source, probePositions, column);
+                }
+            }
+            else {
+                if (outputCount == 0 || matchedCount == 0) {
+                    result[column] = nullVector(buildType(column - probeColumns));
+                }
+                else {
+                    result[column] = gather(table.rows().column(column - probeColumns), buildRows, column);
+                }
+            }
+        }
+
+        return result[column];
+    }
+
+    private VectorType probeType(int column)
+    {
+        if (outputCount == 0 && probeTypes[column] == null) {
+            // an empty batch has no values to get wrong
+            return VectorType.I64;
+        }
+        checkState(probeTypes[column] != null, "Type of probe column %s is unknown, since the probe side produced no batches. Declare the column types of the inputs", column);
+        return probeTypes[column];
+    }
+
+    private VectorType buildType(int column)
+    {
+        if (outputCount == 0 && buildTypes[column] == null) {
+            // an empty batch has no values to get wrong
+            return VectorType.I64;
+        }
+        checkState(buildTypes[column] != null, "Type of build column %s is unknown, since the build side produced no batches. Declare the column types of the inputs", column);
+        return buildTypes[column];
+    }
+
+    private Vector gather(Vector source, int[] positions, int column)
+    {
+        buffers[column] = allocator.reallocateIfNecessary(ALLOCATION_CONTEXT, buffers[column], BATCH_SIZE, VectorType.of(source)::allocate);
+        Vectors.gather(source, positions, outputCount, buffers[column]);
+        return buffers[column];
+    }
+
+    private Vector nullVector(VectorType type)
+    {
+        return nullVectors.computeIfAbsent(type, _ -> {
+            Vector vector = allocator.allocate(ALLOCATION_CONTEXT, BATCH_SIZE, type::allocate);
+            Arrays.fill(Vectors.nulls(vector), true);
+            return vector;
+        });
+    }
+
+    @Override
+    public void close()
+    {
+        probe.close();
+        build.close();
+        allocator.release(ALLOCATION_CONTEXT);
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.operator;
+
+import org.weakref.nitro.data.Allocator;
+import org.weakref.nitro.data.ColumnarBuffer;
+import org.weakref.nitro.data.F64Vector;
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.VectorType;
+import org.weakref.nitro.data.Vectors;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Inner equi-join of two inputs that are sorted in ascending order on their join key. Nulls
+ * may come either first or last, and never match. Neither does NaN, as in {@link HashJoinOperator}.
+ * <p>
+ * Both inputs are streamed one batch at a time. Rows of the right input with the same key as
+ * the current left row form a run, which is joined with every left row with that key. A run is
+ * referenced in place in the current right batch, unless it reaches the end of the batch, in which
+ * case it's copied out, since it may continue into the next one. Only the longest run spanning
+ * batches is ever held in memory.
+ * <p>
+ * An output batch only refers to the current batch of each input, so it ends early whenever an
+ * input needs to advance.
+ */
+public class MergeJoinOperator
+        implements Operator
+{
+    private static final Allocator.Context ALLOCATION_CONTEXT = new Allocator.Context("MergeJoinOperator");
+    private static final int BATCH_SIZE = 1024;
+
+    private final Allocator allocator;
+    private final Input left;
+    private final Input right;
+
+    private final ColumnarBuffer runBuffer;
+    private boolean inRun;
+    private long runKey;
+    private boolean runBuffered;
+    private int runStart;
+    private int runEnd;
+    private int runIndex;
+
+    private final int[] leftPositions = new int[BATCH_SIZE];
+    private final int[] rightRows = new int[BATCH_SIZE];
+    private int outputCount;
+    private boolean outputFromRunBuffer;
+
+    private final Vector[] result;
+    private final boolean[] filled;
+    private boolean done;
+
+    public MergeJoinOperator(Allocator allocator, Operator left, int leftKey, Operator right, int rightKey)
+    {
+        this.allocator = allocator;
+        this.left = new Input(left, leftKey, new FlatColumns(allocator, ALLOCATION_CONTEXT, left));
+        this.right = new Input(right, rightKey, new FlatColumns(allocator, ALLOCATION_CONTEXT, right));
+
+        runBuffer = new ColumnarBuffer(allocator, ALLOCATION_CONTEXT, right.columnCount());
+        result = new Vector[left.columnCount() + right.columnCount()];
+        filled = new boolean[result.length];
+    }
+
+    @Override
+    public int columnCount()
+    {
+        return result.length;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return !done;
+    }
+
+    @Override
+    public Mask next()
+    {
+        Arrays.fill(filled, false);
+        outputCount = 0;
+
+        while (!done && outputCount < BATCH_SIZE) {
+            if (!left.hasRow()) {
+                // the output refers to the current batch
+                if (outputCount > 0) {
+                    break;
+                }
+                if (!left.nextBatch()) {
+                    done = true;
+                }
+                continue;
+            }
+
+            if (inRun) {
+                if (left.isNull() || left.key() != runKey) {
+                    endRun();
+                    continue;
+                }
+                if (outputCount > 0 && outputFromRunBuffer != runBuffered) {
+                    break;
+                }
+                emitRun();
+                continue;
+            }
+
+            if (!right.hasRow()) {
+                if (outputCount > 0) {
+                    break;
+                }
+                if (!right.nextBatch()) {
+                    done = true;
+                }
+                continue;
+            }
+
+            if (left.skipNullsAndKeysBelow(right) || right.skipNullsAndKeysBelow(left)) {
+                continue;
+            }
+
+            checkArgument(left.keyType() == right.keyType(), "Join key types don't match: %s vs %s", left.keyType(), right.keyType());
+
+            if (!startRun(left.key())) {
+                break;
+            }
+        }
+
+        return Mask.all(outputCount);
+    }
+
+    /**
+     * Starts a run of right rows with the given key at the current right row.
+     *
+     * @return false if the output needs to be flushed first
+     */
+    private boolean startRun(long key)
+    {
+        int end = right.runEnd(key);
+        if (end < right.mask.count() || !right.operator.hasNext()) {
+            inRun = true;
+            runKey = key;
+            runBuffered = false;
+            runStart = right.index;
+            runEnd = end;
+            runIndex = runStart;
+            return true;
+        }
+
+        // the run may continue in the next batch, which invalidates the current one
+        if (outputCount > 0) {
+            return false;
+        }
+
+        runBuffer.reset();
+        appendToRunBuffer(right.index, end);
+        right.index = end;
+        while (!right.hasRow() && right.nextBatch()) {
+            end = right.runEnd(key);
+            appendToRunBuffer(0, end);
+            right.index = end;
+        }
+
+        inRun = true;
+        runKey = key;
+        runBuffered = true;
+        runStart = 0;
+        runEnd = runBuffer.rowCount();
+        runIndex = runStart;
+        return true;
+    }
+
+    private void appendToRunBuffer(int from, int to)
+    {
+        if (from == to) {
+            return;
+        }
+
+        int[] positions = new int[to - from];
+        for (int i = from; i < to; i++) {
+            positions[i - from] = right.mask.position(i);
+        }
+
+        Vector[] columns = new Vector[right.operator.columnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = right.operator.column(i);
+        }
+        runBuffer.append(columns, Mask.sparse(positions, positions.length));
+    }
+
+    /**
+     * Pairs the left rows with the run key in the current left batch with the rows of the run,
+     * stopping when the output batch is full. Resumes from where the previous call left off.
+     */
+    private void emitRun()
+    {
+        outputFromRunBuffer = runBuffered;
+        while (outputCount < BATCH_SIZE && left.hasRow() && !left.isNull() && left.key() == runKey) {
+            int leftPosition = left.position();
+            while (runIndex < runEnd && outputCount < BATCH_SIZE) {
+                leftPositions[outputCount] = leftPosition;
+                rightRows[outputCount] = runBuffered ? runIndex : right.mask.position(runIndex);
+                outputCount++;
+                runIndex++;
+            }
+
+            if (runIndex == runEnd) {
+                left.index++;
+                runIndex = runStart;
+            }
+        }
+    }
+
+    private void endRun()
+    {
+        inRun = false;
+        if (!runBuffered) {
+            right.index = runEnd;
+        }
+    }
+
+    @Override
+    public void constrain(Mask mask)
+    {
+    }
+
+    @Override
+    public Vector column(int column)
+    {
+        if (!filled[column]) {
+            filled[column] = true;
+
+            int leftColumns = left.operator.columnCount();
+            if (outputCount == 0) {
+                if (result[column] == null) {
+                    result[column] = allocator.allocate(ALLOCATION_CONTEXT, 0, VectorType.I64::allocate);
+                }
+            }
+            else if (column < leftColumns) {
+                result[column] = gather(left.operator.column(column), leftPositions, result[column]);
+            }
+            else {
+                Vector source = outputFromRunBuffer ? runBuffer.column(column - leftColumns) : right.operator.column(column - leftColumns);
+                result[column] = gather(source, rightRows, result[column]);
+            }
+        }
+
+        return result[column];
+    }
+
+    private Vector gather(Vector source, int[] positions, Vector buffer)
+    {
+        buffer = allocator.reallocateIfNecessary(ALLOCATION_CONTEXT, buffer, BATCH_SIZE, VectorType.of(source)::allocate);
+        Vectors.gather(source, positions, outputCount, buffer);
+        return buffer;
+    }
+
+    @Override
+    public void close()
+    {
+        left.operator.close();
+        right.operator.close();
+        allocator.release(ALLOCATION_CONTEXT);
+    }
+
+    private static class Input
+    {
+        private final Operator operator;
+        private final int keyColumn;
+        private final FlatColumns flat;
+
+        private Mask mask = Mask.all(0);
+        private int index;
+        private long[] keys = new long[0];
+        // null or NaN, which never match
+        private boolean[] nulls = new boolean[0];
+        private VectorType keyType;
+
+        public Input(Operator operator, int keyColumn, FlatColumns flat)
+        {
+            this.operator = operator;
+            this.keyColumn = keyColumn;
+            this.flat = flat;
+        }
+
+        /**
+         * Advances to the next non-empty batch.
+         *
+         * @return false if there are no more batches
+         */
+        public boolean nextBatch()
+        {
+            while (operator.hasNext()) {
+                mask = operator.next();
+                flat.reset();
+                index = 0;
+                if (mask.none()) {
+                    continue;
+                }
+
+                Vector key = flat.column(keyColumn);
+                if (keys.length < mask.maxPosition() + 1) {
+                    keys = new long[mask.maxPosition() + 1];
+                    nulls = new boolean[mask.maxPosition() + 1];
+                }
+                Vectors.sortKeys(key, mask, keys);
+                boolean[] keyNulls = Vectors.nulls(key);
+                double[] doubles = key instanceof F64Vector vector ? vector.values() : null;
+                for (int i = 0; i < mask.count(); i++) {
+                    int position = mask.position(i);
+                    nulls[position] = keyNulls[position] || (doubles != null && Double.isNaN(doubles[position]));
+                }
+                keyType = VectorType.of(key);
+                return true;
+            }
+
+            mask = Mask.all(0);
+            index = 0;
+            return false;
+        }
+
+        public boolean hasRow()
+        {
+            return index < mask.count();
+        }
+
+        public int position()
+        {
+            return mask.position(index);
+        }
+
+        public boolean isNull()
+        {
+            return nulls[mask.position(index)];
+        }
+
+        public long key()
+        {
+            return keys[mask.position(index)];
+        }
+
+        public VectorType keyType()
+        {
+            return keyType;
+        }
+
+        /**
+         * Skips rows with a null key or a key lower than the current key of the other input.
+         *
+         * @return whether any rows were skipped
+         */
+        public boolean skipNullsAndKeysBelow(Input other)
+        {
+            int start = index;
+            while (index < mask.count() && (nulls[mask.position(index)] || (!other.isNull() && keys[mask.position(index)] < other.key()))) {
+                index++;
+            }
+            return index > start;
+        }
+
+        /**
+         * @return the index past the last consecutive row with the given key, starting at the current row
+         */
+        public int runEnd(long key)
+        {
+            int end = index;
+            while (end < mask.count() && !nulls[mask.position(end)] && keys[mask.position(end)] == key) {
+                end++;
+            }
+            return end;
+        }
+    }
+}
@@ -14,12 +14,12 @@
 package org.weakref.nitro.operator;
 
 import org.weakref.nitro.data.Allocator;
-import org.weakref.nitro.data.I64Vector;
+import org.weakref.nitro.data.ColumnarBuffer;
 import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.RleVector;
 import org.weakref.nitro.data.Vector;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -46,8 +46,6 @@ public class NestedLoopJoinOperator
     private int currentOuterPosition;
 
     private final Vector[] result;
-    private final Vector[] outerBuffer; // buffer to hold output from outer columns when replicating the same outer row for multiple inner rows
-    private final Vector[] innerBuffer; // buffer to hold output from inner columns when replicating the same inner row for multiple outer rows
 
     private boolean done;
 
@@ -57,8 +55,6 @@ public class NestedLoopJoinOperator
         this.outer = outer;
         this.inner = inner;
         result = new Vector[outer.columnCount() + inner.columnCount()];
-        outerBuffer = new Vector[outer.columnCount()];
-        innerBuffer = new Vector[inner.columnCount()];
     }
 
     @Override
@@ -121,11 +117,6 @@ public class NestedLoopJoinOperator
             mask = currentOuterMask.last(outerRemaining);
             innerProcessed = 1;
             outerProcessed = outerRemaining;
-
-            // TODO: should we compact outer if mask != all?
-            //    tradeoff: if we don't compact, inner will have to be replicated to cover all outer rows
-            //              if we do, extra copy for outer and inability to just transfer ownership of outer columns
-            //    maybe, we need a way to represent an RLE vector with holes?
         }
 
         currentInnerPosition += innerProcessed;
@@ -152,46 +143,24 @@ public class NestedLoopJoinOperator
         for (int i = 0; i < outerColumnCount; i++) {
             result[i] = outer.column(i);
         }
+
+        // the inner row is replicated to cover the whole outer batch, including the positions that aren't active
+        Batch batch = innerBatches.get(currentInnerBatch);
         for (int i = 0; i < inner.columnCount(); i++) {
-            innerBuffer[i] = allocator.reallocateIfNecessary(ALLOCATION_CONTEXT, innerBuffer[i], currentOuterMask.maxPosition() + 1, I64Vector::new);
-            replicate(
-                    innerBuffer[i],
-                    0,
-                    currentOuterMask.maxPosition() + 1,
-                    innerBatches.get(currentInnerBatch).columns[i],
-                    currentInnerPosition);
-
-            result[i + outerColumnCount] = innerBuffer[i];
+            result[i + outerColumnCount] = RleVector.constant(batch.columns()[i], currentInnerPosition, currentOuterMask.maxPosition() + 1);
         }
     }
 
     private int joinWithOuterRow()
     {
-        int batchSize = innerBatches.get(currentInnerBatch).length();
+        Batch batch = innerBatches.get(currentInnerBatch);
 
         int outerColumnCount = outer.columnCount();
         for (int i = 0; i < outerColumnCount; i++) {
-            outerBuffer[i] = allocator.reallocateIfNecessary(ALLOCATION_CONTEXT, outerBuffer[i], batchSize, I64Vector::new);
-            replicate(
-                    outerBuffer[i],
-                    0,
-                    batchSize,
-                    outer.column(i),
-                    currentOuterPosition);
-
-            result[i] = outerBuffer[i];
+            result[i] = RleVector.constant(outer.column(i), currentOuterPosition, batch.length());
         }
-        System.arraycopy(innerBatches.get(currentInnerBatch).columns(), 0, result, outerColumnCount, inner.columnCount());
-        return batchSize;
-    }
-
-    private void replicate(Vector output, int start, int length, Vector input, int position)
-    {
-        I64Vector outputVector = (I64Vector) output;
-        I64Vector inputVector = (I64Vector) input;
-
-        Arrays.fill(outputVector.values(), start, start + length, inputVector.values()[position]);
-        Arrays.fill(outputVector.nulls(), start, start + length, inputVector.nulls()[position]);
+        System.arraycopy(batch.columns(), 0, result, outerColumnCount, inner.columnCount());
+        return batch.length();
     }
 
     private void loadInnerIfNecessary()
@@ -199,71 +168,44 @@ public class NestedLoopJoinOperator
         if (!innerLoaded) {
             innerLoaded = true;
 
-            Vector[] columns = allocateNewBatch(inner.columnCount());
-            int outputPosition = 0;
+            ColumnarBuffer buffer = new ColumnarBuffer(allocator, ALLOCATION_CONTEXT, inner.columnCount());
+            Vector[] columns = new Vector[inner.columnCount()];
             innerRowCount = 0;
 
             while (inner.hasNext()) {
                 Mask mask = inner.next();
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i] = inner.column(i);
+                }
+
                 int maskOffset = 0;
                 while (maskOffset < mask.count()) {
-                    int copied = 0;
-                    for (int i = 0; i < columns.length; i++) {
-                        // TODO: allow transferring ownership from underlying operator in case we don't need to copy+compact
-                        copied = copyAndCompact((I64Vector) inner.column(i), mask, maskOffset, (I64Vector) columns[i], outputPosition);
-                    }
-                    outputPosition += copied;
+                    // TODO: allow transferring ownership from underlying operator in case we don't need to copy+compact
+                    int copied = Math.min(mask.count() - maskOffset, BATCH_SIZE - buffer.rowCount());
+                    buffer.append(columns, mask.last(mask.count() - maskOffset).first(copied));
                     maskOffset += copied;
                     innerRowCount += copied;
 
-                    if (outputPosition == BATCH_SIZE) {
-                        outputPosition = 0;
-                        innerBatches.add(new Batch(columns, BATCH_SIZE));
-                        columns = allocateNewBatch(inner.columnCount());
+                    if (buffer.rowCount() == BATCH_SIZE) {
+                        innerBatches.add(toBatch(buffer));
+                        buffer = new ColumnarBuffer(allocator, ALLOCATION_CONTEXT, inner.columnCount());
                     }
                 }
             }
 
-            if (outputPosition > 0) {
-                innerBatches.add(new Batch(columns, outputPosition));
+            if (buffer.rowCount() > 0) {
+                innerBatches.add(toBatch(buffer));
             }
         }
     }
 
-    private Vector[] allocateNewBatch(int columnCount)
+    private static Batch toBatch(ColumnarBuffer buffer)
     {
-        Vector[] columns = new Vector[columnCount];
-        for (int i = 0; i < columnCount; i++) {
-            columns[i] = allocator.allocate(ALLOCATION_CONTEXT, BATCH_SIZE, I64Vector::new);
+        Vector[] columns = new Vector[buffer.columnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = buffer.column(i);
         }
-        return columns;
-    }
-
-    /**
-     * @return the number of elements copied
-     */
-    private int copyAndCompact(I64Vector input, Mask mask, int maskStart, I64Vector output, int outputStart)
-    {
-        int outputPosition = outputStart;
-        int maskIndex = maskStart;
-
-        if (mask.all()) {
-            int length = Math.min(mask.count() - maskStart, output.length() - outputPosition);
-            System.arraycopy(input.nulls(), maskStart, output.nulls(), outputPosition, length);
-            System.arraycopy(input.values(), maskStart, output.values(), outputPosition, length);
-            outputPosition += length;
-        }
-        else {
-            while (outputPosition < output.length() && maskIndex < mask.count()) {
-                int inputPosition = mask.position(maskIndex);
-                output.nulls()[outputPosition] = input.nulls()[inputPosition];
-                output.values()[outputPosition] = input.values()[inputPosition];
-                outputPosition++;
-                maskIndex++;
-            }
-        }
-
-        return outputPosition - outputStart;
+        return new Batch(columns, buffer.rowCount());
     }
 
     @Override
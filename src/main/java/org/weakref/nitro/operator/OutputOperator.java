@@ -28,6 +28,7 @@ public class OutputOperator
     private final Allocator allocator;
 
     private final Operator source;
+    private final FlatColumns flat;
     private boolean done;
     private long rowCount;
 
@@ -35,6 +36,7 @@ public class OutputOperator
     {
         this.allocator = allocator;
         this.source = source;
+        flat = new FlatColumns(allocator, ALLOCATION_CONTEXT, source);
     }
 
     @Override
@@ -50,10 +52,11 @@ public class OutputOperator
 
         while (source.hasNext()) {
             Mask mask = source.next();
+            flat.reset();
 
             List<Vector> columns = new ArrayList<>();
             for (int i = 0; i < source.columnCount(); i++) {
-                columns.add(source.column(i));
+                columns.add(flat.column(i));
             }
 
             for (int position : mask) {
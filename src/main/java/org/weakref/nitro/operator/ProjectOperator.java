@@ -32,6 +32,7 @@ public class ProjectOperator
     private final Execution execution;
 
     private final Operator source;
+    private final FlatColumns flat;
     private Mask mask;
 
     private final List<Vector[]> inputs;
@@ -43,6 +44,7 @@ public class ProjectOperator
         this.allocator = allocator;
         this.source = source;
         this.execution = execution;
+        flat = new FlatColumns(allocator, ALLOCATION_CONTEXT, source);
 
         inputs = new ArrayList<>();
         buffers = new Vector[execution.operations().size()];
@@ -64,6 +66,7 @@ public class ProjectOperator
     {
         Arrays.fill(filled, false);
         mask = source.next();
+        flat.reset();
         return mask;
     }
 
@@ -106,7 +109,7 @@ public class ProjectOperator
         for (int i = 0; i < invocation.inputs().size(); i++) {
             int input = invocation.inputs().get(i);
             if (input < 0) {
-                arguments[i] = source.column(-(input + 1));
+                arguments[i] = flat.column(-(input + 1));
             }
             else {
                 evaluateRecursive(input);
@@ -0,0 +1,404 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.operator;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import org.weakref.nitro.data.Allocator;
+import org.weakref.nitro.data.ColumnarBuffer;
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.VectorType;
+import org.weakref.nitro.data.Vectors;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Joins each probe row with the build rows whose bounds contain the value of a probe column,
+ * as in {@code probe.ts BETWEEN build.start AND build.end}, or {@code probe.x > build.y} when
+ * only one bound is given.
+ * <p>
+ * The build side is sorted by its lower bound, and indexed by a max tree over the upper bounds in
+ * that order, laid out implicitly in a flat array. For each probe value, a binary search finds the
+ * last build row whose lower bound doesn't exceed the value. The matches are the rows up to it
+ * whose upper bound reaches the value, and the tree leads from each match to the previous one in
+ * O(log n), skipping over whole ranges of rows that end before the value. The work per probe row
+ * is therefore O((matches + 1) * log n), no matter how wide or skewed the intervals are.
+ * <p>
+ * Bounds are compared through order-preserving long keys (see {@link Vectors#sortKeys}), so
+ * exclusive bounds are turned into inclusive ones by adjusting the key by one, and a build side
+ * with only an upper bound is handled as one with only a lower bound by reversing the key order.
+ */
+public class RangeJoinOperator
+        implements Operator
+{
+    private static final Allocator.Context ALLOCATION_CONTEXT = new Allocator.Context("RangeJoinOperator");
+    private static final int BATCH_SIZE = 1024;
+    private static final int NOT_STARTED = Integer.MIN_VALUE;
+
+    public record Bound(int column, boolean inclusive)
+    {
+        public static Bound inclusive(int column)
+        {
+            return new Bound(column, true);
+        }
+
+        public static Bound exclusive(int column)
+        {
+            return new Bound(column, false);
+        }
+    }
+
+    private final Allocator allocator;
+    private final Operator probe;
+    private final FlatColumns flatProbe;
+    private final int probeColumn;
+    private final Operator build;
+    private final Optional<Bound> lower;
+    private final Optional<Bound> upper;
+
+    private ColumnarBuffer rows;
+    private VectorType keyType;
+    private int[] sortedRows;
+    private long[] lowers;
+    // max tree over the upper bounds: the children of node i are 2i and 2i + 1, and the leaves start at upperTreeLeaves
+    private long[] upperTree;
+    private int upperTreeLeaves;
+
+    private Mask probeMask;
+    private long[] probeKeys = new long[0];
+    private boolean[] probeNulls;
+    private int probeIndex;
+    private long probeKey;
+    private int scanIndex = NOT_STARTED;
+
+    private final int[] probePositions = new int[BATCH_SIZE];
+    private final int[] buildRows = new int[BATCH_SIZE];
+    private int outputCount;
+
+    private final Vector[] result;
+    private final boolean[] filled;
+    private boolean done;
+
+    public RangeJoinOperator(Allocator allocator, Operator probe, int probeColumn, Operator build, Optional<Bound> lower, Optional<Bound> upper)
+    {
+        checkArgument(lower.isPresent() || upper.isPresent(), "At least one bound is required");
+
+        this.allocator = allocator;
+        this.probe = probe;
+        flatProbe = new FlatColumns(allocator, ALLOCATION_CONTEXT, probe);
+        this.probeColumn = probeColumn;
+        this.build = build;
+        this.lower = lower;
+        this.upper = upper;
+
+        result = new Vector[probe.columnCount() + build.columnCount()];
+        filled = new boolean[result.length];
+    }
+
+    @Override
+    public int columnCount()
+    {
+        return result.length;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return !done;
+    }
+
+    @Override
+    public Mask next()
+    {
+        buildIfNecessary();
+        Arrays.fill(filled, false);
+        outputCount = 0;
+
+        while (outputCount == 0 && !done) {
+            if (probeMask == null || probeIndex == probeMask.count()) {
+                if (sortedRows.length == 0 || !probe.hasNext()) {
+                    done = true;
+                    break;
+                }
+                probeNextBatch();
+            }
+
+            emitMatches();
+        }
+
+        if (probeMask != null && probeIndex == probeMask.count() && !probe.hasNext()) {
+            done = true;
+        }
+
+        return Mask.all(outputCount);
+    }
+
+    private void buildIfNecessary()
+    {
+        if (rows != null) {
+            return;
+        }
+
+        rows = new ColumnarBuffer(allocator, ALLOCATION_CONTEXT, build.columnCount());
+        Vector[] columns = new Vector[build.columnCount()];
+        while (build.hasNext()) {
+            Mask mask = build.next();
+            if (mask.none()) {
+                continue;
+            }
+
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = build.column(i);
+            }
+            rows.append(columns, mask);
+        }
+
+        int rowCount = rows.rowCount();
+        Mask all = Mask.all(rowCount);
+        long[] lowerKeys = boundKeys(lower, all, Long.MIN_VALUE);
+        long[] upperKeys = boundKeys(upper, all, Long.MAX_VALUE);
+        boolean[] excluded = new boolean[rowCount];
+        exclude(lower, excluded);
+        exclude(upper, excluded);
+
+        if (lower.isEmpty()) {
+            // value <= upper is the same as ~upper <= ~value
+            for (int row = 0; row < rowCount; row++) {
+                lowerKeys[row] = ~upperKeys[row];
+                upperKeys[row] = Long.MAX_VALUE;
+            }
+        }
+
+        if (lower.isPresent() && !lower.get().inclusive()) {
+            for (int row = 0; row < rowCount; row++) {
+                excluded[row] |= lowerKeys[row] == Long.MAX_VALUE;
+                lowerKeys[row]++;
+            }
+        }
+        if (upper.isPresent() && !upper.get().inclusive()) {
+            // for an upper bound only, the keys are reversed, so the adjustment is too
+            for (int row = 0; row < rowCount; row++) {
+                if (lower.isPresent()) {
+                    excluded[row] |= upperKeys[row] == Long.MIN_VALUE;
+                    upperKeys[row]--;
+                }
+                else {
+                    excluded[row] |= lowerKeys[row] == Long.MAX_VALUE;
+                    lowerKeys[row]++;
+                }
+            }
+        }
+
+        int count = 0;
+        sortedRows = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            if (!excluded[row]) {
+                sortedRows[count] = row;
+                count++;
+            }
+        }
+        sortedRows = Arrays.copyOf(sortedRows, count);
+        IntArrays.quickSort(sortedRows, (left, right) -> Long.compare(lowerKeys[left], lowerKeys[right]));
+
+        lowers = new long[count];
+        upperTreeLeaves = Integer.highestOneBit(Math.max(count, 1) * 2 - 1);
+        upperTree = new long[upperTreeLeaves * 2];
+        Arrays.fill(upperTree, Long.MIN_VALUE);
+        for (int i = 0; i < count; i++) {
+            lowers[i] = lowerKeys[sortedRows[i]];
+            upperTree[upperTreeLeaves + i] = upperKeys[sortedRows[i]];
+        }
+        for (int node = upperTreeLeaves - 1; node > 0; node--) {
+            upperTree[node] = Math.max(upperTree[2 * node], upperTree[2 * node + 1]);
+        }
+    }
+
+    private long[] boundKeys(Optional<Bound> bound, Mask mask, long defaultKey)
+    {
+        long[] keys = new long[mask.count()];
+        if (bound.isEmpty() || mask.none()) {
+            Arrays.fill(keys, defaultKey);
+            return keys;
+        }
+
+        Vector vector = rows.column(bound.get().column());
+        checkArgument(keyType == null || keyType == VectorType.of(vector), "Bound types don't match: %s vs %s", keyType, VectorType.of(vector));
+        keyType = VectorType.of(vector);
+        Vectors.sortKeys(vector, mask, keys);
+        return keys;
+    }
+
+    private void exclude(Optional<Bound> bound, boolean[] excluded)
+    {
+        if (bound.isPresent() && rows.rowCount() > 0) {
+            boolean[] nulls = Vectors.nulls(rows.column(bound.get().column()));
+            for (int row = 0; row < excluded.length; row++) {
+                excluded[row] |= nulls[row];
+            }
+        }
+    }
+
+    private void probeNextBatch()
+    {
+        probeMask = probe.next();
+        flatProbe.reset();
+        probeIndex = 0;
+        scanIndex = NOT_STARTED;
+
+        if (probeMask.none()) {
+            return;
+        }
+
+        Vector values = flatProbe.column(probeColumn);
+        checkArgument(VectorType.of(values) == keyType, "Probe and bound types don't match: %s vs %s", VectorType.of(values), keyType);
+
+        if (probeKeys.length < probeMask.maxPosition() + 1) {
+            probeKeys = new long[probeMask.maxPosition() + 1];
+        }
+        Vectors.sortKeys(values, probeMask, probeKeys);
+        probeNulls = Vectors.nulls(values);
+    }
+
+    /**
+     * Expands the matches of the current probe batch into (probe position, build row) pairs,
+     * stopping when the output batch is full. Resumes from where the previous call left off.
+     */
+    private void emitMatches()
+    {
+        while (probeIndex < probeMask.count() && outputCount < BATCH_SIZE) {
+            int position = probeMask.position(probeIndex);
+            if (scanIndex == NOT_STARTED) {
+                if (probeNulls[position]) {
+                    probeIndex++;
+                    continue;
+                }
+
+                probeKey = lower.isPresent() ? probeKeys[position] : ~probeKeys[position];
+                scanIndex = lastUpperAtLeast(lastLowerAtMost(probeKey), probeKey);
+            }
+
+            while (scanIndex >= 0 && outputCount < BATCH_SIZE) {
+                probePositions[outputCount] = position;
+                buildRows[outputCount] = sortedRows[scanIndex];
+                outputCount++;
+                scanIndex = lastUpperAtLeast(scanIndex - 1, probeKey);
+            }
+
+            if (scanIndex >= 0) {
+                // output is full, continue with the rest of the matches in the next batch
+                return;
+            }
+
+            scanIndex = NOT_STARTED;
+            probeIndex++;
+        }
+    }
+
+    /**
+     * @return the index of the last build row (in sorted order) with a lower bound <= key, or -1
+     */
+    private int lastLowerAtMost(long key)
+    {
+        int low = 0;
+        int high = lowers.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (lowers[middle] <= key) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low - 1;
+    }
+
+    /**
+     * @return the index of the last build row (in sorted order) at or before the given index with an upper bound >= key, or -1
+     */
+    private int lastUpperAtLeast(int index, long key)
+    {
+        if (index < 0) {
+            return -1;
+        }
+
+        // climb until a left sibling covers rows that reach the key
+        int node = upperTreeLeaves + index;
+        if (upperTree[node] < key) {
+            while (true) {
+                if (node == 1) {
+                    return -1;
+                }
+                if ((node & 1) == 1 && upperTree[node - 1] >= key) {
+                    node--;
+                    break;
+                }
+                node >>>= 1;
+            }
+        }
+
+        // descend to the last leaf under it that reaches the key
+        while (node < upperTreeLeaves) {
+            node = upperTree[2 * node + 1] >= key ? 2 * node + 1 : 2 * node;
+        }
+        return node - upperTreeLeaves;
+    }
+
+    @Override
+    public void constrain(Mask mask)
+    {
+    }
+
+    @Override
+    public Vector column(int column)
+    {
+        if (!filled[column]) {
+            filled[column] = true;
+
+            int probeColumns = probe.columnCount();
+            if (outputCount == 0) {
+                if (result[column] == null) {
+                    VectorType type = column < probeColumns ? VectorType.I64 : rows.type(column - probeColumns);
+                    result[column] = allocator.allocate(ALLOCATION_CONTEXT, 0, type::allocate);
+                }
+            }
+            else if (column < probeColumns) {
+                result[column] = gather(probe.column(column), probePositions, result[column]);
+            }
+            else {
+                result[column] = gather(rows.column(column - probeColumns), buildRows, result[column]);
+            }
+        }
+
+        return result[column];
+    }
+
+    private Vector gather(Vector source, int[] positions, Vector buffer)
+    {
+        buffer = allocator.reallocateIfNecessary(ALLOCATION_CONTEXT, buffer, BATCH_SIZE, VectorType.of(source)::allocate);
+        Vectors.gather(source, positions, outputCount, buffer);
+        return buffer;
+    }
+
+    @Override
+    public void close()
+    {
+        probe.close();
+        build.close();
+        allocator.release(ALLOCATION_CONTEXT);
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.operator;
+
+import org.weakref.nitro.data.Allocator;
+import org.weakref.nitro.data.ColumnarBuffer;
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.VectorType;
+import org.weakref.nitro.data.Vectors;
+import org.weakref.nitro.operator.join.JoinHashTable;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Filters the probe side by whether its keys have a match on the build side, as in
+ * EXISTS, NOT EXISTS, IN and NOT IN subqueries.
+ * <p>
+ * Only the build keys are loaded, and the output is the probe side itself with a narrowed
+ * mask, so no columns are copied. Like in {@link FilterOperator}, the narrowed mask is passed
+ * on to the probe side via {@link Operator#constrain(Mask)}.
+ */
+public class SemiJoinOperator
+        implements Operator
+{
+    private static final Allocator.Context ALLOCATION_CONTEXT = new Allocator.Context("SemiJoinOperator");
+
+    public enum Type
+    {
+        /**
+         * Rows that have at least one match (EXISTS, IN).
+         */
+        SEMI,
+        /**
+         * Rows that have no match, including rows with null keys (NOT EXISTS).
+         */
+        ANTI,
+        /**
+         * Rows for which the key is known not to be in the build side (NOT IN). A null key is
+         * not known to be absent, unless the build side is empty, and if the build side contains a
+         * null, no key is known to be absent.
+         */
+        NULL_AWARE_ANTI,
+    }
+
+    private final Allocator allocator;
+    private final Operator probe;
+    private final FlatColumns flatProbe;
+    private final Operator build;
+    private final int[] probeKeys;
+    private final int[] buildKeys;
+    private final Type type;
+
+    private JoinHashTable table;
+
+    private int[] matches = new int[0];
+    private int[] positions = new int[0];
+
+    public SemiJoinOperator(Allocator allocator, Operator probe, List<Integer> probeKeys, Operator build, List<Integer> buildKeys, Type type)
+    {
+        checkArgument(!probeKeys.isEmpty(), "At least one join key is required");
+        checkArgument(probeKeys.size() == buildKeys.size(), "Probe keys (%s) and build keys (%s) must have the same size", probeKeys.size(), buildKeys.size());
+        checkArgument(type != Type.NULL_AWARE_ANTI || probeKeys.size() == 1, "Null-aware anti join requires a single key");
+
+        this.allocator = allocator;
+        this.probe = probe;
+        flatProbe = new FlatColumns(allocator, ALLOCATION_CONTEXT, probe);
+        this.build = build;
+        this.probeKeys = probeKeys.stream().mapToInt(Integer::intValue).toArray();
+        this.buildKeys = buildKeys.stream().mapToInt(Integer::intValue).toArray();
+        this.type = type;
+    }
+
+    @Override
+    public int columnCount()
+    {
+        return probe.columnCount();
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return probe.hasNext();
+    }
+
+    @Override
+    public Mask next()
+    {
+        buildIfNecessary();
+
+        Mask mask = probe.next();
+        flatProbe.reset();
+        if (mask.none()) {
+            return mask;
+        }
+
+        // an empty build side has no key types to check against
+        if (table.rowCount() == 0) {
+            return type == Type.SEMI ? empty() : mask;
+        }
+
+        Vector[] keys = new Vector[probeKeys.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = flatProbe.column(probeKeys[i]);
+            checkArgument(
+                    VectorType.of(keys[i]) == table.rows().type(i),
+                    "Join key types don't match: %s vs %s", VectorType.of(keys[i]), table.rows().type(i));
+        }
+
+        if (type == Type.NULL_AWARE_ANTI && table.hasNullKeys()) {
+            return empty();
+        }
+
+        int size = mask.maxPosition() + 1;
+        if (matches.length < size) {
+            matches = new int[size];
+        }
+        if (positions.length < mask.count()) {
+            positions = new int[mask.count()];
+        }
+
+        table.lookup(keys, mask, matches);
+
+        int count = 0;
+        switch (type) {
+            case SEMI -> {
+                for (int i = 0; i < mask.count(); i++) {
+                    int position = mask.position(i);
+                    positions[count] = position;
+                    count += matches[position] != -1 ? 1 : 0;
+                }
+            }
+            case ANTI -> {
+                for (int i = 0; i < mask.count(); i++) {
+                    int position = mask.position(i);
+                    positions[count] = position;
+                    count += matches[position] == -1 ? 1 : 0;
+                }
+            }
+            case NULL_AWARE_ANTI -> {
+                boolean[] nulls = Vectors.nulls(keys[0]);
+                for (int i = 0; i < mask.count(); i++) {
+                    int position = mask.position(i);
+                    positions[count] = position;
+                    count += matches[position] == -1 & !nulls[position] ? 1 : 0;
+                }
+            }
+        }
+
+        mask = Mask.sparse(positions, count);
+        probe.constrain(mask);
+        return mask;
+    }
+
+    private void buildIfNecessary()
+    {
+        if (table != null) {
+            return;
+        }
+
+        ColumnarBuffer keys = new ColumnarBuffer(allocator, ALLOCATION_CONTEXT, buildKeys.length);
+        Vector[] columns = new Vector[buildKeys.length];
+        while (build.hasNext()) {
+            Mask mask = build.next();
+            if (mask.none()) {
+                continue;
+            }
+
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = build.column(buildKeys[i]);
+            }
+            keys.append(columns, mask);
+        }
+
+        int[] keyColumns = new int[buildKeys.length];
+        for (int i = 0; i < keyColumns.length; i++) {
+            keyColumns[i] = i;
+        }
+        table = new JoinHashTable(keys, keyColumns);
+    }
+
+    private Mask empty()
+    {
+        Mask mask = Mask.sparse(positions, 0);
+        probe.constrain(mask);
+        return mask;
+    }
+
+    @Override
+    public void constrain(Mask mask)
+    {
+        probe.constrain(mask);
+    }
+
+    @Override
+    public Vector column(int column)
+    {
+        return probe.column(column);
+    }
+
+    @Override
+    public void close()
+    {
+        probe.close();
+        build.close();
+        allocator.release(ALLOCATION_CONTEXT);
+    }
+}
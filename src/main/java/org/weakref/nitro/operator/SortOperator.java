@@ -0,0 +1,257 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.operator;
+
+import org.weakref.nitro.data.Allocator;
+import org.weakref.nitro.data.ColumnarBuffer;
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.SpillReader;
+import org.weakref.nitro.data.SpillWriter;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.VectorType;
+import org.weakref.nitro.data.Vectors;
+import org.weakref.nitro.operator.sort.RowSorter;
+import org.weakref.nitro.operator.sort.RunMerger;
+import org.weakref.nitro.operator.sort.SortKey;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Sorts its whole input by one or more keys.
+ * <p>
+ * The input is buffered and only the row indexes are sorted (see {@link RowSorter}). The output is
+ * produced in batches by gathering the buffered columns in sorted order.
+ * <p>
+ * If a memory budget is given, whenever the buffered rows exceed it they are sorted and written
+ * to a temporary file as a sorted run, and the buffer is freed. Once the input is exhausted, the
+ * runs are streamed back and combined with a k-way merge (see {@link RunMerger}), so that memory
+ * stays bounded by the budget plus one block per run. Runs are written and read sequentially.
+ */
+public class SortOperator
+        implements Operator
+{
+    private static final Allocator.Context ALLOCATION_CONTEXT = new Allocator.Context("SortOperator");
+    private static final int BATCH_SIZE = 1024;
+
+    private final Allocator allocator;
+    private final Allocator.Context context;
+    private final List<SortKey> keys;
+    private final Operator source;
+    private final Path spillDirectory;
+
+    private final ColumnarBuffer rows;
+    private boolean sorted;
+    private int[] order;
+    private int position;
+
+    private final List<Path> runFiles = new ArrayList<>();
+    private final List<SpillReader> runs = new ArrayList<>();
+    private RunMerger merger;
+    private final Vector[] spillBlock;
+
+    private final int[] batchRows = new int[BATCH_SIZE];
+    private final int[] batchRuns = new int[BATCH_SIZE];
+    private int outputCount;
+
+    private final Vector[] result;
+    private final boolean[] filled;
+
+    public SortOperator(Allocator allocator, List<SortKey> keys, Operator source)
+    {
+        this(allocator, ALLOCATION_CONTEXT, keys, source, null);
+    }
+
+    /**
+     * @param memoryBudget bytes that can be buffered before spilling a sorted run to spillDirectory
+     */
+    public SortOperator(Allocator allocator, List<SortKey> keys, Operator source, long memoryBudget, Path spillDirectory)
+    {
+        this(allocator, Allocator.Context.unique("SortOperator", memoryBudget), keys, source, spillDirectory);
+        checkArgument(memoryBudget > 0, "Memory budget must be positive: %s", memoryBudget);
+    }
+
+    private SortOperator(Allocator allocator, Allocator.Context context, List<SortKey> keys, Operator source, Path spillDirectory)
+    {
+        for (SortKey key : keys) {
+            checkArgument(key.column() < source.columnCount(), "Invalid sort column: %s", key.column());
+        }
+
+        this.allocator = allocator;
+        this.context = context;
+        this.keys = List.copyOf(keys);
+        this.source = source;
+        this.spillDirectory = spillDirectory;
+
+        rows = new ColumnarBuffer(allocator, context, source.columnCount());
+        spillBlock = new Vector[source.columnCount()];
+        result = new Vector[source.columnCount()];
+        filled = new boolean[result.length];
+    }
+
+    @Override
+    public int columnCount()
+    {
+        return source.columnCount();
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if (!sorted) {
+            return true;
+        }
+        return merger != null ? merger.hasNext() : position < order.length;
+    }
+
+    @Override
+    public Mask next()
+    {
+        sortIfNecessary();
+
+        Arrays.fill(filled, false);
+        if (merger != null) {
+            outputCount = merger.next(batchRuns, batchRows, BATCH_SIZE);
+        }
+        else {
+            outputCount = Math.min(BATCH_SIZE, order.length - position);
+            System.arraycopy(order, position, batchRows, 0, outputCount);
+            position += outputCount;
+        }
+
+        return Mask.all(outputCount);
+    }
+
+    private void sortIfNecessary()
+    {
+        if (sorted) {
+            return;
+        }
+        sorted = true;
+
+        Vector[] columns = new Vector[source.columnCount()];
+        while (source.hasNext()) {
+            Mask mask = source.next();
+            if (mask.none()) {
+                continue;
+            }
+
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = source.column(i);
+            }
+            rows.append(columns, mask);
+
+            if (spillDirectory != null && allocator.exceedsBudget(context)) {
+                spill();
+            }
+        }
+
+        if (runFiles.isEmpty()) {
+            order = RowSorter.sort(rows, keys);
+            return;
+        }
+
+        if (rows.rowCount() > 0) {
+            spill();
+        }
+        for (Path file : runFiles) {
+            runs.add(new SpillReader(file, source.columnCount()));
+        }
+        merger = new RunMerger(runs, keys);
+    }
+
+    private void spill()
+    {
+        int[] runOrder = RowSorter.sort(rows, keys);
+
+        Path file;
+        try {
+            file = Files.createTempFile(spillDirectory, "sort-", ".run");
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        runFiles.add(file);
+
+        try (SpillWriter writer = new SpillWriter(file)) {
+            for (int start = 0; start < runOrder.length; start += BATCH_SIZE) {
+                int count = Math.min(BATCH_SIZE, runOrder.length - start);
+                System.arraycopy(runOrder, start, batchRows, 0, count);
+                for (int i = 0; i < spillBlock.length; i++) {
+                    spillBlock[i] = allocator.reallocateIfNecessary(context, spillBlock[i], BATCH_SIZE, rows.type(i)::allocate);
+                    Vectors.gather(rows.column(i), batchRows, count, spillBlock[i]);
+                }
+                writer.write(spillBlock, count);
+            }
+        }
+
+        rows.release();
+    }
+
+    @Override
+    public void constrain(Mask mask)
+    {
+    }
+
+    @Override
+    public Vector column(int column)
+    {
+        if (!filled[column]) {
+            filled[column] = true;
+
+            if (merger != null) {
+                Vector[] sources = new Vector[runs.size()];
+                for (int run = 0; run < sources.length; run++) {
+                    sources[run] = merger.column(run, column);
+                }
+                VectorType type = outputCount == 0 ? VectorType.I64 : VectorType.of(sources[batchRuns[0]]);
+                result[column] = allocator.reallocateIfNecessary(context, result[column], BATCH_SIZE, type::allocate);
+                Vectors.gather(sources, batchRuns, batchRows, outputCount, result[column]);
+            }
+            else {
+                result[column] = allocator.reallocateIfNecessary(context, result[column], BATCH_SIZE, rows.type(column)::allocate);
+                if (outputCount > 0) {
+                    Vectors.gather(rows.column(column), batchRows, outputCount, result[column]);
+                }
+            }
+        }
+
+        return result[column];
+    }
+
+    @Override
+    public void close()
+    {
+        source.close();
+        for (SpillReader run : runs) {
+            run.close();
+        }
+        try {
+            for (Path file : runFiles) {
+                Files.deleteIfExists(file);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        allocator.release(context);
+    }
+}
@@ -14,33 +14,70 @@
 package org.weakref.nitro.operator;
 
 import org.weakref.nitro.data.Allocator;
-import org.weakref.nitro.data.I64Vector;
 import org.weakref.nitro.data.Mask;
 import org.weakref.nitro.data.Vector;
-
-import java.util.Comparator;
-import java.util.PriorityQueue;
-
+import org.weakref.nitro.operator.sort.SortKey;
+import org.weakref.nitro.operator.sort.TopNSlots;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Keeps the first n rows of the input in the order of the sort keys.
+ * <p>
+ * The candidates are tracked in n slots (see {@link TopNSlots}). A binary heap of slot indexes,
+ * ordered so that the row that sorts last is at the top, decides which slot an incoming row
+ * replaces. The rows are materialized late, and the output is gathered once, at the end.
+ * <p>
+ * Once n rows have been seen, the current top of the heap acts as a dynamic filter: each batch is
+ * first narrowed to the rows that can still make it in, and the source is constrained to them
+ * before any other column is read.
+ */
 public class TopNOperator
         implements Operator
 {
     private static final Allocator.Context ALLOCATION_CONTEXT = new Allocator.Context("TopNOperator");
+
     private final Allocator allocator;
 
     private final int n;
-    private final int column;
+    private final List<SortKey> keys;
     private final Operator source;
+    private final FlatColumns flat;
 
-    private final Vector[] result;
+    private final TopNSlots slots;
+    private int[] heap = new int[0];
+    private int size;
+    private int[] passed = new int[0];
+
+    private Vector[] result;
     private boolean done;
 
+    /**
+     * Keeps the n largest values of the column, with nulls last
+     */
     public TopNOperator(Allocator allocator, int n, int column, Operator source)
     {
+        this(allocator, n, List.of(SortKey.descending(column)), source);
+    }
+
+    public TopNOperator(Allocator allocator, int n, List<SortKey> keys, Operator source)
+    {
+        checkArgument(n >= 0, "n must be non-negative: %s", n);
+        checkArgument(!keys.isEmpty(), "At least one sort key is required");
+        for (SortKey key : keys) {
+            checkArgument(key.column() < source.columnCount(), "Invalid sort column: %s", key.column());
+        }
+
         this.allocator = allocator;
         this.n = n;
-        this.column = column;
+        this.keys = List.copyOf(keys);
         this.source = source;
-        result = new I64Vector[source.columnCount()];
+        flat = new FlatColumns(allocator, ALLOCATION_CONTEXT, source);
+
+        slots = new TopNSlots(allocator, ALLOCATION_CONTEXT, keys, source.columnCount());
     }
 
     @Override
@@ -58,81 +95,108 @@ public class TopNOperator
     @Override
     public Mask next()
     {
-        // TODO: flat memory priority queue
-        PriorityQueue<Entry> queue = new PriorityQueue<>(n, Comparator.comparingLong(e -> e.value));
-
-        for (int i = 0; i < result.length; i++) {
-            result[i] = allocator.allocate(ALLOCATION_CONTEXT, n, I64Vector::new);
-        }
-
         while (source.hasNext()) {
             Mask mask = source.next();
-
-            for (int position : mask) {
-                I64Vector sortColumn = (I64Vector) source.column(column);
-                if (sortColumn.nulls()[position]) {
-                    // Skip nulls for now
-                    continue;
-                }
-
-                long value = sortColumn.values()[position];
-                if (queue.size() < n) {
-                    int slot = queue.size();
-                    queue.add(new Entry(value, slot));
-                    copyToBuffer(position, slot);
-                }
-                else {
-                    Entry head = queue.peek();
-                    if (value > head.value) {
-                        queue.poll();
-                        queue.add(new Entry(value, head.position));
-                        copyToBuffer(position, head.position);
-                    }
-                }
+            flat.reset();
+            if (mask.none() || n == 0) {
+                continue;
             }
+
+            addBatch(mask);
         }
 
-        int count = queue.size();
-        reorderBuffer(queue);
+        int count = size;
+        int[] order = new int[count];
+        slots.drain(heap, 0, size, order, 0);
+        size = 0;
+        result = slots.gather(order, count);
 
         done = true;
-        return Mask.range(0, count);
+        return Mask.all(count);
     }
 
-    private void reorderBuffer(PriorityQueue<Entry> queue)
+    private void addBatch(Mask mask)
     {
-        long[] temp = new long[columnCount()];
-
-        int[] remap = new int[queue.size()];
-        for (int i = 0; i < remap.length; i++) {
-            remap[i] = i;
+        slots.startBatch(mask.count());
+
+        int length = mask.maxPosition() + 1;
+        slots.encodeKey(0, flat.column(keys.get(0).column()), length);
+        if (size == n) {
+            mask = applyThreshold(mask);
+            source.constrain(mask);
+            if (mask.none()) {
+                return;
+            }
+            // the source may only produce the remaining keys for the narrowed rows
+            length = mask.maxPosition() + 1;
+        }
+        for (int i = 1; i < keys.size(); i++) {
+            slots.encodeKey(i, flat.column(keys.get(i).column()), length);
         }
 
-        int current = queue.size() - 1;
-        while (!queue.isEmpty()) {
-            Entry entry = queue.poll();
-            for (int i = 0; i < result.length; i++) {
-                long[] values = ((I64Vector) result[i]).values();
+        if (size < n) {
+            ensureCapacity((int) Math.min(n, (long) size + mask.count()));
+        }
 
-                temp[i] = values[current];
-                values[current] = values[remap[entry.position]];
-                values[remap[entry.position]] = temp[i];
+        for (int i = 0; i < mask.count(); i++) {
+            int position = mask.position(i);
 
-                remap[current] = remap[entry.position];
+            if (size < n) {
+                heap[size] = size;
+                slots.accept(size, position);
+                size++;
+                slots.siftUp(heap, 0, size - 1);
             }
+            else if (slots.sortsBefore(position, heap[0])) {
+                slots.accept(heap[0], position);
+                slots.siftDown(heap, 0, size, 0);
+            }
+        }
 
-            current--;
+        slots.retain(source);
+        if (slots.needsCompaction(size)) {
+            slots.compact(heap, size);
         }
     }
 
-    private void copyToBuffer(int from, int to)
+    /**
+     * Grows the heap and the slots with the rows seen, rather than up front, since n may be far
+     * larger than the input.
+     */
+    private void ensureCapacity(int required)
     {
-        for (int i = 0; i < result.length; i++) {
-            Vector column = source.column(i);
-            ((I64Vector) result[i]).values()[to] = ((I64Vector) column).values()[from];
+        if (required > heap.length) {
+            int capacity = (int) Math.min(n, Math.max(required, 2L * heap.length));
+            heap = Arrays.copyOf(heap, capacity);
+            slots.ensureCapacity(capacity);
         }
     }
 
+    /**
+     * Once the heap is full, the row at its top is a threshold that any other row has to sort
+     * before to be kept. Narrows the mask to the rows that pass on the first key alone, so that the
+     * rest of the columns are only produced for those.
+     */
+    private Mask applyThreshold(Mask mask)
+    {
+        if (passed.length < mask.count()) {
+            passed = new int[mask.count()];
+        }
+
+        int top = heap[0];
+        int count = 0;
+        for (int i = 0; i < mask.count(); i++) {
+            int position = mask.position(i);
+            passed[count] = position;
+            count += slots.mayPrecede(position, top) ? 1 : 0;
+        }
+
+        if (count == mask.count()) {
+            return mask;
+        }
+        return Mask.sparse(Arrays.copyOf(passed, count), count);
+    }
+
     @Override
     public void constrain(Mask mask)
     {
@@ -151,6 +215,4 @@ public class TopNOperator
         source.close();
         allocator.release(ALLOCATION_CONTEXT);
     }
-
-    record Entry(long value, int position) {}
 }
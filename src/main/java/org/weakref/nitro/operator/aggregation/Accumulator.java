@@ -16,6 +16,15 @@ package org.weakref.nitro.operator.aggregation;
 import org.weakref.nitro.data.Mask;
 import org.weakref.nitro.data.Vector;
 
+/**
+ * Computes an aggregation into a state vector with one position per group.
+ * <p>
+ * States are flat vectors, so they are also the intermediate representation of the aggregation:
+ * a partial aggregation outputs them as ordinary columns, which can be spilled with
+ * {@link org.weakref.nitro.data.SpillWriter} or handed to another thread, and later merged into
+ * another state with {@link #combine}. Only the final step turns states into values with
+ * {@link #result}, which need not be mergeable.
+ */
 public interface Accumulator
 {
     Vector allocate(int size);
@@ -26,5 +35,14 @@ public interface Accumulator
 
     void accumulate(Vector state, Vector groups, Mask mask, ColumnAccessor columns);
 
+    /**
+     * For each active position p, merges otherState[p] into state[groupMapping[p]]. The other state
+     * must come from an accumulator of the same kind.
+     */
+    void combine(Vector state, Vector otherState, Vector groupMapping, Mask mask);
+
+    /**
+     * @return the values of groups [0, maxGroup], either in the output or, if they're the same, in the state itself
+     */
     Vector result(int maxGroup, Vector state, Vector output);
 }
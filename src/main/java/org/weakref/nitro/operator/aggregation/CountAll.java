@@ -71,6 +71,20 @@ public class CountAll
         stateVector.nulls()[group] = false;
     }
 
+    @Override
+    public void combine(Vector state, Vector otherState, Vector groupMapping, Mask mask)
+    {
+        I64Vector stateVector = (I64Vector) state;
+        I64Vector otherVector = (I64Vector) otherState;
+        I64Vector groupVector = (I64Vector) groupMapping;
+
+        for (int position : mask) {
+            int group = toIntExact(groupVector.values()[position]);
+            stateVector.values()[group] += otherVector.values()[position];
+            stateVector.nulls()[group] = false;
+        }
+    }
+
     @Override
     public Vector result(int maxGroup, Vector state, Vector output)
     {
@@ -16,6 +16,7 @@ package org.weakref.nitro.operator.aggregation;
 import org.weakref.nitro.data.I64Vector;
 import org.weakref.nitro.data.Mask;
 import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.Vectors;
 
 import java.util.Arrays;
 
@@ -48,10 +49,10 @@ public class CountColumn
     public void accumulate(Vector state, int group, Mask mask, ColumnAccessor columns)
     {
         I64Vector stateVector = (I64Vector) state;
-        I64Vector inputVector = (I64Vector) columns.column(inputColumn);
+        boolean[] nulls = Vectors.nulls(columns.column(inputColumn));
 
         for (int position : mask) {
-            accumulate(stateVector, group, inputVector, position);
+            accumulate(stateVector, group, nulls, position);
         }
     }
 
@@ -60,21 +61,35 @@ public class CountColumn
     {
         I64Vector stateVector = (I64Vector) state;
         I64Vector groupVector = (I64Vector) groups;
-        I64Vector inputVector = (I64Vector) columns.column(inputColumn);
+        boolean[] nulls = Vectors.nulls(columns.column(inputColumn));
 
         for (int position : mask) {
             int group = toIntExact(groupVector.values()[position]);
-            accumulate(stateVector, group, inputVector, position);
+            accumulate(stateVector, group, nulls, position);
         }
     }
 
-    private static void accumulate(I64Vector state, int group, I64Vector input, int position)
+    private static void accumulate(I64Vector state, int group, boolean[] nulls, int position)
     {
-        if (!input.nulls()[position]) {
+        if (!nulls[position]) {
             state.values()[group]++;
         }
     }
 
+    @Override
+    public void combine(Vector state, Vector otherState, Vector groupMapping, Mask mask)
+    {
+        I64Vector stateVector = (I64Vector) state;
+        I64Vector otherVector = (I64Vector) otherState;
+        I64Vector groupVector = (I64Vector) groupMapping;
+
+        for (int position : mask) {
+            int group = toIntExact(groupVector.values()[position]);
+            stateVector.values()[group] += otherVector.values()[position];
+            stateVector.nulls()[group] = false;
+        }
+    }
+
     @Override
     public Vector result(int maxGroup, Vector state, Vector output)
     {
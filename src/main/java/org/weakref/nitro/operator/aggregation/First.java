@@ -13,6 +13,7 @@
  */
 package org.weakref.nitro.operator.aggregation;
 
+import org.weakref.nitro.data.I32Vector;
 import org.weakref.nitro.data.I64Vector;
 import org.weakref.nitro.data.Mask;
 import org.weakref.nitro.data.Vector;
@@ -47,10 +48,20 @@ public class First
     public void accumulate(Vector state, int group, Mask mask, ColumnAccessor columns)
     {
         I64Vector stateVector = (I64Vector) state;
-        I64Vector inputVector = (I64Vector) columns.column(inputColumn);
+        Vector input = columns.column(inputColumn);
 
-        for (int position : mask) {
-            accumulate(stateVector, group, inputVector, position);
+        switch (input) {
+            case I64Vector inputVector -> {
+                for (int position : mask) {
+                    accumulate(stateVector, group, inputVector, position);
+                }
+            }
+            case I32Vector inputVector -> {
+                for (int position : mask) {
+                    accumulate(stateVector, group, inputVector, position);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unsupported input: " + input.getClass().getSimpleName());
         }
     }
 
@@ -59,11 +70,22 @@ public class First
     {
         I64Vector stateVector = (I64Vector) state;
         I64Vector groupVector = (I64Vector) groups;
-        I64Vector inputVector = (I64Vector) columns.column(inputColumn);
+        Vector input = columns.column(inputColumn);
 
-        for (int position : mask) {
-            int group = toIntExact(groupVector.values()[position]);
-            accumulate(stateVector, group, inputVector, position);
+        switch (input) {
+            case I64Vector inputVector -> {
+                for (int position : mask) {
+                    int group = toIntExact(groupVector.values()[position]);
+                    accumulate(stateVector, group, inputVector, position);
+                }
+            }
+            case I32Vector inputVector -> {
+                for (int position : mask) {
+                    int group = toIntExact(groupVector.values()[position]);
+                    accumulate(stateVector, group, inputVector, position);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unsupported input: " + input.getClass().getSimpleName());
         }
     }
 
@@ -75,6 +97,30 @@ public class First
         }
     }
 
+    private static void accumulate(I64Vector state, int group, I32Vector input, int position)
+    {
+        if (state.nulls()[group]) {
+            state.values()[group] = input.values()[position];
+            state.nulls()[group] = input.nulls()[position];
+        }
+    }
+
+    @Override
+    public void combine(Vector state, Vector otherState, Vector groupMapping, Mask mask)
+    {
+        I64Vector stateVector = (I64Vector) state;
+        I64Vector otherVector = (I64Vector) otherState;
+        I64Vector groupVector = (I64Vector) groupMapping;
+
+        for (int position : mask) {
+            int group = toIntExact(groupVector.values()[position]);
+            if (stateVector.nulls()[group]) {
+                stateVector.values()[group] = otherVector.values()[position];
+                stateVector.nulls()[group] = otherVector.nulls()[position];
+            }
+        }
+    }
+
     @Override
     public Vector result(int maxGroup, Vector state, Vector output)
     {
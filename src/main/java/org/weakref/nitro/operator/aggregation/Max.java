@@ -13,6 +13,7 @@
  */
 package org.weakref.nitro.operator.aggregation;
 
+import org.weakref.nitro.data.I32Vector;
 import org.weakref.nitro.data.I64Vector;
 import org.weakref.nitro.data.Mask;
 import org.weakref.nitro.data.Vector;
@@ -47,10 +48,20 @@ public class Max
     public void accumulate(Vector state, int group, Mask mask, ColumnAccessor columns)
     {
         I64Vector stateVector = (I64Vector) state;
-        I64Vector inputVector = (I64Vector) columns.column(inputColumn);
+        Vector input = columns.column(inputColumn);
 
-        for (int position : mask) {
-            accumulate(stateVector, group, inputVector, position);
+        switch (input) {
+            case I64Vector inputVector -> {
+                for (int position : mask) {
+                    accumulate(stateVector, group, inputVector, position);
+                }
+            }
+            case I32Vector inputVector -> {
+                for (int position : mask) {
+                    accumulate(stateVector, group, inputVector, position);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unsupported input: " + input.getClass().getSimpleName());
         }
     }
 
@@ -59,11 +70,22 @@ public class Max
     {
         I64Vector stateVector = (I64Vector) state;
         I64Vector groupVector = (I64Vector) groups;
-        I64Vector inputVector = (I64Vector) columns.column(inputColumn);
+        Vector input = columns.column(inputColumn);
 
-        for (int position : mask) {
-            int group = toIntExact(groupVector.values()[position]);
-            accumulate(stateVector, group, inputVector, position);
+        switch (input) {
+            case I64Vector inputVector -> {
+                for (int position : mask) {
+                    int group = toIntExact(groupVector.values()[position]);
+                    accumulate(stateVector, group, inputVector, position);
+                }
+            }
+            case I32Vector inputVector -> {
+                for (int position : mask) {
+                    int group = toIntExact(groupVector.values()[position]);
+                    accumulate(stateVector, group, inputVector, position);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unsupported input: " + input.getClass().getSimpleName());
         }
     }
 
@@ -79,6 +101,35 @@ public class Max
         }
     }
 
+    private static void accumulate(I64Vector state, int group, I32Vector input, int position)
+    {
+        if (state.nulls()[group]) {
+            state.values()[group] = input.values()[position];
+            state.nulls()[group] = input.nulls()[position];
+        }
+        else if (!input.nulls()[position]) {
+            state.values()[group] = Math.max(state.values()[group], input.values()[position]);
+            state.nulls()[group] = false;
+        }
+    }
+
+    @Override
+    public void combine(Vector state, Vector otherState, Vector groupMapping, Mask mask)
+    {
+        I64Vector stateVector = (I64Vector) state;
+        I64Vector otherVector = (I64Vector) otherState;
+        I64Vector groupVector = (I64Vector) groupMapping;
+
+        for (int position : mask) {
+            int group = toIntExact(groupVector.values()[position]);
+            if (!otherVector.nulls()[position]) {
+                long value = otherVector.values()[position];
+                stateVector.values()[group] = stateVector.nulls()[group] ? value : Math.max(stateVector.values()[group], value);
+                stateVector.nulls()[group] = false;
+            }
+        }
+    }
+
     @Override
     public Vector result(int maxGroup, Vector state, Vector output)
     {
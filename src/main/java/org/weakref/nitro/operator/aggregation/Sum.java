@@ -13,6 +13,7 @@
  */
 package org.weakref.nitro.operator.aggregation;
 
+import org.weakref.nitro.data.I32Vector;
 import org.weakref.nitro.data.I64Vector;
 import org.weakref.nitro.data.Mask;
 import org.weakref.nitro.data.Vector;
@@ -41,16 +42,29 @@ public class Sum
     public void initialize(Vector state, int offset, int length)
     {
         Arrays.fill(((I64Vector) state).nulls(), offset, offset + length, true);
+        Arrays.fill(((I64Vector) state).values(), offset, offset + length, 0L);
     }
 
     @Override
     public void accumulate(Vector state, int group, Mask mask, ColumnAccessor columns)
     {
         I64Vector stateVector = (I64Vector) state;
-        I64Vector inputVector = (I64Vector) columns.column(inputColumn);
+        Vector input = columns.column(inputColumn);
 
-        boolean[] nulls = inputVector.nulls();
-        long[] values = inputVector.values();
+        long sum = switch (input) {
+            case I64Vector vector -> sum(vector, mask);
+            case I32Vector vector -> sum(vector, mask);
+            default -> throw new IllegalArgumentException("Unsupported input: " + input.getClass().getSimpleName());
+        };
+
+        stateVector.nulls()[group] = false;
+        stateVector.values()[group] += sum;
+    }
+
+    private static long sum(I64Vector input, Mask mask)
+    {
+        boolean[] nulls = input.nulls();
+        long[] values = input.values();
 
         long sum = 0;
         if (mask.all()) {
@@ -64,9 +78,27 @@ public class Sum
                 sum += nulls[position] ? 0 : values[position];
             }
         }
+        return sum;
+    }
 
-        stateVector.nulls()[group] = false;
-        stateVector.values()[group] += sum;
+    private static long sum(I32Vector input, Mask mask)
+    {
+        boolean[] nulls = input.nulls();
+        int[] values = input.values();
+
+        long sum = 0;
+        if (mask.all()) {
+            int max = mask.maxPosition();
+            for (int position = 0; position <= max; position++) {
+                sum += nulls[position] ? 0 : values[position];
+            }
+        }
+        else {
+            for (int position : mask) {
+                sum += nulls[position] ? 0 : values[position];
+            }
+        }
+        return sum;
     }
 
     @Override
@@ -74,19 +106,38 @@ public class Sum
     {
         I64Vector stateVector = (I64Vector) state;
         I64Vector groupVector = (I64Vector) groups;
-        I64Vector inputVector = (I64Vector) columns.column(inputColumn);
+        Vector input = columns.column(inputColumn);
 
-        if (mask.all()) {
-            for (int position = 0; position <= mask.maxPosition(); position++) {
-                int group = toIntExact(groupVector.values()[position]);
-                accumulate(stateVector, group, inputVector, position);
+        switch (input) {
+            case I64Vector inputVector -> {
+                if (mask.all()) {
+                    for (int position = 0; position <= mask.maxPosition(); position++) {
+                        int group = toIntExact(groupVector.values()[position]);
+                        accumulate(stateVector, group, inputVector, position);
+                    }
+                }
+                else {
+                    for (int position : mask) {
+                        int group = toIntExact(groupVector.values()[position]);
+                        accumulate(stateVector, group, inputVector, position);
+                    }
+                }
             }
-        }
-        else {
-            for (int position : mask) {
-                int group = toIntExact(groupVector.values()[position]);
-                accumulate(stateVector, group, inputVector, position);
+            case I32Vector inputVector -> {
+                if (mask.all()) {
+                    for (int position = 0; position <= mask.maxPosition(); position++) {
+                        int group = toIntExact(groupVector.values()[position]);
+                        accumulate(stateVector, group, inputVector, position);
+                    }
+                }
+                else {
+                    for (int position : mask) {
+                        int group = toIntExact(groupVector.values()[position]);
+                        accumulate(stateVector, group, inputVector, position);
+                    }
+                }
             }
+            default -> throw new IllegalArgumentException("Unsupported input: " + input.getClass().getSimpleName());
         }
     }
 
@@ -96,6 +147,28 @@ public class Sum
         state.values()[group] += input.nulls()[position] ? 0 : input.values()[position];
     }
 
+    private static void accumulate(I64Vector state, int group, I32Vector input, int position)
+    {
+        state.nulls()[group] = false;
+        state.values()[group] += input.nulls()[position] ? 0 : input.values()[position];
+    }
+
+    @Override
+    public void combine(Vector state, Vector otherState, Vector groupMapping, Mask mask)
+    {
+        I64Vector stateVector = (I64Vector) state;
+        I64Vector otherVector = (I64Vector) otherState;
+        I64Vector groupVector = (I64Vector) groupMapping;
+
+        for (int position : mask) {
+            int group = toIntExact(groupVector.values()[position]);
+            if (!otherVector.nulls()[position]) {
+                stateVector.values()[group] += otherVector.values()[position];
+                stateVector.nulls()[group] = false;
+            }
+        }
+    }
+
     @Override
     public Vector result(int maxGroup, Vector state, Vector output)
     {
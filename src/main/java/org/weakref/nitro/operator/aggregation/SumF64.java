@@ -14,6 +14,7 @@
 package org.weakref.nitro.operator.aggregation;
 
 import org.weakref.nitro.data.F64Vector;
+import org.weakref.nitro.data.I32Vector;
 import org.weakref.nitro.data.I64Vector;
 import org.weakref.nitro.data.Mask;
 import org.weakref.nitro.data.Vector;
@@ -42,16 +43,30 @@ public class SumF64
     public void initialize(Vector state, int offset, int length)
     {
         Arrays.fill(((F64Vector) state).nulls(), offset, offset + length, true);
+        Arrays.fill(((F64Vector) state).values(), offset, offset + length, 0.0);
     }
 
     @Override
     public void accumulate(Vector state, int group, Mask mask, ColumnAccessor columns)
     {
         F64Vector stateVector = (F64Vector) state;
-        F64Vector inputVector = (F64Vector) columns.column(inputColumn);
+        Vector input = columns.column(inputColumn);
 
-        boolean[] nulls = inputVector.nulls();
-        double[] values = inputVector.values();
+        double sum = switch (input) {
+            case F64Vector vector -> sum(vector, mask);
+            case I64Vector vector -> sum(vector, mask);
+            case I32Vector vector -> sum(vector, mask);
+            default -> throw new IllegalArgumentException("Unsupported input: " + input.getClass().getSimpleName());
+        };
+
+        stateVector.nulls()[group] = false;
+        stateVector.values()[group] += sum;
+    }
+
+    private static double sum(F64Vector input, Mask mask)
+    {
+        boolean[] nulls = input.nulls();
+        double[] values = input.values();
 
         double sum = 0;
         if (mask.all()) {
@@ -65,29 +80,100 @@ public class SumF64
                 sum += nulls[position] ? 0 : values[position];
             }
         }
+        return sum;
+    }
 
-        stateVector.nulls()[group] = false;
-        stateVector.values()[group] += sum;
+    private static double sum(I64Vector input, Mask mask)
+    {
+        boolean[] nulls = input.nulls();
+        long[] values = input.values();
+
+        double sum = 0;
+        if (mask.all()) {
+            int max = mask.maxPosition();
+            for (int position = 0; position <= max; position++) {
+                sum += nulls[position] ? 0 : values[position];
+            }
+        }
+        else {
+            for (int position : mask) {
+                sum += nulls[position] ? 0 : values[position];
+            }
+        }
+        return sum;
     }
 
-    @Override
-    public void accumulate(Vector state, Vector groups, Mask mask, ColumnAccessor columns)
+    private static double sum(I32Vector input, Mask mask)
     {
-        F64Vector stateVector = (F64Vector) state;
-        I64Vector groupVector = (I64Vector) groups;
-        F64Vector inputVector = (F64Vector) columns.column(inputColumn);
+        boolean[] nulls = input.nulls();
+        int[] values = input.values();
 
+        double sum = 0;
         if (mask.all()) {
-            for (int position = 0; position <= mask.maxPosition(); position++) {
-                int group = toIntExact(groupVector.values()[position]);
-                accumulate(stateVector, group, inputVector, position);
+            int max = mask.maxPosition();
+            for (int position = 0; position <= max; position++) {
+                sum += nulls[position] ? 0 : values[position];
             }
         }
         else {
             for (int position : mask) {
-                int group = toIntExact(groupVector.values()[position]);
-                accumulate(stateVector, group, inputVector, position);
+                sum += nulls[position] ? 0 : values[position];
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public void accumulate(Vector state, Vector groups, Mask mask, ColumnAccessor columns)
+    {
+        F64Vector stateVector = (F64Vector) state;
+        I64Vector groupVector = (I64Vector) groups;
+        Vector input = columns.column(inputColumn);
+
+        switch (input) {
+            case F64Vector inputVector -> {
+                if (mask.all()) {
+                    for (int position = 0; position <= mask.maxPosition(); position++) {
+                        int group = toIntExact(groupVector.values()[position]);
+                        accumulate(stateVector, group, inputVector, position);
+                    }
+                }
+                else {
+                    for (int position : mask) {
+                        int group = toIntExact(groupVector.values()[position]);
+                        accumulate(stateVector, group, inputVector, position);
+                    }
+                }
+            }
+            case I64Vector inputVector -> {
+                if (mask.all()) {
+                    for (int position = 0; position <= mask.maxPosition(); position++) {
+                        int group = toIntExact(groupVector.values()[position]);
+                        accumulate(stateVector, group, inputVector, position);
+                    }
+                }
+                else {
+                    for (int position : mask) {
+                        int group = toIntExact(groupVector.values()[position]);
+                        accumulate(stateVector, group, inputVector, position);
+                    }
+                }
             }
+            case I32Vector inputVector -> {
+                if (mask.all()) {
+                    for (int position = 0; position <= mask.maxPosition(); position++) {
+                        int group = toIntExact(groupVector.values()[position]);
+                        accumulate(stateVector, group, inputVector, position);
+                    }
+                }
+                else {
+                    for (int position : mask) {
+                        int group = toIntExact(groupVector.values()[position]);
+                        accumulate(stateVector, group, inputVector, position);
+                    }
+                }
+            }
+            default -> throw new IllegalArgumentException("Unsupported input: " + input.getClass().getSimpleName());
         }
     }
 
@@ -97,6 +183,34 @@ public class SumF64
         state.values()[group] += input.nulls()[position] ? 0 : input.values()[position];
     }
 
+    private static void accumulate(F64Vector state, int group, I64Vector input, int position)
+    {
+        state.nulls()[group] = false;
+        state.values()[group] += input.nulls()[position] ? 0 : input.values()[position];
+    }
+
+    private static void accumulate(F64Vector state, int group, I32Vector input, int position)
+    {
+        state.nulls()[group] = false;
+        state.values()[group] += input.nulls()[position] ? 0 : input.values()[position];
+    }
+
+    @Override
+    public void combine(Vector state, Vector otherState, Vector groupMapping, Mask mask)
+    {
+        F64Vector stateVector = (F64Vector) state;
+        F64Vector otherVector = (F64Vector) otherState;
+        I64Vector groupVector = (I64Vector) groupMapping;
+
+        for (int position : mask) {
+            int group = toIntExact(groupVector.values()[position]);
+            if (!otherVector.nulls()[position]) {
+                stateVector.values()[group] += otherVector.values()[position];
+                stateVector.nulls()[group] = false;
+            }
+        }
+    }
+
     @Override
     public Vector result(int maxGroup, Vector state, Vector output)
     {
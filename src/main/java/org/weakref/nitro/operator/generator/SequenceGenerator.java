@@ -60,7 +60,7 @@ public class SequenceGenerator
     {
         current += count;
         if (current >= max) {
-            current = start + (current - max);
+            current = start + (current - start) % (max - start);
         }
     }
 }
@@ -0,0 +1,580 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.operator.group;
+
+import org.weakref.nitro.data.Allocator;
+import org.weakref.nitro.data.ColumnarBuffer;
+import org.weakref.nitro.data.I32Vector;
+import org.weakref.nitro.data.I64Vector;
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.Vectors;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Assigns dense ids, in order of first appearance, to the distinct values of a composite key.
+ * <p>
+ * The table is a flat open-addressing array of slots resolved with linear probing. Each slot holds
+ * a group id and the hash of its key, so most mismatches are rejected without touching the keys.
+ * The keys themselves are stored once per group, in columnar form, indexed by group id.
+ * <p>
+ * A single integer key whose values span a small range skips hashing altogether: the group of
+ * each value is found in an array indexed by its offset from the smallest value seen. Once the
+ * range grows too large, the existing groups are inserted into the hash table and hashing takes over.
+ * <p>
+ * Keys with a null in any of the columns are either not assigned a group, or, if nulls are
+ * grouped, form groups like any other value (i.e., keys are compared as with IS NOT DISTINCT FROM).
+ * <p>
+ * The slot and direct-mapped arrays are accounted in the allocation context along with the keys.
+ */
+public class GroupHashTable
+{
+    private static final int INITIAL_CAPACITY = 1024;
+    // small enough for the array to stay in the L2 cache
+    private static final int MAX_DIRECT_RANGE = 1 << 16;
+
+    private final Allocator allocator;
+    private final Allocator.Context context;
+    private final int keyCount;
+    private final boolean groupNulls;
+    private final ColumnarBuffer keys;
+
+    private int mask;
+    private int[] groupIds;
+    private long[] slotHashes;
+    private int groupCount;
+
+    private boolean direct;
+    private long directMin;
+    private int[] directGroupIds = new int[0];
+    private int directNullGroup = -1;
+
+    // scratch buffers for a batch
+    private long[] hashes = new long[0];
+    private boolean[] nullKeys = new boolean[0];
+    private int[] candidates = new int[0];
+    private int[] slots = new int[0];
+    private int[] candidateGroups = new int[0];
+    private boolean[] equal = new boolean[0];
+    private int[] missPositions = new int[0];
+    private int[] missSlots = new int[0];
+    private int[] newGroupPositions = new int[0];
+    private int[] offsets = new int[0];
+
+    public GroupHashTable(Allocator allocator, Allocator.Context context, int keyCount)
+    {
+        this(allocator, context, keyCount, false);
+    }
+
+    /**
+     * @param groupNulls whether keys with nulls are assigned groups
+     */
+    public GroupHashTable(Allocator allocator, Allocator.Context context, int keyCount, boolean groupNulls)
+    {
+        checkArgument(keyCount > 0, "At least one key column is required");
+
+        this.allocator = allocator;
+        this.context = context;
+        this.keyCount = keyCount;
+        this.groupNulls = groupNulls;
+        keys = new ColumnarBuffer(allocator, context, keyCount);
+
+        groupIds = new int[INITIAL_CAPACITY];
+        slotHashes = new long[INITIAL_CAPACITY];
+        Arrays.fill(groupIds, -1);
+        mask = INITIAL_CAPACITY - 1;
+        allocator.recordBytes(context, slotBytes(INITIAL_CAPACITY));
+
+        direct = keyCount == 1;
+    }
+
+    public int groupCount()
+    {
+        return groupCount;
+    }
+
+    /**
+     * @return the key columns, with the key of each group at the position given by its id
+     */
+    public ColumnarBuffer keys()
+    {
+        return keys;
+    }
+
+    /**
+     * Releases the memory held by the table and the keys. The table can't be used afterwards.
+     */
+    public void release()
+    {
+        keys.release();
+        allocator.recordBytes(context, -slotBytes(groupIds.length) - (long) directGroupIds.length * Integer.BYTES);
+        groupIds = new int[0];
+        slotHashes = new long[0];
+        directGroupIds = new int[0];
+    }
+
+    /**
+     * For each active position, sets result[position] to the id of the group of the key at that
+     * position, adding a new group if the key hasn't been seen before. If nulls are not grouped,
+     * positions where the key has a null are set to null.
+     * <p>
+     * The batch is processed in passes, as in {@link org.weakref.nitro.operator.join.JoinHashTable#lookup}:
+     * first all hashes are computed, then every position walks the table comparing only hashes, and
+     * the keys of all the hash hits are verified column by column. Since the walks of different
+     * positions are independent, their cache misses can overlap. Positions whose key is not in the
+     * table are inserted one at a time at the end, since they may repeat within the batch.
+     */
+    public void groupIds(Vector[] keyColumns, Mask mask, I64Vector result)
+    {
+        checkArgument(keyColumns.length == keyCount, "Expected %s key columns, but got %s", keyCount, keyColumns.length);
+        if (mask.none()) {
+            return;
+        }
+
+        ensureCapacity(mask.maxPosition() + 1, mask.count());
+        if (direct) {
+            if (directGroupIds(keyColumns[0], mask, result)) {
+                return;
+            }
+            switchToHashing();
+        }
+
+        // make room for every position to be a new group up front, so that slots stay valid for the whole batch
+        while ((groupCount + mask.count()) * 2L > groupIds.length) {
+            rehash();
+        }
+
+        probe(keyColumns, mask, result, true);
+    }
+
+    /**
+     * Like {@link #groupIds}, but keys that are not in the table are not added. Their positions are set to -1.
+     */
+    public void lookup(Vector[] keyColumns, Mask mask, I64Vector result)
+    {
+        checkArgument(keyColumns.length == keyCount, "Expected %s key columns, but got %s", keyCount, keyColumns.length);
+        if (mask.none()) {
+            return;
+        }
+
+        ensureCapacity(mask.maxPosition() + 1, mask.count());
+        if (direct) {
+            // lookups are rare enough not to have a direct-mapped version
+            switchToHashing();
+        }
+
+        probe(keyColumns, mask, result, false);
+    }
+
+    private void probe(Vector[] keyColumns, Mask mask, I64Vector result, boolean insert)
+    {
+        hashKeys(keyColumns, mask);
+
+        int count = 0;
+        for (int i = 0; i < mask.count(); i++) {
+            int position = mask.position(i);
+            if (nullKeys[position] && !groupNulls) {
+                result.nulls()[position] = true;
+            }
+            else {
+                candidates[count] = position;
+                slots[count] = (int) hashes[position] & this.mask;
+                count++;
+            }
+        }
+
+        int misses = 0;
+        while (count > 0) {
+            // find the first slot that is either empty or has a matching hash
+            int hits = 0;
+            for (int i = 0; i < count; i++) {
+                int position = candidates[i];
+                long hash = hashes[position];
+                int slot = slots[i];
+                while (groupIds[slot] != -1 && slotHashes[slot] != hash) {
+                    slot = (slot + 1) & this.mask;
+                }
+
+                if (groupIds[slot] == -1) {
+                    missPositions[misses] = position;
+                    missSlots[misses] = slot;
+                    misses++;
+                }
+                else {
+                    candidates[hits] = position;
+                    slots[hits] = slot;
+                    candidateGroups[hits] = groupIds[slot];
+                    hits++;
+                }
+            }
+
+            if (hits == 0) {
+                break;
+            }
+
+            // verify the keys of the hash hits
+            Arrays.fill(equal, 0, hits, true);
+            for (int i = 0; i < keyCount; i++) {
+                if (groupNulls) {
+                    Vectors.notDistinct(keyColumns[i], candidates, keys.column(i), candidateGroups, hits, equal);
+                }
+                else {
+                    Vectors.equal(keyColumns[i], candidates, keys.column(i), candidateGroups, hits, equal);
+                }
+            }
+
+            count = 0;
+            for (int i = 0; i < hits; i++) {
+                int position = candidates[i];
+                if (equal[i]) {
+                    result.values()[position] = candidateGroups[i];
+                    result.nulls()[position] = false;
+                }
+                else {
+                    candidates[count] = position;
+                    slots[count] = (slots[i] + 1) & this.mask;
+                    count++;
+                }
+            }
+        }
+
+        if (insert && misses > 0) {
+            insert(keyColumns, misses, result);
+        }
+        else {
+            for (int i = 0; i < misses; i++) {
+                int position = missPositions[i];
+                result.values()[position] = -1;
+                result.nulls()[position] = false;
+            }
+        }
+    }
+
+    /**
+     * Assigns groups to the keys at the given positions, none of which were in the table at the
+     * start of the batch. Probing resumes from the empty slot where the lookup for each of them
+     * ended, since only groups added since then can be in the way.
+     */
+    private void insert(Vector[] keyColumns, int count, I64Vector result)
+    {
+        // positions that resumed probing after a collision may be out of order, and ids are assigned in order of appearance
+        if (!isSorted(missPositions, count)) {
+            sortMisses(count);
+        }
+
+        // groups created in this batch are compared against the batch itself, and only copied into the key storage at the end
+        int firstNewGroup = groupCount;
+        for (int i = 0; i < count; i++) {
+            int position = missPositions[i];
+            long hash = hashes[position];
+            int slot = missSlots[i];
+            int group;
+            while (true) {
+                group = groupIds[slot];
+                if (group == -1) {
+                    group = groupCount;
+                    newGroupPositions[group - firstNewGroup] = position;
+                    groupCount++;
+
+                    groupIds[slot] = group;
+                    slotHashes[slot] = hash;
+                    break;
+                }
+                if (slotHashes[slot] == hash && keysEqual(keyColumns, position, group, firstNewGroup)) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            result.values()[position] = group;
+            result.nulls()[position] = false;
+        }
+
+        keys.append(keyColumns, Mask.sparse(newGroupPositions, groupCount - firstNewGroup));
+    }
+
+    private static boolean isSorted(int[] values, int count)
+    {
+        for (int i = 1; i < count; i++) {
+            if (values[i - 1] > values[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void sortMisses(int count)
+    {
+        // positions are unique and below hashes.length, so the slots can be carried along through a position-indexed array
+        int[] slotsByPosition = new int[hashes.length];
+        for (int i = 0; i < count; i++) {
+            slotsByPosition[missPositions[i]] = missSlots[i];
+        }
+        Arrays.sort(missPositions, 0, count);
+        for (int i = 0; i < count; i++) {
+            missSlots[i] = slotsByPosition[missPositions[i]];
+        }
+    }
+
+    /**
+     * Assigns groups through the direct-mapped array.
+     *
+     * @return false if the key is not an integer, or its range would be too large for the array
+     */
+    private boolean directGroupIds(Vector key, Mask mask, I64Vector result)
+    {
+        boolean[] nulls = Vectors.nulls(key);
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        switch (key) {
+            case I64Vector vector -> {
+                for (int i = 0; i < mask.count(); i++) {
+                    int position = mask.position(i);
+                    if (!nulls[position]) {
+                        min = Math.min(min, vector.values()[position]);
+                        max = Math.max(max, vector.values()[position]);
+                    }
+                }
+            }
+            case I32Vector vector -> {
+                for (int i = 0; i < mask.count(); i++) {
+                    int position = mask.position(i);
+                    if (!nulls[position]) {
+                        min = Math.min(min, vector.values()[position]);
+                        max = Math.max(max, vector.values()[position]);
+                    }
+                }
+            }
+            default -> {
+                return false;
+            }
+        }
+
+        if (min <= max && !ensureDirectRange(min, max)) {
+            return false;
+        }
+
+        switch (key) {
+            case I64Vector vector -> {
+                for (int i = 0; i < mask.count(); i++) {
+                    int position = mask.position(i);
+                    offsets[position] = (int) (vector.values()[position] - directMin);
+                }
+            }
+            case I32Vector vector -> {
+                for (int i = 0; i < mask.count(); i++) {
+                    int position = mask.position(i);
+                    offsets[position] = (int) (vector.values()[position] - directMin);
+                }
+            }
+            default -> throw new AssertionError();
+        }
+
+        int newGroups = 0;
+        for (int i = 0; i < mask.count(); i++) {
+            int position = mask.position(i);
+            int group;
+            if (nulls[position]) {
+                if (!groupNulls) {
+                    result.nulls()[position] = true;
+                    continue;
+                }
+                group = directNullGroup;
+                if (group == -1) {
+                    group = groupCount;
+                    groupCount++;
+                    directNullGroup = group;
+                    newGroupPositions[newGroups] = position;
+                    newGroups++;
+                }
+            }
+            else {
+                int offset = offsets[position];
+                group = directGroupIds[offset];
+                if (group == -1) {
+                    group = groupCount;
+                    groupCount++;
+                    directGroupIds[offset] = group;
+                    newGroupPositions[newGroups] = position;
+                    newGroups++;
+                }
+            }
+
+            result.values()[position] = group;
+            result.nulls()[position] = false;
+        }
+
+        keys.append(new Vector[] {key}, Mask.sparse(newGroupPositions, newGroups));
+        return true;
+    }
+
+    /**
+     * Extends the direct-mapped array to cover [min, max], if the resulting range is small enough
+     */
+    private boolean ensureDirectRange(long min, long max)
+    {
+        if (directGroupIds.length > 0) {
+            min = Math.min(min, directMin);
+            max = Math.max(max, directMin + directGroupIds.length - 1);
+        }
+
+        // a range over 2^63 overflows to a negative value
+        long range = max - min + 1;
+        if (range <= 0 || range > MAX_DIRECT_RANGE) {
+            return false;
+        }
+
+        if (range > directGroupIds.length) {
+            // grow by at least 2x, so that a range that keeps extending doesn't copy the array every time
+            int length = (int) Math.min(Math.max(range, directGroupIds.length * 2L), MAX_DIRECT_RANGE);
+            int[] newDirectGroupIds = new int[length];
+            Arrays.fill(newDirectGroupIds, -1);
+
+            // keep the array anchored at the smallest value, unless the range is extending downwards
+            long newMin = directGroupIds.length > 0 && min < directMin ? max - length + 1 : min;
+            if (directGroupIds.length > 0) {
+                System.arraycopy(directGroupIds, 0, newDirectGroupIds, (int) (directMin - newMin), directGroupIds.length);
+            }
+
+            allocator.recordBytes(context, (long) (length - directGroupIds.length) * Integer.BYTES);
+            directGroupIds = newDirectGroupIds;
+            directMin = newMin;
+        }
+        return true;
+    }
+
+    /**
+     * Inserts the groups found so far into the hash table, which is used from then on
+     */
+    private void switchToHashing()
+    {
+        direct = false;
+        allocator.recordBytes(context, -(long) directGroupIds.length * Integer.BYTES);
+        directGroupIds = new int[0];
+        directNullGroup = -1;
+
+        while (groupCount * 2L > groupIds.length) {
+            rehash();
+        }
+        if (groupCount == 0) {
+            return;
+        }
+
+        long[] groupHashes = new long[groupCount];
+        Vectors.hash(keys.column(0), Mask.all(groupCount), groupHashes, false);
+        for (int group = 0; group < groupCount; group++) {
+            long hash = groupHashes[group];
+            int slot = (int) hash & mask;
+            while (groupIds[slot] != -1) {
+                slot = (slot + 1) & mask;
+            }
+            groupIds[slot] = group;
+            slotHashes[slot] = hash;
+        }
+    }
+
+    private boolean keysEqual(Vector[] keyColumns, int position, int group, int firstNewGroup)
+    {
+        if (group >= firstNewGroup) {
+            int groupPosition = newGroupPositions[group - firstNewGroup];
+            for (Vector column : keyColumns) {
+                if (!keyEqual(column, position, column, groupPosition)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        for (int i = 0; i < keyCount; i++) {
+            if (!keyEqual(keyColumns[i], position, keys.column(i), group)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean keyEqual(Vector left, int leftPosition, Vector right, int rightPosition)
+    {
+        if (groupNulls) {
+            return Vectors.notDistinct(left, leftPosition, right, rightPosition);
+        }
+        return Vectors.equal(left, leftPosition, right, rightPosition);
+    }
+
+    private void rehash()
+    {
+        int capacity = groupIds.length * 2;
+        int[] newGroupIds = new int[capacity];
+        long[] newSlotHashes = new long[capacity];
+        Arrays.fill(newGroupIds, -1);
+        int newMask = capacity - 1;
+
+        for (int slot = 0; slot < groupIds.length; slot++) {
+            int group = groupIds[slot];
+            if (group != -1) {
+                long hash = slotHashes[slot];
+                int newSlot = (int) hash & newMask;
+                while (newGroupIds[newSlot] != -1) {
+                    newSlot = (newSlot + 1) & newMask;
+                }
+                newGroupIds[newSlot] = group;
+                newSlotHashes[newSlot] = hash;
+            }
+        }
+
+        allocator.recordBytes(context, slotBytes(capacity) - slotBytes(groupIds.length));
+        groupIds = newGroupIds;
+        slotHashes = newSlotHashes;
+        mask = newMask;
+    }
+
+    private static long slotBytes(int capacity)
+    {
+        return (long) capacity * (Integer.BYTES + Long.BYTES);
+    }
+
+    private void hashKeys(Vector[] keyColumns, Mask mask)
+    {
+        for (int i = 0; i < keyColumns.length; i++) {
+            Vectors.hash(keyColumns[i], mask, hashes, i > 0);
+
+            boolean[] nulls = Vectors.nulls(keyColumns[i]);
+            for (int j = 0; j < mask.count(); j++) {
+                int position = mask.position(j);
+                nullKeys[position] = (i > 0 && nullKeys[position]) | nulls[position];
+            }
+        }
+    }
+
+    private void ensureCapacity(int size, int count)
+    {
+        if (hashes.length < size) {
+            hashes = new long[size];
+            nullKeys = new boolean[size];
+            offsets = new int[size];
+        }
+        if (candidates.length < count) {
+            candidates = new int[count];
+            slots = new int[count];
+            candidateGroups = new int[count];
+            equal = new boolean[count];
+            missPositions = new int[count];
+            missSlots = new int[count];
+            newGroupPositions = new int[count];
+        }
+    }
+}
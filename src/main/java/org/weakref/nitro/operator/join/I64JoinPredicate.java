@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.operator.join;
+
+import org.weakref.nitro.data.I64Vector;
+import org.weakref.nitro.data.Vector;
+
+/**
+ * Join condition over an I64 column of each side. Rows with a null in either column never match.
+ */
+public class I64JoinPredicate
+        implements JoinPredicate
+{
+    private final int outerColumn;
+    private final int innerColumn;
+    private final Condition condition;
+
+    public I64JoinPredicate(int outerColumn, int innerColumn, Condition condition)
+    {
+        this.outerColumn = outerColumn;
+        this.innerColumn = innerColumn;
+        this.condition = condition;
+    }
+
+    @Override
+    public int test(Vector[] outer, int outerPosition, Vector[] inner, int innerStart, int innerEnd, int[] matches, int matchOffset)
+    {
+        I64Vector outerVector = (I64Vector) outer[outerColumn];
+        if (outerVector.nulls()[outerPosition]) {
+            return 0;
+        }
+
+        long value = outerVector.values()[outerPosition];
+        I64Vector innerVector = (I64Vector) inner[innerColumn];
+        boolean[] innerNulls = innerVector.nulls();
+        long[] innerValues = innerVector.values();
+
+        // branch-free: every row is written, but the output position only advances on a match
+        int count = matchOffset;
+        for (int row = innerStart; row < innerEnd; row++) {
+            matches[count] = row;
+            count += (!innerNulls[row] && condition.test(value, innerValues[row])) ? 1 : 0;
+        }
+        return count - matchOffset;
+    }
+
+    public interface Condition
+    {
+        boolean test(long outer, long inner);
+    }
+}
@@ -0,0 +1,366 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.operator.join;
+
+import org.weakref.nitro.data.ColumnarBuffer;
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.Vectors;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Hash table over the rows of a join build side.
+ * <p>
+ * The table is a flat open-addressing array of slots, one per distinct key, resolved with
+ * linear probing. Each slot holds the hash of its key (so most mismatches are rejected
+ * without touching the key columns) and the first build row with that key. Build rows that
+ * share a key are chained through a per-row "next" array.
+ * <p>
+ * Rows with a null in any of the key columns are kept in the build side but never
+ * inserted into the table, since they can't match anything.
+ * <p>
+ * For build sides too large for the table to fit in cache, the table can be radix partitioned
+ * by the high bits of the hash into independent sub-tables, each laid out in a contiguous range of
+ * slots and small enough to stay cache resident. The build rows are reordered by partition as
+ * well, so that the rows of a partition are also contiguous. Lookups are most efficient when the
+ * probe positions are grouped by partition (see {@link #partitionOrder}), so that all the probes
+ * into a partition happen together while it's hot.
+ */
+public class JoinHashTable
+{
+    // small enough for a partition's slots to fit in the L2 cache
+    private static final int ROWS_PER_PARTITION = 16 * 1024;
+    private static final int MAX_PARTITION_BITS = 14;
+
+    private final ColumnarBuffer rows;
+    private final int[] keyColumns;
+
+    private final int partitionBits;
+    private final int[] partitionStarts;
+    private final int[] partitionMasks;
+    private final int[] heads;
+    private final long[] slotHashes;
+    private final int[] next;
+    private final boolean hasNullKeys;
+
+    // scratch buffers for lookups
+    private long[] hashes = new long[0];
+    private boolean[] nullKeys = new boolean[0];
+    private int[] candidates = new int[0];
+    private int[] slots = new int[0];
+    private int[] candidateRows = new int[0];
+    private boolean[] equal = new boolean[0];
+
+    public JoinHashTable(ColumnarBuffer rows, int[] keyColumns)
+    {
+        this(rows, keyColumns, 0);
+    }
+
+    /**
+     * @param partitionBits the table is split into 2^partitionBits partitions. If non-zero, the rows are reordered by partition.
+     */
+    public JoinHashTable(ColumnarBuffer rows, int[] keyColumns, int partitionBits)
+    {
+        checkArgument(keyColumns.length > 0, "At least one key column is required");
+        checkArgument(partitionBits >= 0 && partitionBits <= MAX_PARTITION_BITS, "Partition bits must be between 0 and %s: %s", MAX_PARTITION_BITS, partitionBits);
+
+        this.rows = rows;
+        this.keyColumns = keyColumns.clone();
+        this.partitionBits = partitionBits;
+
+        int rowCount = rows.rowCount();
+        next = new int[rowCount];
+        Arrays.fill(next, -1);
+
+        long[] rowHashes = new long[rowCount];
+        boolean[] rowNullKeys = new boolean[rowCount];
+        if (rowCount > 0) {
+            hashKeys(keyColumns(rows), Mask.all(rowCount), rowHashes, rowNullKeys);
+        }
+
+        int[] keyedRows = new int[rowCount];
+        long[] keyedHashes = new long[rowCount];
+        int keyedCount = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (!rowNullKeys[row]) {
+                keyedRows[keyedCount] = row;
+                keyedHashes[keyedCount] = rowHashes[row];
+                keyedCount++;
+            }
+        }
+        hasNullKeys = keyedCount < rowCount;
+
+        int partitions = 1 << partitionBits;
+        int[] offsets = new int[partitions + 1];
+        if (partitionBits == 0) {
+            offsets[1] = keyedCount;
+        }
+        else {
+            int[] order = new int[rowCount];
+            long[] partitionedHashes = new long[rowCount];
+            RadixPartitioner.partition(keyedRows, keyedHashes, keyedCount, partitionBits, order, partitionedHashes, offsets);
+
+            // rows with null keys go last
+            int position = keyedCount;
+            for (int row = 0; row < rowCount; row++) {
+                if (rowNullKeys[row]) {
+                    order[position] = row;
+                    position++;
+                }
+            }
+
+            rows.reorder(order);
+
+            for (int i = 0; i < keyedCount; i++) {
+                keyedRows[i] = i;
+            }
+            keyedHashes = partitionedHashes;
+        }
+
+        partitionStarts = new int[partitions];
+        partitionMasks = new int[partitions];
+        int capacity = 0;
+        for (int partition = 0; partition < partitions; partition++) {
+            int partitionCapacity = Integer.highestOneBit(Math.max(offsets[partition + 1] - offsets[partition], 1) * 2 - 1) << 1;
+            partitionStarts[partition] = capacity;
+            partitionMasks[partition] = partitionCapacity - 1;
+            capacity = Math.addExact(capacity, partitionCapacity);
+        }
+
+        heads = new int[capacity];
+        slotHashes = new long[capacity];
+        Arrays.fill(heads, -1);
+
+        for (int partition = 0; partition < partitions; partition++) {
+            // insert in reverse order, so that the chains of rows with the same key end up in build order
+            for (int i = offsets[partition + 1] - 1; i >= offsets[partition]; i--) {
+                int row = keyedRows[i];
+                long hash = keyedHashes[i];
+                int slot = firstSlot(hash);
+                while (heads[slot] != -1 && (slotHashes[slot] != hash || !keysEqual(row, heads[slot]))) {
+                    slot = nextSlot(slot, hash);
+                }
+
+                next[row] = heads[slot];
+                heads[slot] = row;
+                slotHashes[slot] = hash;
+            }
+        }
+    }
+
+    /**
+     * @return the positions in [0, count), grouped by the partition their key belongs to
+     */
+    public int[] partitionOrder(Vector[] keys, int count)
+    {
+        checkArgument(keys.length == keyColumns.length, "Expected %s key columns, but got %s", keyColumns.length, keys.length);
+
+        int[] positions = new int[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = i;
+        }
+        if (partitionBits == 0 || count == 0) {
+            return positions;
+        }
+
+        ensureCapacity(count, count);
+        hashKeys(keys, Mask.all(count), hashes, nullKeys);
+
+        int[] result = new int[count];
+        RadixPartitioner.partition(positions, hashes, count, partitionBits, result, new long[count], new int[(1 << partitionBits) + 1]);
+        return result;
+    }
+
+    /**
+     * @return the number of partition bits that keeps each partition of a table with the given number of rows cache resident
+     */
+    public static int partitionBits(int rowCount)
+    {
+        int partitions = (rowCount + ROWS_PER_PARTITION - 1) / ROWS_PER_PARTITION;
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(partitions, 1) - 1);
+        return Math.clamp(bits, 1, MAX_PARTITION_BITS);
+    }
+
+    public ColumnarBuffer rows()
+    {
+        return rows;
+    }
+
+    public int rowCount()
+    {
+        return rows.rowCount();
+    }
+
+    public boolean hasNullKeys()
+    {
+        return hasNullKeys;
+    }
+
+    /**
+     * @return the next build row with the same key as the given row, or -1
+     */
+    public int nextRow(int row)
+    {
+        return next[row];
+    }
+
+    /**
+     * For each active position, sets matches[position] to the first build row whose key
+     * is equal to the key at that position, or -1 if there's no such row.
+     * <p>
+     * The lookup runs in passes over the whole batch: first all hashes are computed, then every
+     * position walks the table comparing only hashes, and finally the keys of all the hash hits
+     * are verified column by column. Positions that turn out to be hash collisions resume
+     * probing from the next slot in another round.
+     */
+    public void lookup(Vector[] probeKeys, Mask mask, int[] matches)
+    {
+        checkArgument(probeKeys.length == keyColumns.length, "Expected %s key columns, but got %s", keyColumns.length, probeKeys.length);
+        if (mask.none()) {
+            return;
+        }
+
+        int size = mask.maxPosition() + 1;
+        ensureCapacity(size, mask.count());
+
+        hashKeys(probeKeys, mask, hashes, nullKeys);
+
+        int count = 0;
+        for (int i = 0; i < mask.count(); i++) {
+            int position = mask.position(i);
+            if (nullKeys[position]) {
+                matches[position] = -1;
+            }
+            else {
+                candidates[count] = position;
+                slots[count] = firstSlot(hashes[position]);
+                count++;
+            }
+        }
+
+        while (count > 0) {
+            // find the first slot that is either empty or has a matching hash
+            int hits = 0;
+            for (int i = 0; i < count; i++) {
+                int position = candidates[i];
+                long hash = hashes[position];
+                int slot = slots[i];
+                while (heads[slot] != -1 && slotHashes[slot] != hash) {
+                    slot = nextSlot(slot, hash);
+                }
+
+                if (heads[slot] == -1) {
+                    matches[position] = -1;
+                }
+                else {
+                    candidates[hits] = position;
+                    slots[hits] = slot;
+                    candidateRows[hits] = heads[slot];
+                    hits++;
+                }
+            }
+
+            if (hits == 0) {
+                break;
+            }
+
+            // verify the keys of the hash hits
+            Arrays.fill(equal, 0, hits, true);
+            for (int i = 0; i < keyColumns.length; i++) {
+                Vectors.equal(probeKeys[i], candidates, rows.column(keyColumns[i]), candidateRows, hits, equal);
+            }
+
+            count = 0;
+            for (int i = 0; i < hits; i++) {
+                if (equal[i]) {
+                    matches[candidates[i]] = candidateRows[i];
+                }
+                else {
+                    candidates[count] = candidates[i];
+                    slots[count] = nextSlot(slots[i], hashes[candidates[i]]);
+                    count++;
+                }
+            }
+        }
+    }
+
+    private int firstSlot(long hash)
+    {
+        int partition = partition(hash);
+        return partitionStarts[partition] + ((int) hash & partitionMasks[partition]);
+    }
+
+    private int nextSlot(int slot, long hash)
+    {
+        int partition = partition(hash);
+        int start = partitionStarts[partition];
+        return start + ((slot - start + 1) & partitionMasks[partition]);
+    }
+
+    private int partition(long hash)
+    {
+        // the partition comes from the high bits, so that it's independent of the slot within the partition
+        return partitionBits == 0 ? 0 : (int) (hash >>> (64 - partitionBits));
+    }
+
+    private boolean keysEqual(int row, int otherRow)
+    {
+        for (int column : keyColumns) {
+            Vector vector = rows.column(column);
+            if (!Vectors.equal(vector, row, vector, otherRow)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Vector[] keyColumns(ColumnarBuffer rows)
+    {
+        Vector[] keys = new Vector[keyColumns.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = rows.column(keyColumns[i]);
+        }
+        return keys;
+    }
+
+    private static void hashKeys(Vector[] keys, Mask mask, long[] hashes, boolean[] nullKeys)
+    {
+        for (int i = 0; i < keys.length; i++) {
+            Vectors.hash(keys[i], mask, hashes, i > 0);
+
+            boolean[] nulls = Vectors.nulls(keys[i]);
+            for (int j = 0; j < mask.count(); j++) {
+                int position = mask.position(j);
+                nullKeys[position] = (i > 0 && nullKeys[position]) | nulls[position];
+            }
+        }
+    }
+
+    private void ensureCapacity(int size, int count)
+    {
+        if (hashes.length < size) {
+            hashes = new long[size];
+            nullKeys = new boolean[size];
+        }
+        if (candidates.length < count) {
+            candidates = new int[count];
+            slots = new int[count];
+            candidateRows = new int[count];
+            equal = new boolean[count];
+        }
+    }
+}
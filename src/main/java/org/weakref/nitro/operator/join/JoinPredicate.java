@@ -0,0 +1,31 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.operator.join;
+
+import org.weakref.nitro.data.Vector;
+
+/**
+ * Condition over a pair of rows, one from each side of a join.
+ */
+public interface JoinPredicate
+{
+    /**
+     * Tests the outer row at outerPosition against each of the inner rows in [innerStart, innerEnd),
+     * and appends the ones that satisfy the condition to matches, starting at matchOffset. There is
+     * room in matches for all the inner rows, so implementations may write past the last match.
+     *
+     * @return the number of matches
+     */
+    int test(Vector[] outer, int outerPosition, Vector[] inner, int innerStart, int innerEnd, int[] matches, int matchOffset);
+}
@@ -0,0 +1,36 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.operator.join;
+
+/**
+ * Which rows of an equi-join are preserved when they have no match. Left refers to the
+ * probe side and right to the build side.
+ */
+public enum JoinType
+{
+    INNER,
+    LEFT,
+    RIGHT,
+    FULL;
+
+    public boolean preservesProbe()
+    {
+        return this == LEFT || this == FULL;
+    }
+
+    public boolean preservesBuild()
+    {
+        return this == RIGHT || this == FULL;
+    }
+}
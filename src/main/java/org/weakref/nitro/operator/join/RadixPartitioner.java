@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.operator.join;
+
+/**
+ * Radix partitioning of item ids by bits of their hash.
+ * <p>
+ * Items are scattered through small per-partition buffers the size of a cache line (software
+ * write-combining), which are copied out to the target in one go when they fill up. This keeps
+ * the number of cache lines and TLB entries that are written concurrently down to one per
+ * partition, regardless of how the items are distributed.
+ */
+final class RadixPartitioner
+{
+    // Partitioning more ways than this in a single pass thrashes the TLB
+    static final int MAX_BITS_PER_PASS = 8;
+
+    private static final int BUFFER_SIZE = 16;
+
+    private RadixPartitioner() {}
+
+    /**
+     * Partitions items by the given number of high-order hash bits, in one or two passes. The
+     * hashes travel along with the items, so that every pass reads its input sequentially.
+     *
+     * @param hashes the hash of each item, aligned with items
+     * @param resultItems output: the partitioned items, preserving their relative order within each partition
+     * @param resultHashes output: the hashes of the partitioned items
+     * @param offsets output: the items of partition p end up in [offsets[p], offsets[p + 1])
+     */
+    static void partition(int[] items, long[] hashes, int count, int bits, int[] resultItems, long[] resultHashes, int[] offsets)
+    {
+        if (bits <= MAX_BITS_PER_PASS) {
+            partition(items, hashes, 0, count, 64 - bits, bits, resultItems, resultHashes, offsets, 0);
+            return;
+        }
+
+        int firstBits = bits / 2;
+        int secondBits = bits - firstBits;
+
+        int[] intermediateItems = new int[count];
+        long[] intermediateHashes = new long[count];
+        int[] firstOffsets = new int[(1 << firstBits) + 1];
+        partition(items, hashes, 0, count, 64 - firstBits, firstBits, intermediateItems, intermediateHashes, firstOffsets, 0);
+
+        for (int partition = 0; partition < 1 << firstBits; partition++) {
+            partition(
+                    intermediateItems,
+                    intermediateHashes,
+                    firstOffsets[partition],
+                    firstOffsets[partition + 1],
+                    64 - bits,
+                    secondBits,
+                    resultItems,
+                    resultHashes,
+                    offsets,
+                    partition << secondBits);
+        }
+    }
+
+    private static void partition(int[] items, long[] hashes, int from, int to, int shift, int bits, int[] targetItems, long[] targetHashes, int[] offsets, int firstPartition)
+    {
+        int partitions = 1 << bits;
+        int mask = partitions - 1;
+
+        int[] counts = new int[partitions];
+        for (int i = from; i < to; i++) {
+            counts[(int) (hashes[i] >>> shift) & mask]++;
+        }
+
+        int[] next = new int[partitions];
+        int offset = from;
+        for (int partition = 0; partition < partitions; partition++) {
+            offsets[firstPartition + partition] = offset;
+            next[partition] = offset;
+            offset += counts[partition];
+        }
+        offsets[firstPartition + partitions] = offset;
+
+        int[] itemBuffers = new int[partitions * BUFFER_SIZE];
+        long[] hashBuffers = new long[partitions * BUFFER_SIZE];
+        int[] fill = new int[partitions];
+        for (int i = from; i < to; i++) {
+            long hash = hashes[i];
+            int partition = (int) (hash >>> shift) & mask;
+
+            int size = fill[partition];
+            itemBuffers[partition * BUFFER_SIZE + size] = items[i];
+            hashBuffers[partition * BUFFER_SIZE + size] = hash;
+            size++;
+            if (size == BUFFER_SIZE) {
+                System.arraycopy(itemBuffers, partition * BUFFER_SIZE, targetItems, next[partition], BUFFER_SIZE);
+                System.arraycopy(hashBuffers, partition * BUFFER_SIZE, targetHashes, next[partition], BUFFER_SIZE);
+                next[partition] += BUFFER_SIZE;
+                size = 0;
+            }
+            fill[partition] = size;
+        }
+
+        for (int partition = 0; partition < partitions; partition++) {
+            System.arraycopy(itemBuffers, partition * BUFFER_SIZE, targetItems, next[partition], fill[partition]);
+            System.arraycopy(hashBuffers, partition * BUFFER_SIZE, targetHashes, next[partition], fill[partition]);
+        }
+    }
+}
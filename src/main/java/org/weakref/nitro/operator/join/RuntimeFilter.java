@@ -0,0 +1,168 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.operator.join;
+
+import org.weakref.nitro.data.I32Vector;
+import org.weakref.nitro.data.I64Vector;
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.Vectors;
+
+import java.util.Optional;
+
+/**
+ * Summary of the values of a join key on the build side, used to discard probe rows
+ * that can't possibly match before probing the hash table and before the remaining
+ * probe columns are produced.
+ * <p>
+ * The filter always checks the [min, max] range of the build keys. Within the range, small
+ * domains are represented exactly with a bitset, and larger ones with a blocked bloom filter
+ * that sets all the bits for a key within a single 64-bit word, so each check touches
+ * one word of memory.
+ */
+public class RuntimeFilter
+{
+    private static final long MAX_BITSET_RANGE = 1 << 20;
+    private static final int MAX_BLOOM_WORDS = 1 << 22;
+
+    private final long min;
+    private final long max;
+    private final long[] bitset;
+    private final long[] bloom;
+    private final int bloomMask;
+
+    private RuntimeFilter(long min, long max, long[] bitset, long[] bloom)
+    {
+        this.min = min;
+        this.max = max;
+        this.bitset = bitset;
+        this.bloom = bloom;
+        this.bloomMask = bloom == null ? 0 : bloom.length - 1;
+    }
+
+    /**
+     * Creates a filter over the non-null values in the first rowCount positions of the given column.
+     * Only integer columns are supported.
+     */
+    public static Optional<RuntimeFilter> create(Vector column, int rowCount)
+    {
+        if (!(column instanceof I64Vector) && !(column instanceof I32Vector)) {
+            return Optional.empty();
+        }
+
+        boolean[] nulls = Vectors.nulls(column);
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        int count = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (!nulls[row]) {
+                long value = value(column, row);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                count++;
+            }
+        }
+
+        if (count == 0) {
+            // no non-null keys, so nothing can match
+            return Optional.of(new RuntimeFilter(1, 0, null, null));
+        }
+
+        long range = max - min;
+        if (range >= 0 && range < MAX_BITSET_RANGE) {
+            long[] bitset = new long[(int) (range >>> 6) + 1];
+            for (int row = 0; row < rowCount; row++) {
+                if (!nulls[row]) {
+                    long offset = value(column, row) - min;
+                    bitset[(int) (offset >>> 6)] |= 1L << offset;
+                }
+            }
+            return Optional.of(new RuntimeFilter(min, max, bitset, null));
+        }
+
+        // ~16 bits per key
+        int words = Integer.highestOneBit(Math.min(Math.max(count / 4, 1), MAX_BLOOM_WORDS) * 2 - 1);
+        long[] bloom = new long[words];
+        for (int row = 0; row < rowCount; row++) {
+            if (!nulls[row]) {
+                long hash = Vectors.hash(value(column, row));
+                bloom[(int) hash & (words - 1)] |= bloomBits(hash);
+            }
+        }
+        return Optional.of(new RuntimeFilter(min, max, null, bloom));
+    }
+
+    /**
+     * Writes the active positions whose values may be present on the build side into result.
+     * Nulls never pass.
+     *
+     * @return the number of positions written
+     */
+    public int filter(Vector vector, Mask mask, int[] result)
+    {
+        boolean[] nulls = Vectors.nulls(vector);
+        int count = 0;
+        switch (vector) {
+            case I64Vector v -> {
+                long[] values = v.values();
+                for (int i = 0; i < mask.count(); i++) {
+                    int position = mask.position(i);
+                    result[count] = position;
+                    count += !nulls[position] && mightContain(values[position]) ? 1 : 0;
+                }
+            }
+            case I32Vector v -> {
+                int[] values = v.values();
+                for (int i = 0; i < mask.count(); i++) {
+                    int position = mask.position(i);
+                    result[count] = position;
+                    count += !nulls[position] && mightContain(values[position]) ? 1 : 0;
+                }
+            }
+            default -> throw new IllegalArgumentException("Unsupported vector: " + vector.getClass().getSimpleName());
+        }
+        return count;
+    }
+
+    private boolean mightContain(long value)
+    {
+        if (value < min || value > max) {
+            return false;
+        }
+
+        if (bitset != null) {
+            long offset = value - min;
+            return (bitset[(int) (offset >>> 6)] & (1L << offset)) != 0;
+        }
+
+        long hash = Vectors.hash(value);
+        long bits = bloomBits(hash);
+        return (bloom[(int) hash & bloomMask] & bits) == bits;
+    }
+
+    private static long bloomBits(long hash)
+    {
+        // the low bits select the word, so pick the bits within the word from the high bits
+        return (1L << (hash >>> 58)) | (1L << (hash >>> 52)) | (1L << (hash >>> 46));
+    }
+
+    private static long value(Vector vector, int position)
+    {
+        return switch (vector) {
+            case I64Vector v -> v.values()[position];
+            case I32Vector v -> v.values()[position];
+            default -> throw new IllegalArgumentException("Unsupported vector: " + vector.getClass().getSimpleName());
+        };
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.operator.sort;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import org.weakref.nitro.data.ColumnarBuffer;
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.Vectors;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Computes the sorted order of the rows of a buffer.
+ * <p>
+ * Each key column is encoded as 64-bit unsigned integers that compare in the requested order (see
+ * {@link Vectors#sortKeys}), and the rows are sorted with a least significant digit radix sort, one
+ * byte at a time, from the last key to the first. Since every pass is stable, the result is ordered
+ * lexicographically by the keys. Nulls are handled with one more pass per key, after its value
+ * digits. Passes where all rows share the same digit are skipped, which is common for the high bytes
+ * of small integers.
+ * <p>
+ * Small inputs don't pay off the fixed cost of the radix passes and are sorted with a comparator instead.
+ */
+public final class RowSorter
+{
+    private static final int MIN_RADIX_ROWS = 256;
+    private static final int DIGIT_BITS = 8;
+    private static final int DIGITS = Long.SIZE / DIGIT_BITS;
+    private static final int RADIX = 1 << DIGIT_BITS;
+
+    private RowSorter() {}
+
+    /**
+     * @return the row indexes, in sorted order
+     */
+    public static int[] sort(ColumnarBuffer rows, List<SortKey> keys)
+    {
+        int count = rows.rowCount();
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        if (count < 2 || keys.isEmpty()) {
+            return order;
+        }
+
+        long[][] encoded = new long[keys.size()][];
+        boolean[][] nulls = new boolean[keys.size()][];
+        for (int i = 0; i < keys.size(); i++) {
+            Vector column = Vectors.flatten(rows.column(keys.get(i).column()));
+            nulls[i] = Vectors.nulls(column);
+            encoded[i] = encode(column, count, keys.get(i));
+        }
+
+        if (count < MIN_RADIX_ROWS) {
+            comparatorSort(order, keys, encoded, nulls);
+        }
+        else {
+            // the passes alternate between two arrays, so the result may end up in either
+            order = radixSort(order, keys, encoded, nulls);
+        }
+        return order;
+    }
+
+    /**
+     * Encodes the values at positions [0, count) of the column as longs that compare as unsigned
+     * in the order of the key. Nulls are encoded as 0, and must be ordered separately.
+     */
+    public static long[] encode(Vector column, int count, SortKey key)
+    {
+        column = Vectors.flatten(column);
+        long[] values = new long[count];
+        Vectors.sortKeys(column, Mask.all(count), values);
+
+        boolean[] nulls = Vectors.nulls(column);
+        for (int row = 0; row < count; row++) {
+            // flipping the sign bit turns signed order into unsigned order
+            long value = values[row] ^ Long.MIN_VALUE;
+            value = key.descending() ? ~value : value;
+            // a constant value for nulls keeps them in the order of the keys that follow
+            values[row] = nulls[row] ? 0 : value;
+        }
+        return values;
+    }
+
+    private static void comparatorSort(int[] order, List<SortKey> keys, long[][] encoded, boolean[][] nulls)
+    {
+        IntArrays.quickSort(order, (left, right) -> {
+            for (int i = 0; i < keys.size(); i++) {
+                if (nulls[i][left] != nulls[i][right]) {
+                    return nulls[i][left] == keys.get(i).nullsFirst() ? -1 : 1;
+                }
+
+                int comparison = Long.compareUnsigned(encoded[i][left], encoded[i][right]);
+                if (comparison != 0) {
+                    return comparison;
+                }
+            }
+            return 0;
+        });
+    }
+
+    private static int[] radixSort(int[] order, List<SortKey> keys, long[][] encoded, boolean[][] nulls)
+    {
+        int count = order.length;
+        int[] orderScratch = new int[count];
+        long[] values = new long[count];
+        long[] valuesScratch = new long[count];
+        int[][] histograms = new int[DIGITS][RADIX];
+
+        for (int key = keys.size() - 1; key >= 0; key--) {
+            // move the values along with the rows, so that the passes read them sequentially,
+            // and rebase them on the smallest one, so that the high digits of a narrow range of values are all zero
+            long[] keyValues = encoded[key];
+            long min = -1;
+            for (int i = 0; i < count; i++) {
+                long value = keyValues[order[i]];
+                values[i] = value;
+                min = Long.compareUnsigned(value, min) < 0 ? value : min;
+            }
+            for (int i = 0; i < count; i++) {
+                values[i] -= min;
+            }
+
+            for (int[] histogram : histograms) {
+                Arrays.fill(histogram, 0);
+            }
+            for (int i = 0; i < count; i++) {
+                long value = values[i];
+                for (int digit = 0; digit < DIGITS; digit++) {
+                    histograms[digit][digit(value, digit)]++;
+                }
+            }
+
+            for (int digit = 0; digit < DIGITS; digit++) {
+                int[] histogram = histograms[digit];
+                if (histogram[digit(values[0], digit)] == count) {
+                    continue;
+                }
+
+                int offset = 0;
+                for (int bucket = 0; bucket < RADIX; bucket++) {
+                    int bucketCount = histogram[bucket];
+                    histogram[bucket] = offset;
+                    offset += bucketCount;
+                }
+
+                for (int i = 0; i < count; i++) {
+                    long value = values[i];
+                    int target = histogram[digit(value, digit)]++;
+                    valuesScratch[target] = value;
+                    orderScratch[target] = order[i];
+                }
+
+                long[] swapValues = values;
+                values = valuesScratch;
+                valuesScratch = swapValues;
+                int[] swapOrder = order;
+                order = orderScratch;
+                orderScratch = swapOrder;
+            }
+
+            partitionNulls(order, orderScratch, nulls[key], keys.get(key).nullsFirst());
+        }
+
+        return order;
+    }
+
+    private static void partitionNulls(int[] order, int[] scratch, boolean[] nulls, boolean nullsFirst)
+    {
+        int nullCount = 0;
+        for (int row : order) {
+            nullCount += nulls[row] ? 1 : 0;
+        }
+        if (nullCount == 0 || nullCount == order.length) {
+            return;
+        }
+
+        int nullPosition = nullsFirst ? 0 : order.length - nullCount;
+        int valuePosition = nullsFirst ? nullCount : 0;
+        for (int row : order) {
+            if (nulls[row]) {
+                scratch[nullPosition++] = row;
+            }
+            else {
+                scratch[valuePosition++] = row;
+            }
+        }
+        System.arraycopy(scratch, 0, order, 0, order.length);
+    }
+
+    private static int digit(long value, int digit)
+    {
+        return (int) (value >>> (digit * DIGIT_BITS)) & (RADIX - 1);
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.operator.sort;
+
+import org.weakref.nitro.data.SpillReader;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.Vectors;
+
+import java.util.List;
+
+/**
+ * K-way merge of sorted runs, each read sequentially one block at a time.
+ * <p>
+ * The runs are kept in a binary min-heap ordered by their current row. Rows are compared on the
+ * keys encoded by {@link RowSorter#encode}, and ties go to the run that was written first, so the
+ * merge preserves the order of the input for rows with equal keys.
+ */
+public class RunMerger
+{
+    private final List<SpillReader> runs;
+    private final List<SortKey> keys;
+
+    private final int[] heap;
+    private int heapSize;
+
+    private final int[] cursors;
+    private final long[][][] encoded;
+    private final boolean[][][] nulls;
+
+    // the run whose block was exhausted by the last batch. It can only be advanced once the batch has been consumed.
+    private int exhaustedRun = -1;
+
+    public RunMerger(List<SpillReader> runs, List<SortKey> keys)
+    {
+        this.runs = List.copyOf(runs);
+        this.keys = List.copyOf(keys);
+
+        heap = new int[runs.size()];
+        cursors = new int[runs.size()];
+        encoded = new long[runs.size()][keys.size()][];
+        nulls = new boolean[runs.size()][keys.size()][];
+
+        for (int run = 0; run < runs.size(); run++) {
+            if (load(run)) {
+                heap[heapSize] = run;
+                heapSize++;
+            }
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    public boolean hasNext()
+    {
+        return heapSize > 0;
+    }
+
+    /**
+     * Selects up to maxCount rows in merged order. The i-th row is at positions[i] of the current
+     * block of run runIndexes[i]. The batch ends early when the block of a run is exhausted, since
+     * the rows of a block are only valid until the next call.
+     *
+     * @return the number of rows selected
+     */
+    public int next(int[] runIndexes, int[] positions, int maxCount)
+    {
+        if (exhaustedRun >= 0) {
+            int run = exhaustedRun;
+            exhaustedRun = -1;
+
+            // the run is at the top of the heap, since it provided the last row
+            if (!load(run)) {
+                heapSize--;
+                heap[0] = heap[heapSize];
+            }
+            siftDown(0);
+        }
+
+        int count = 0;
+        while (count < maxCount && heapSize > 0) {
+            int run = heap[0];
+            runIndexes[count] = run;
+            positions[count] = cursors[run];
+            count++;
+
+            cursors[run]++;
+            if (cursors[run] == runs.get(run).rowCount()) {
+                exhaustedRun = run;
+                break;
+            }
+            siftDown(0);
+        }
+        return count;
+    }
+
+    /**
+     * @return the columns of the current block of the run
+     */
+    public Vector column(int run, int column)
+    {
+        return runs.get(run).column(column);
+    }
+
+    private boolean load(int run)
+    {
+        SpillReader reader = runs.get(run);
+        if (!reader.next()) {
+            return false;
+        }
+
+        cursors[run] = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            Vector column = reader.column(keys.get(i).column());
+            encoded[run][i] = RowSorter.encode(column, reader.rowCount(), keys.get(i));
+            nulls[run][i] = Vectors.nulls(column);
+        }
+        return true;
+    }
+
+    private void siftDown(int index)
+    {
+        int run = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && less(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!less(heap[child], run)) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = run;
+    }
+
+    private boolean less(int left, int right)
+    {
+        int leftPosition = cursors[left];
+        int rightPosition = cursors[right];
+        for (int i = 0; i < keys.size(); i++) {
+            boolean leftNull = nulls[left][i][leftPosition];
+            boolean rightNull = nulls[right][i][rightPosition];
+            if (leftNull != rightNull) {
+                return leftNull == keys.get(i).nullsFirst();
+            }
+
+            int comparison = Long.compareUnsigned(encoded[left][i][leftPosition], encoded[right][i][rightPosition]);
+            if (comparison != 0) {
+                return comparison < 0;
+            }
+        }
+        return left < right;
+    }
+}
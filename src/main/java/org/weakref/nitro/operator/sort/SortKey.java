@@ -0,0 +1,42 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.operator.sort;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A column to sort by. Nulls sort last unless requested otherwise, regardless of the direction.
+ */
+public record SortKey(int column, boolean descending, boolean nullsFirst)
+{
+    public SortKey
+    {
+        checkArgument(column >= 0, "Invalid column: %s", column);
+    }
+
+    public static SortKey ascending(int column)
+    {
+        return new SortKey(column, false, false);
+    }
+
+    public static SortKey descending(int column)
+    {
+        return new SortKey(column, true, false);
+    }
+
+    public SortKey withNullsFirst()
+    {
+        return new SortKey(column, descending, true);
+    }
+}
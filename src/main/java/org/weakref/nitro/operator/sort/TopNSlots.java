@@ -0,0 +1,308 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro.operator.sort;
+
+import org.weakref.nitro.data.Allocator;
+import org.weakref.nitro.data.ColumnarBuffer;
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.Vectors;
+import org.weakref.nitro.operator.Operator;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Candidate rows of the TopN operators.
+ * <p>
+ * Each candidate occupies a slot that keeps only the encoded sort keys of its row (see
+ * {@link RowSorter#encode}), so comparisons don't dispatch on the vector type, and a reference to
+ * the row. The operators decide which slot an incoming row replaces with binary heaps of slot
+ * indexes, ordered so that the row that sorts last is at the top. The heaps live in ranges of flat
+ * arrays owned by the operators, and are maintained by the methods here.
+ * <p>
+ * Columns are materialized late: at the end of each batch, only the rows of the batch that are
+ * still in a slot are copied into a retained buffer, so rows that are replaced within the same
+ * batch are never copied. Rows of earlier batches that get evicted are left in the buffer until
+ * they outnumber the live ones, at which point the buffer is compacted.
+ */
+public class TopNSlots
+{
+    private static final int COMPACTION_THRESHOLD = 4096;
+
+    private final Allocator allocator;
+    private final Allocator.Context context;
+    private final List<SortKey> keys;
+    private final ColumnarBuffer retained;
+
+    private int[] slotRows = new int[0];
+    private int[] slotPositions = new int[0];
+    private final long[][] slotKeys;
+    private final boolean[][] slotNulls;
+
+    private final long[][] batchKeys;
+    private final boolean[][] batchNulls;
+    private int[] acceptedPositions = new int[0];
+    private int[] acceptedSlots = new int[0];
+    private int accepted;
+
+    public TopNSlots(Allocator allocator, Allocator.Context context, List<SortKey> keys, int columnCount)
+    {
+        this.allocator = allocator;
+        this.context = context;
+        this.keys = List.copyOf(keys);
+
+        retained = new ColumnarBuffer(allocator, context, columnCount);
+        slotKeys = new long[keys.size()][0];
+        slotNulls = new boolean[keys.size()][0];
+        batchKeys = new long[keys.size()][];
+        batchNulls = new boolean[keys.size()][];
+    }
+
+    public void ensureCapacity(int slots)
+    {
+        if (slots > slotRows.length) {
+            slotRows = Arrays.copyOf(slotRows, slots);
+            slotPositions = Arrays.copyOf(slotPositions, slots);
+            for (int i = 0; i < keys.size(); i++) {
+                slotKeys[i] = Arrays.copyOf(slotKeys[i], slots);
+                slotNulls[i] = Arrays.copyOf(slotNulls[i], slots);
+            }
+        }
+    }
+
+    /**
+     * Starts a batch with at most the given number of active positions
+     */
+    public void startBatch(int count)
+    {
+        if (acceptedPositions.length < count) {
+            acceptedPositions = new int[count];
+            acceptedSlots = new int[count];
+        }
+        accepted = 0;
+    }
+
+    /**
+     * Encodes positions [0, length) of the column of the given key in the current batch, which must be flat
+     */
+    public void encodeKey(int key, Vector column, int length)
+    {
+        batchKeys[key] = RowSorter.encode(column, length, keys.get(key));
+        batchNulls[key] = Vectors.nulls(column);
+    }
+
+    /**
+     * @return whether the row at the given position of the current batch may sort before the row
+     * in the slot, judging by the first key alone. Ties are kept if there are more keys to break them.
+     */
+    public boolean mayPrecede(int position, int slot)
+    {
+        boolean nullsFirst = keys.get(0).nullsFirst();
+        boolean null1 = batchNulls[0][position];
+        boolean null2 = slotNulls[0][slot];
+        if (null1 != null2) {
+            return null1 == nullsFirst;
+        }
+
+        boolean keepTies = keys.size() > 1;
+        if (null1) {
+            return keepTies;
+        }
+        int comparison = Long.compareUnsigned(batchKeys[0][position], slotKeys[0][slot]);
+        return comparison < 0 || (keepTies && comparison == 0);
+    }
+
+    /**
+     * Puts the row at the given position of the current batch in the slot
+     */
+    public void accept(int slot, int position)
+    {
+        slotPositions[slot] = position;
+        for (int i = 0; i < keys.size(); i++) {
+            slotKeys[i][slot] = batchKeys[i][position];
+            slotNulls[i][slot] = batchNulls[i][position];
+        }
+
+        acceptedPositions[accepted] = position;
+        acceptedSlots[accepted] = slot;
+        accepted++;
+    }
+
+    /**
+     * Copies the rows of the current batch that are still in a slot into the retained buffer
+     */
+    public void retain(Operator source)
+    {
+        if (accepted == 0) {
+            return;
+        }
+
+        // a slot may be replaced more than once in a batch, and only the last row to land in it is still live
+        int live = 0;
+        for (int i = 0; i < accepted; i++) {
+            int slot = acceptedSlots[i];
+            if (slotPositions[slot] == acceptedPositions[i]) {
+                acceptedPositions[live] = acceptedPositions[i];
+                acceptedSlots[live] = slot;
+                live++;
+            }
+        }
+
+        int start = retained.rowCount();
+        Vector[] columns = new Vector[retained.columnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = source.column(i);
+        }
+        retained.append(columns, Mask.sparse(acceptedPositions, live));
+        for (int i = 0; i < live; i++) {
+            slotRows[acceptedSlots[i]] = start + i;
+        }
+        accepted = 0;
+    }
+
+    /**
+     * @return whether the evicted rows in the retained buffer outnumber the given number of live ones
+     */
+    public boolean needsCompaction(int liveCount)
+    {
+        return retained.rowCount() - liveCount > Math.max(liveCount, COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Drops the evicted rows from the retained buffer
+     *
+     * @param liveSlots the occupied slots, at positions [0, count)
+     */
+    public void compact(int[] liveSlots, int count)
+    {
+        int[] rows = new int[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = slotRows[liveSlots[i]];
+            slotRows[liveSlots[i]] = i;
+        }
+        retained.select(rows, count);
+    }
+
+    /**
+     * @return the columns of the rows in the given slots, in that order
+     */
+    public Vector[] gather(int[] slots, int count)
+    {
+        int[] rows = new int[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = slotRows[slots[i]];
+        }
+
+        Vector[] result = new Vector[retained.columnCount()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = allocator.allocate(context, count, retained.type(i)::allocate);
+            if (count > 0) {
+                Vectors.gather(retained.column(i), rows, count, result[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return whether the row at the given position of the current batch sorts before the row in the slot
+     */
+    public boolean sortsBefore(int position, int slot)
+    {
+        for (int i = 0; i < keys.size(); i++) {
+            boolean null1 = batchNulls[i][position];
+            boolean null2 = slotNulls[i][slot];
+            if (null1 != null2) {
+                return null1 == keys.get(i).nullsFirst();
+            }
+
+            int comparison = Long.compareUnsigned(batchKeys[i][position], slotKeys[i][slot]);
+            if (comparison != 0) {
+                return comparison < 0;
+            }
+        }
+        return false;
+    }
+
+    private boolean slotSortsBefore(int slot1, int slot2)
+    {
+        for (int i = 0; i < keys.size(); i++) {
+            boolean null1 = slotNulls[i][slot1];
+            boolean null2 = slotNulls[i][slot2];
+            if (null1 != null2) {
+                return null1 == keys.get(i).nullsFirst();
+            }
+
+            int comparison = Long.compareUnsigned(slotKeys[i][slot1], slotKeys[i][slot2]);
+            if (comparison != 0) {
+                return comparison < 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Restores the heap in heap[base, base + index] after the slot at base + index was added
+     */
+    public void siftUp(int[] heap, int base, int index)
+    {
+        int slot = heap[base + index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!slotSortsBefore(heap[base + parent], slot)) {
+                break;
+            }
+            heap[base + index] = heap[base + parent];
+            index = parent;
+        }
+        heap[base + index] = slot;
+    }
+
+    /**
+     * Restores the heap in heap[base, base + size) after the slot at base + index was replaced
+     */
+    public void siftDown(int[] heap, int base, int size, int index)
+    {
+        int slot = heap[base + index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && slotSortsBefore(heap[base + child], heap[base + child + 1])) {
+                child++;
+            }
+            if (!slotSortsBefore(slot, heap[base + child])) {
+                break;
+            }
+            heap[base + index] = heap[base + child];
+            index = child;
+        }
+        heap[base + index] = slot;
+    }
+
+    /**
+     * Writes the slots of the heap in heap[base, base + size), in sorted order, to order[offset, offset + size).
+     * Leaves the heap range in an unspecified order.
+     */
+    public void drain(int[] heap, int base, int size, int[] order, int offset)
+    {
+        while (size > 0) {
+            order[offset + size - 1] = heap[base];
+            size--;
+            heap[base] = heap[base + size];
+            siftDown(heap, base, size, 0);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.CompilerControl;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weakref.nitro.data.Allocator;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.Vectors;
+import org.weakref.nitro.operator.GeneratorOperator;
+import org.weakref.nitro.operator.GroupOperator;
+import org.weakref.nitro.operator.Operator;
+import org.weakref.nitro.operator.generator.I64Generator;
+import org.weakref.nitro.operator.generator.SequenceGenerator;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group id assignment as the number of groups grows past the size of the caches. The keys are
+ * scrambled so that they span more than the direct-mapped range of the hash table, even for
+ * few groups, and are assigned by hashing.
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgs = "-Xmx8g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+public class BenchmarkGroup
+{
+    private static final long ROWS = 20_000_000;
+
+    private final Allocator allocator = new Allocator();
+
+    @Param({"10", "1000", "100000", "1000000", "10000000"})
+    private long groupCount = 1_000_000;
+
+    @Benchmark
+    public void group()
+    {
+        Operator operator = new GroupOperator(
+                allocator,
+                0,
+                new GeneratorOperator(
+                        allocator,
+                        ROWS,
+                        List.of(new ScrambledGenerator(new SequenceGenerator(0, groupCount)))));
+
+        while (operator.hasNext()) {
+            operator.next();
+            consume(operator.column(0));
+        }
+        operator.close();
+    }
+
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    private static void consume(Vector vector)
+    {
+    }
+
+    /**
+     * Maps the values of another generator through a bijection, so they stay distinct
+     */
+    private static class ScrambledGenerator
+            implements I64Generator
+    {
+        private final I64Generator delegate;
+
+        public ScrambledGenerator(I64Generator delegate)
+        {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void next()
+        {
+            delegate.next();
+        }
+
+        @Override
+        public long value()
+        {
+            return Vectors.hash(delegate.value());
+        }
+
+        @Override
+        public boolean isNull()
+        {
+            return delegate.isNull();
+        }
+
+        @Override
+        public void skip(int count)
+        {
+            delegate.skip(count);
+        }
+    }
+
+    public static void main(String[] args)
+            throws Exception
+    {
+        Benchmarks.benchmark(BenchmarkGroup.class)
+                .run();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.CompilerControl;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weakref.nitro.data.Allocator;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.operator.GeneratorOperator;
+import org.weakref.nitro.operator.HashJoinOperator;
+import org.weakref.nitro.operator.HashJoinOperator.Partitioning;
+import org.weakref.nitro.operator.Operator;
+import org.weakref.nitro.operator.generator.SequenceGenerator;
+import org.weakref.nitro.operator.join.JoinType;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgs = "-Xmx16g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+public class BenchmarkHashJoin
+{
+    private static final long PROBE_ROWS = 10_000_000;
+
+    private final Allocator allocator = new Allocator();
+
+    @Param({"10000", "100000", "1000000", "10000000", "100000000"})
+    private long buildRows = 1_000_000;
+
+    @Param({"NONE", "RADIX"})
+    private Partitioning partitioning = Partitioning.NONE;
+
+    @Benchmark
+    public void join()
+    {
+        Operator operator = new HashJoinOperator(
+                allocator,
+                new GeneratorOperator(
+                        allocator,
+                        PROBE_ROWS,
+                        List.of(new SequenceGenerator(0, buildRows))),
+                List.of(0),
+                new GeneratorOperator(
+                        allocator,
+                        buildRows,
+                        List.of(new SequenceGenerator(0))),
+                List.of(0),
+                JoinType.INNER,
+                HashJoinOperator.Options.DEFAULT.withPartitioning(partitioning));
+
+        while (operator.hasNext()) {
+            operator.next();
+            for (int column = 0; column < operator.columnCount(); column++) {
+                consume(operator.column(column));
+            }
+        }
+        operator.close();
+    }
+
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    private static void consume(Vector vector)
+    {
+    }
+
+    public static void main(String[] args)
+            throws Exception
+    {
+        Benchmarks.benchmark(BenchmarkHashJoin.class)
+                .run();
+    }
+}
@@ -28,20 +28,32 @@ import org.weakref.nitro.data.Allocator;
 import org.weakref.nitro.data.I64Vector;
 import org.weakref.nitro.data.Vector;
 import org.weakref.nitro.function.Function;
+import org.weakref.nitro.function.FunctionRegistry;
 import org.weakref.nitro.operator.AggregationOperator;
+import org.weakref.nitro.operator.BlockNestedLoopJoinOperator;
 import org.weakref.nitro.operator.GeneratorOperator;
 import org.weakref.nitro.operator.GroupOperator;
 import org.weakref.nitro.operator.GroupedAggregationOperator;
+import org.weakref.nitro.operator.HashAggregationOperator;
+import org.weakref.nitro.operator.HashJoinOperator;
+import org.weakref.nitro.operator.MergeJoinOperator;
 import org.weakref.nitro.operator.NestedLoopJoinOperator;
 import org.weakref.nitro.operator.Operator;
 import org.weakref.nitro.operator.ProjectOperator;
+import org.weakref.nitro.operator.RangeJoinOperator;
+import org.weakref.nitro.operator.RangeJoinOperator.Bound;
+import org.weakref.nitro.operator.TopNOperator;
 import org.weakref.nitro.operator.aggregation.CountAll;
 import org.weakref.nitro.operator.aggregation.CountColumn;
 import org.weakref.nitro.operator.generator.SequenceGenerator;
+import org.weakref.nitro.operator.join.I64JoinPredicate;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 
+import static org.weakref.nitro.data.VectorType.I64;
+
 @State(Scope.Thread)
 @Fork(1)
 @Warmup(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
@@ -62,6 +74,8 @@ public class BenchmarkOperators
         }
     };
 
+    private static final FunctionRegistry.ResolvedFunction RESOLVED_ADD = new FunctionRegistry().resolve("add", List.of(I64, I64), false);
+
     @Benchmark
     @OperationsPerInvocation(1_000_000_000)
     public void aggregationCountAll()
@@ -108,6 +122,22 @@ public class BenchmarkOperators
         consume(operator);
     }
 
+    @Benchmark
+    @OperationsPerInvocation(100_000_000)
+    public void hashAggregation()
+    {
+        Operator operator = new HashAggregationOperator(
+                allocator,
+                List.of(0),
+                List.of(new CountAll()),
+                new GeneratorOperator(
+                        allocator,
+                        100_000_000L,
+                        List.of(new SequenceGenerator(0, 10))));
+
+        consume(operator);
+    }
+
     @Benchmark
     @OperationsPerInvocation(100_000)
     public void group()
@@ -140,6 +170,23 @@ public class BenchmarkOperators
         consume(operator);
     }
 
+    @Benchmark
+    @OperationsPerInvocation(100_000)
+    public void projectResolved()
+    {
+        Operator operator = new ProjectOperator(
+                allocator,
+                new ProjectOperator.Execution(
+                        List.of(new ProjectOperator.Invocation(RESOLVED_ADD.function(), List.of(-1, -1), RESOLVED_ADD.allocator())),
+                        List.of(0)),
+                new GeneratorOperator(
+                        allocator,
+                        100_000L,
+                        List.of(new SequenceGenerator(0, 10000))));
+
+        consume(operator);
+    }
+
     @Benchmark
     @OperationsPerInvocation(25_000 * 25_000)
     public void nestedLoopJoin()
@@ -194,6 +241,142 @@ public class BenchmarkOperators
         consume(operator);
     }
 
+    @Benchmark
+    @OperationsPerInvocation(3_000 * 500_000)
+    public void blockNestedLoopJoinSmallVsLarge()
+    {
+        Operator operator = new BlockNestedLoopJoinOperator(
+                allocator,
+                new GeneratorOperator(
+                        allocator,
+                        3_000L,
+                        List.of(new SequenceGenerator(100))),
+                new GeneratorOperator(
+                        allocator,
+                        500_000L,
+                        List.of(new SequenceGenerator(100))),
+                new I64JoinPredicate(0, 0, (outer, inner) -> outer == inner));
+
+        consume(operator);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1_000_000)
+    public void topN()
+    {
+        Operator operator = new TopNOperator(
+                allocator,
+                100,
+                0,
+                new GeneratorOperator(
+                        allocator,
+                        1_000_000L,
+                        List.of(new SequenceGenerator(0))));
+
+        consume(operator);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(25_000 + 25_000)
+    public void hashJoin()
+    {
+        Operator operator = new HashJoinOperator(
+                allocator,
+                new GeneratorOperator(
+                        allocator,
+                        25_000L,
+                        List.of(new SequenceGenerator(100))),
+                List.of(0),
+                new GeneratorOperator(
+                        allocator,
+                        25_000L,
+                        List.of(new SequenceGenerator(100))),
+                List.of(0));
+
+        consume(operator);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(25_000 + 25_000)
+    public void mergeJoin()
+    {
+        Operator operator = new MergeJoinOperator(
+                allocator,
+                new GeneratorOperator(
+                        allocator,
+                        25_000L,
+                        List.of(new SequenceGenerator(100))),
+                0,
+                new GeneratorOperator(
+                        allocator,
+                        25_000L,
+                        List.of(new SequenceGenerator(100))),
+                0);
+
+        consume(operator);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(25_000 + 25_000)
+    public void rangeJoin()
+    {
+        Operator operator = new RangeJoinOperator(
+                allocator,
+                new GeneratorOperator(
+                        allocator,
+                        25_000L,
+                        List.of(new SequenceGenerator(0))),
+                0,
+                new GeneratorOperator(
+                        allocator,
+                        25_000L,
+                        List.of(new SequenceGenerator(0), new SequenceGenerator(10))),
+                Optional.of(Bound.inclusive(0)),
+                Optional.of(Bound.inclusive(1)));
+
+        consume(operator);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(3_000 + 500_000)
+    public void hashJoinSmallVsLarge()
+    {
+        Operator operator = new HashJoinOperator(
+                allocator,
+                new GeneratorOperator(
+                        allocator,
+                        3_000L,
+                        List.of(new SequenceGenerator(100))),
+                List.of(0),
+                new GeneratorOperator(
+                        allocator,
+                        500_000L,
+                        List.of(new SequenceGenerator(100))),
+                List.of(0));
+
+        consume(operator);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(500_000 + 3_000)
+    public void hashJoinLargeVsSmall()
+    {
+        Operator operator = new HashJoinOperator(
+                allocator,
+                new GeneratorOperator(
+                        allocator,
+                        500_000L,
+                        List.of(new SequenceGenerator(100))),
+                List.of(0),
+                new GeneratorOperator(
+                        allocator,
+                        3_000L,
+                        List.of(new SequenceGenerator(100))),
+                List.of(0));
+
+        consume(operator);
+    }
+
     private static void consume(Operator operator)
     {
         while (operator.hasNext()) {
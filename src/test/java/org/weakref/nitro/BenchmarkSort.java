@@ -0,0 +1,97 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.weakref.nitro;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weakref.nitro.data.Allocator;
+import org.weakref.nitro.data.ColumnarBuffer;
+import org.weakref.nitro.data.I64Vector;
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.operator.sort.RowSorter;
+import org.weakref.nitro.operator.sort.SortKey;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgs = "-Xmx8g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+public class BenchmarkSort
+{
+    private static final List<SortKey> KEYS = List.of(SortKey.ascending(0));
+
+    @Param({"1000", "100000", "10000000"})
+    private int rowCount = 100_000;
+
+    // number of distinct values
+    @Param({"100", "1000000000000"})
+    private long cardinality = 1_000_000_000_000L;
+
+    private ColumnarBuffer rows;
+    private long[] values;
+
+    @Setup
+    public void setup()
+    {
+        I64Vector column = new I64Vector(rowCount);
+        values = column.values();
+        for (int row = 0; row < rowCount; row++) {
+            values[row] = ThreadLocalRandom.current().nextLong(-cardinality / 2, cardinality / 2 + 1);
+        }
+
+        rows = new ColumnarBuffer(new Allocator(), new Allocator.Context("BenchmarkSort"), 1);
+        rows.append(new Vector[] {column}, Mask.all(rowCount));
+    }
+
+    @Benchmark
+    public int[] radixSort()
+    {
+        return RowSorter.sort(rows, KEYS);
+    }
+
+    @Benchmark
+    public Integer[] arraysSort()
+    {
+        Integer[] order = new Integer[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(row -> values[row]));
+        return order;
+    }
+
+    public static void main(String[] args)
+            throws Exception
+    {
+        Benchmarks.benchmark(BenchmarkSort.class)
+                .run();
+    }
+}
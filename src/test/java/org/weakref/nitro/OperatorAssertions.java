@@ -16,10 +16,12 @@ package org.weakref.nitro;
 import org.assertj.core.api.AssertProvider;
 import org.assertj.core.api.Descriptable;
 import org.assertj.core.description.Description;
+import org.weakref.nitro.data.I32Vector;
 import org.weakref.nitro.data.I64Vector;
 import org.weakref.nitro.data.Mask;
 import org.weakref.nitro.data.Row;
 import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.Vectors;
 import org.weakref.nitro.operator.Operator;
 
 import java.util.ArrayList;
@@ -78,14 +80,17 @@ public class OperatorAssertions
 
                 List<Vector> columns = new ArrayList<>();
                 for (int i = 0; i < operator.columnCount(); i++) {
-                    columns.add(operator.column(i));
+                    columns.add(Vectors.flatten(operator.column(i)));
                 }
 
                 for (int position : mask) {
                     Long[] row = new Long[columns.size()];
                     for (int i = 0; i < columns.size(); i++) {
-                        I64Vector column = (I64Vector) columns.get(i);
-                        row[i] = column.nulls()[position] ? null : column.values()[position];
+                        row[i] = switch (columns.get(i)) {
+                            case I64Vector column -> column.nulls()[position] ? null : column.values()[position];
+                            case I32Vector column -> column.nulls()[position] ? null : (long) column.values()[position];
+                            default -> throw new IllegalArgumentException("Unsupported vector: " + columns.get(i).getClass().getSimpleName());
+                        };
                     }
 
                     result.add(new Row(row));
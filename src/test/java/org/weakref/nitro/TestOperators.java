@@ -19,17 +19,37 @@ import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.parallel.Execution;
 import org.junit.jupiter.api.parallel.ExecutionMode;
 import org.weakref.nitro.data.Allocator;
+import org.weakref.nitro.data.ColumnarBuffer;
+import org.weakref.nitro.data.F64Vector;
+import org.weakref.nitro.data.I32Vector;
 import org.weakref.nitro.data.I64Vector;
+import org.weakref.nitro.data.Mask;
+import org.weakref.nitro.data.Row;
+import org.weakref.nitro.data.Vector;
+import org.weakref.nitro.data.VectorType;
+import org.weakref.nitro.data.Vectors;
 import org.weakref.nitro.function.Function;
+import org.weakref.nitro.function.FunctionRegistry;
 import org.weakref.nitro.operator.AggregationOperator;
+import org.weakref.nitro.operator.AsOfJoinOperator;
+import org.weakref.nitro.operator.BlockNestedLoopJoinOperator;
 import org.weakref.nitro.operator.ConstantTableOperator;
 import org.weakref.nitro.operator.FilterOperator;
 import org.weakref.nitro.operator.GeneratorOperator;
 import org.weakref.nitro.operator.GroupOperator;
 import org.weakref.nitro.operator.GroupedAggregationOperator;
+import org.weakref.nitro.operator.GroupedTopNOperator;
+import org.weakref.nitro.operator.HashAggregationOperator;
+import org.weakref.nitro.operator.HashJoinOperator;
 import org.weakref.nitro.operator.LimitOperator;
+import org.weakref.nitro.operator.MergeJoinOperator;
 import org.weakref.nitro.operator.NestedLoopJoinOperator;
+import org.weakref.nitro.operator.Operator;
 import org.weakref.nitro.operator.ProjectOperator;
+import org.weakref.nitro.operator.RangeJoinOperator;
+import org.weakref.nitro.operator.RangeJoinOperator.Bound;
+import org.weakref.nitro.operator.SemiJoinOperator;
+import org.weakref.nitro.operator.SortOperator;
 import org.weakref.nitro.operator.TopNOperator;
 import org.weakref.nitro.operator.aggregation.CountAll;
 import org.weakref.nitro.operator.aggregation.CountColumn;
@@ -38,13 +58,34 @@ import org.weakref.nitro.operator.aggregation.Max;
 import org.weakref.nitro.operator.aggregation.Min;
 import org.weakref.nitro.operator.aggregation.Sum;
 import org.weakref.nitro.operator.filter.I64Predicate;
+import org.weakref.nitro.operator.generator.I64Generator;
 import org.weakref.nitro.operator.generator.SequenceGenerator;
+import org.weakref.nitro.operator.join.I64JoinPredicate;
+import org.weakref.nitro.operator.join.JoinHashTable;
+import org.weakref.nitro.operator.join.JoinType;
+import org.weakref.nitro.operator.sort.SortKey;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongUnaryOperator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.weakref.nitro.OperatorAssertions.operator;
 import static org.weakref.nitro.data.Row.row;
+import static org.weakref.nitro.data.VectorType.F64;
+import static org.weakref.nitro.data.VectorType.I32;
+import static org.weakref.nitro.data.VectorType.I64;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 @Execution(ExecutionMode.SAME_THREAD)
@@ -322,273 +363,1806 @@ public class TestOperators
     }
 
     @Test
-    void testAggregation()
+    void testTopNLargeLimit()
     {
+        // the slots grow with the input, so a limit far beyond it costs nothing up front
+        List<Row> expected = new ArrayList<>();
+        for (long i = 2999; i >= 0; i--) {
+            expected.add(row(i));
+        }
+
         assertThat(operator(
-                new AggregationOperator(
+                new TopNOperator(
                         allocator,
-                        List.of(
-                                new First(0),
-                                new Min(0),
-                                new Max(0),
-                                new Sum(0),
-                                new CountAll()),
-                        new GeneratorOperator(
-                                allocator,
-                                50,
-                                10,
-                                List.of(new SequenceGenerator(100))))))
-                .matchesExactly(List.of(row(100L, 100L, 149L, 6225L, 50L)));
+                        Integer.MAX_VALUE,
+                        0,
+                        new GeneratorOperator(allocator, 3000, 100, List.of(new SequenceGenerator(0))))))
+                .matchesExactly(expected);
+    }
 
+    @Test
+    void testGroupMultipleColumns()
+    {
+        FunctionRegistry.ResolvedFunction narrow = new FunctionRegistry().resolveCast(I64, I32, true);
         assertThat(operator(
-                new AggregationOperator(
+                new GroupOperator(
                         allocator,
-                        List.of(
-                                new First(0),
-                                new Min(0),
-                                new Max(0),
-                                new Sum(0),
-                                new CountAll()),
-                        new FilterOperator(
-                                0,
-                                new I64Predicate(value -> value % 2 == 0),
-                                new GeneratorOperator(
+                        List.of(0, 1),
+                        new ProjectOperator(
+                                allocator,
+                                new ProjectOperator.Execution(
+                                        List.of(new ProjectOperator.Invocation(narrow.function(), List.of(-1), narrow.allocator())),
+                                        List.of(0, -2)),
+                                new ConstantTableOperator(
                                         allocator,
-                                        50,
-                                        10,
-                                        List.of(new SequenceGenerator(100)))))))
-                .matchesExactly(List.of(row(100L, 100L, 148L, 3100L, 25L)));
+                                        2,
+                                        List.of(
+                                                row(1L, 10L),
+                                                row(1L, 20L),
+                                                row(2L, 10L),
+                                                row(1L, 10L),
+                                                row(null, 10L),
+                                                row(2L, 10L),
+                                                row(2L, null)))))))
+                .matchesExactly(List.of(
+                        row(0L, 1L, 10L),
+                        row(1L, 1L, 20L),
+                        row(2L, 2L, 10L),
+                        row(0L, 1L, 10L),
+                        row(null, null, 10L),
+                        row(2L, 2L, 10L),
+                        row(null, 2L, null)));
     }
 
     @Test
-    void testCountColumn()
+    void testGroupManyGroups()
     {
+        List<Row> expected = new ArrayList<>();
+        for (long i = 0; i < 6000; i++) {
+            expected.add(row(i % 3000, i % 1000, i % 3));
+        }
+
         assertThat(operator(
-                new AggregationOperator(
+                new GroupOperator(
                         allocator,
-                        List.of(
-                                new CountColumn(0),
-                                new CountColumn(1),
-                                new CountColumn(2)),
+                        List.of(0, 1),
+                        new ProjectOperator(
+                                allocator,
+                                new ProjectOperator.Execution(
+                                        List.of(
+                                                new ProjectOperator.Invocation(modulo(1000), List.of(-1), I64Vector::new),
+                                                new ProjectOperator.Invocation(modulo(3), List.of(-1), I64Vector::new)),
+                                        List.of(0, 1)),
+                                new GeneratorOperator(allocator, 6000, 500, List.of(new SequenceGenerator(0)))))))
+                .matchesExactly(expected);
+    }
+
+    @Test
+    void testGroupRangeGrowsPastDirectMapping()
+    {
+        // a small range, then one that extends below it, and finally one too wide to map directly
+        LongUnaryOperator key = i -> {
+            if (i < 1000) {
+                return i % 10;
+            }
+            if (i < 2000) {
+                return -(i % 50);
+            }
+            return (i % 20) * 1_000_000;
+        };
+
+        Map<Long, Long> groups = new HashMap<>();
+        List<Row> expected = new ArrayList<>();
+        for (long i = 0; i < 3000; i++) {
+            long value = key.applyAsLong(i);
+            expected.add(row(groups.computeIfAbsent(value, ignored -> (long) groups.size()), value));
+        }
+
+        assertThat(operator(
+                new GroupOperator(
+                        allocator,
+                        0,
+                        new ProjectOperator(
+                                allocator,
+                                new ProjectOperator.Execution(
+                                        List.of(new ProjectOperator.Invocation(
+                                                (output, inputs, mask) -> {
+                                                    I64Vector in = (I64Vector) inputs[0];
+                                                    I64Vector out = (I64Vector) output;
+                                                    for (int i = 0; i <= mask.maxPosition(); i++) {
+                                                        out.nulls()[i] = in.nulls()[i];
+                                                        out.values()[i] = key.applyAsLong(in.values()[i]);
+                                                    }
+                                                },
+                                                List.of(-1),
+                                                I64Vector::new)),
+                                        List.of(0)),
+                                new GeneratorOperator(allocator, 3000, 100, List.of(new SequenceGenerator(0)))))))
+                .matchesExactly(expected);
+    }
+
+    @Test
+    void testHashAggregation()
+    {
+        assertThat(operator(
+                new HashAggregationOperator(
+                        allocator,
+                        List.of(0, 1),
+                        List.of(new Sum(2), new CountAll()),
                         new ConstantTableOperator(
                                 allocator,
                                 3,
                                 List.of(
-                                        row(1L, null, 10L),
-                                        row(2L, null, 20L),
-                                        row(null, null, 30L),
-                                        row(4L, null, 40L),
-                                        row(5L, null, 50L))))))
-                .matchesExactly(List.of(row(4L, 0L, 5L)));
+                                        row(1L, 10L, 1L),
+                                        row(2L, null, 2L),
+                                        row(1L, 10L, 3L),
+                                        row(null, null, 4L),
+                                        row(2L, null, 5L),
+                                        row(1L, 20L, 6L),
+                                        row(null, null, 7L))))))
+                .matchesExactly(List.of(
+                        row(1L, 10L, 4L, 2L),
+                        row(2L, null, 7L, 2L),
+                        row(null, null, 11L, 2L),
+                        row(1L, 20L, 6L, 1L)));
     }
 
     @Test
-    void testGroupedAggregation()
+    void testHashAggregationManyGroups()
     {
+        List<Row> expected = new ArrayList<>();
+        for (long group = 0; group < 1500; group++) {
+            expected.add(row(group, 4 * group + 9000, 4L));
+        }
+
         assertThat(operator(
-                new GroupedAggregationOperator(
+                new HashAggregationOperator(
                         allocator,
-                        0,
+                        List.of(0),
+                        List.of(new Sum(1), new CountAll()),
+                        new ProjectOperator(
+                                allocator,
+                                new ProjectOperator.Execution(
+                                        List.of(new ProjectOperator.Invocation(modulo(1500), List.of(-1), I64Vector::new)),
+                                        List.of(0, -1)),
+                                new GeneratorOperator(allocator, 6000, 500, List.of(new SequenceGenerator(0)))))))
+                .matchesExactly(expected);
+    }
+
+    @Test
+    void testHashAggregationWithSpill()
+            throws IOException
+    {
+        List<Row> expected = new ArrayList<>();
+        for (long group = 0; group < 5000; group++) {
+            expected.add(row(group, 4 * group + 30_000, 4L));
+        }
+
+        Path directory = Files.createTempDirectory("nitro-aggregation");
+        HashAggregationOperator operator = new HashAggregationOperator(
+                allocator,
+                List.of(0),
+                List.of(new Sum(1), new CountAll()),
+                new ProjectOperator(
+                        allocator,
+                        new ProjectOperator.Execution(
+                                List.of(new ProjectOperator.Invocation(modulo(5000), List.of(-1), I64Vector::new)),
+                                List.of(0, -1)),
+                        new GeneratorOperator(allocator, 20_000, 500, List.of(new SequenceGenerator(0)))),
+                16 * 1024,
+                directory);
+
+        // the first batch has the groups that stayed in memory, and forces the whole input to be consumed
+        Mask first = operator.next();
+        assertThat(first.count()).isLessThan(5000);
+        try (Stream<Path> partitions = Files.list(directory)) {
+            assertThat(partitions.count()).isGreaterThan(1);
+        }
+
+        List<Row> rows = new ArrayList<>();
+        for (int position : first) {
+            rows.add(row(
+                    ((I64Vector) operator.column(0)).values()[position],
+                    ((I64Vector) operator.column(1)).values()[position],
+                    ((I64Vector) operator.column(2)).values()[position]));
+        }
+        rows.addAll(OperatorAssertions.OperatorAssert.toRows(operator));
+        assertThat(rows).containsExactlyInAnyOrderElementsOf(expected);
+
+        try (Stream<Path> partitions = Files.list(directory)) {
+            assertThat(partitions.count()).isZero();
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    void testHashAggregationSpillLimit()
+            throws IOException
+    {
+        // The keys hash to 0, 1, 2, ..., so they all land in the first partition at every level. With one
+        // row per batch, each level keeps a single group in memory and spills the rest.
+        Path directory = Files.createTempDirectory("nitro-aggregation");
+        HashAggregationOperator operator = new HashAggregationOperator(
+                allocator,
+                List.of(0),
+                List.of(new CountAll()),
+                new ProjectOperator(
+                        allocator,
+                        new ProjectOperator.Execution(
+                                List.of(new ProjectOperator.Invocation(unhash(), List.of(-1), I64Vector::new)),
+                                List.of(0)),
+                        new GeneratorOperator(allocator, 100, 1, List.of(new SequenceGenerator(0)))),
+                1,
+                directory);
+
+        assertThatThrownBy(() -> OperatorAssertions.OperatorAssert.toRows(operator))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Groups exceed the memory budget of 1 bytes after spilling 11 levels deep");
+        operator.close();
+
+        try (Stream<Path> partitions = Files.list(directory)) {
+            assertThat(partitions.count()).isZero();
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    void testPartialAggregationBypass()
+    {
+        // every key appears once in the first 3000 rows, so the partial aggregation gives up after the first two batches
+        Operator partial = new HashAggregationOperator(
+                allocator,
+                List.of(0),
+                List.of(new Sum(1), new CountAll()),
+                new ProjectOperator(
+                        allocator,
+                        new ProjectOperator.Execution(
+                                List.of(new ProjectOperator.Invocation(modulo(3000), List.of(-1), I64Vector::new)),
+                                List.of(0, -1)),
+                        new GeneratorOperator(allocator, 6000, 500, List.of(new SequenceGenerator(0)))),
+                Optional.of(new HashAggregationOperator.Bypass(1000, 0.5)));
+
+        List<Row> expected = new ArrayList<>();
+        for (long group = 0; group < 3000; group++) {
+            expected.add(row(group, 2 * group + 3000, 2L));
+        }
+
+        assertThat(operator(
+                new HashAggregationOperator(
+                        allocator,
+                        List.of(0),
+                        List.of(new Sum(1), new CountAll()),
+                        List.of(1, 2),
+                        partial)))
+                .matchesExactly(expected);
+    }
+
+    @Test
+    void testFinalAggregationCombinesPartialStates()
+    {
+        // the partial aggregation gives up after the first batch, so the final step sees both flushed and per-row states
+        Operator partial = new HashAggregationOperator(
+                allocator,
+                List.of(0),
+                List.of(new First(1), new Min(1), new Max(1), new CountColumn(1)),
+                new ConstantTableOperator(
+                        allocator,
+                        2,
                         List.of(
-                                new First(1), // key
-                                new Min(2),
-                                new Max(2),
-                                new Sum(2),
-                                new CountAll()),
+                                row(1L, null),
+                                row(2L, 20L),
+                                row(1L, 15L),
+                                row(2L, null),
+                                row(1L, 5L),
+                                row(3L, null),
+                                row(2L, 30L),
+                                row(1L, 25L))),
+                Optional.of(new HashAggregationOperator.Bypass(2, 0.5)));
+
+        assertThat(operator(
+                new HashAggregationOperator(
+                        allocator,
+                        List.of(0),
+                        List.of(new First(1), new Min(1), new Max(1), new CountColumn(1)),
+                        List.of(1, 2, 3, 4),
+                        partial)))
+                .matchesExactly(List.of(
+                        row(1L, 15L, 5L, 25L, 3L),
+                        row(2L, 20L, 20L, 30L, 2L),
+                        row(3L, null, null, null, 0L)));
+    }
+
+    @Test
+    void testPartialAggregationOutputsStates()
+    {
+        // the partial aggregation gives up after the first batch, so it outputs both flushed and per-row states.
+        // Merging its results rather than its states would add the offset more than once.
+        Operator partial = new HashAggregationOperator(
+                allocator,
+                List.of(0),
+                List.of(offsetSum(1)),
+                new GeneratorOperator(allocator, 3000, 100, List.of(new SequenceGenerator(0, 2000), new SequenceGenerator(0))),
+                Optional.of(new HashAggregationOperator.Bypass(100, 0.5)));
+
+        List<Row> expected = new ArrayList<>();
+        for (long key = 0; key < 2000; key++) {
+            expected.add(row(key, (key < 1000 ? 2 * key + 2000 : key) + 1000));
+        }
+
+        assertThat(operator(
+                new HashAggregationOperator(
+                        allocator,
+                        List.of(0),
+                        List.of(offsetSum(1)),
+                        List.of(1),
+                        partial)))
+                .matchesExactly(expected);
+    }
+
+    /**
+     * A sum with a result that differs from its state
+     */
+    private static Sum offsetSum(int column)
+    {
+        return new Sum(column)
+        {
+            @Override
+            public Vector result(int maxGroup, Vector state, Vector output)
+            {
+                I64Vector sums = (I64Vector) state;
+                I64Vector offset = (I64Vector) output;
+                for (int group = 0; group <= maxGroup; group++) {
+                    offset.nulls()[group] = sums.nulls()[group];
+                    offset.values()[group] = sums.values()[group] + 1000;
+                }
+                return offset;
+            }
+        };
+    }
+
+    @Test
+    void testPartialAggregationWithoutBypass()
+    {
+        assertThat(operator(
+                new HashAggregationOperator(
+                        allocator,
+                        List.of(0),
+                        List.of(new CountAll()),
+                        new ProjectOperator(
+                                allocator,
+                                new ProjectOperator.Execution(
+                                        List.of(new ProjectOperator.Invocation(modulo(3), List.of(-1), I64Vector::new)),
+                                        List.of(0)),
+                                new GeneratorOperator(allocator, 6000, 500, List.of(new SequenceGenerator(0)))),
+                        Optional.of(new HashAggregationOperator.Bypass(1000, 0.5)))))
+                .matchesExactly(List.of(
+                        row(0L, 2000L),
+                        row(1L, 2000L),
+                        row(2L, 2000L)));
+    }
+
+    @Test
+    void testGroupedTopN()
+    {
+        // customer = i % 5, which GroupOperator assigns group id i % 5 in order of appearance
+        List<Row> expected = new ArrayList<>();
+        for (long customer = 0; customer < 5; customer++) {
+            List<Long> amounts = new ArrayList<>();
+            for (long i = customer; i < 3000; i += 5) {
+                if (i % 17 != 0) {
+                    amounts.add((i * 7919) % 1000 - 500);
+                }
+            }
+            amounts.sort(Comparator.reverseOrder());
+            for (long amount : amounts.subList(0, 3)) {
+                expected.add(row(customer, customer, amount));
+            }
+        }
+
+        assertThat(operator(
+                new GroupedTopNOperator(
+                        allocator,
+                        3,
+                        0,
+                        List.of(SortKey.descending(2)),
                         new GroupOperator(
                                 allocator,
                                 0,
                                 new ProjectOperator(
                                         allocator,
                                         new ProjectOperator.Execution(
-                                                List.of(new ProjectOperator.Invocation(
-                                                        (output, inputs, mask) -> {
-                                                            I64Vector in = (I64Vector) inputs[0];
-                                                            I64Vector out = (I64Vector) output;
-                                                            for (int i = 0; i <= mask.maxPosition(); i++) {
-                                                                out.nulls()[i] = in.nulls()[i];
-                                                                out.values()[i] = in.values()[i] % 10 + 13;
-                                                            }
-                                                        },
-                                                        List.of(-1),
-                                                        I64Vector::new)),
-                                                List.of(0, -1)),
-                                        new GeneratorOperator(
-                                                allocator,
-                                                50,
-                                                10,
-                                                List.of(new SequenceGenerator(100))))))))
+                                                List.of(
+                                                        new ProjectOperator.Invocation(modulo(5), List.of(-1), I64Vector::new),
+                                                        new ProjectOperator.Invocation(scramble(), List.of(-1), I64Vector::new)),
+                                                List.of(0, 1)),
+                                        new GeneratorOperator(allocator, 3000, 256, List.of(new SequenceGenerator(0))))))))
+                .matchesExactly(expected);
+    }
+
+    @Test
+    void testGroupedTopNThresholdConstrainsSource()
+    {
+        AtomicLong evaluated = new AtomicLong();
+        Function multiply = multiply(10);
+        Function counting = (output, inputs, mask) -> {
+            evaluated.addAndGet(mask.count());
+            multiply.apply(output, inputs, mask);
+        };
+
+        assertThat(operator(
+                new GroupedTopNOperator(
+                        allocator,
+                        2,
+                        0,
+                        List.of(SortKey.ascending(2), SortKey.ascending(3)),
+                        new GroupOperator(
+                                allocator,
+                                0,
+                                new ProjectOperator(
+                                        allocator,
+                                        new ProjectOperator.Execution(
+                                                List.of(
+                                                        new ProjectOperator.Invocation(modulo(2), List.of(-1), I64Vector::new),
+                                                        new ProjectOperator.Invocation(counting, List.of(-1), I64Vector::new)),
+                                                List.of(0, -1, 1)),
+                                        new GeneratorOperator(allocator, 100_000, 1000, List.of(new SequenceGenerator(0))))))))
                 .matchesExactly(List.of(
-                        row(13L, 100L, 140L, 600L, 5L),
-                        row(14L, 101L, 141L, 605L, 5L),
-                        row(15L, 102L, 142L, 610L, 5L),
-                        row(16L, 103L, 143L, 615L, 5L),
-                        row(17L, 104L, 144L, 620L, 5L),
-                        row(18L, 105L, 145L, 625L, 5L),
-                        row(19L, 106L, 146L, 630L, 5L),
-                        row(20L, 107L, 147L, 635L, 5L),
-                        row(21L, 108L, 148L, 640L, 5L),
-                        row(22L, 109L, 149L, 645L, 5L)));
+                        row(0L, 0L, 0L, 0L),
+                        row(0L, 0L, 2L, 20L),
+                        row(1L, 1L, 1L, 10L),
+                        row(1L, 1L, 3L, 30L)));
+
+        // once the first batch fills the heap of both groups, no later row can beat them
+        assertThat(evaluated.get()).isEqualTo(1000L);
+    }
+
+    @Test
+    void testGroupedTopNNullGroup()
+    {
+        assertThat(operator(
+                new GroupedTopNOperator(
+                        allocator,
+                        2,
+                        0,
+                        List.of(SortKey.ascending(2).withNullsFirst()),
+                        new GroupOperator(
+                                allocator,
+                                0,
+                                new ConstantTableOperator(
+                                        allocator,
+                                        2,
+                                        List.of(
+                                                row(7L, 30L),
+                                                row(null, 5L),
+                                                row(7L, 10L),
+                                                row(8L, 1L),
+                                                row(null, 4L),
+                                                row(7L, null),
+                                                row(null, 6L)))))))
+                .matchesExactly(List.of(
+                        row(null, null, 4L),
+                        row(null, null, 5L),
+                        row(0L, 7L, null),
+                        row(0L, 7L, 10L),
+                        row(1L, 8L, 1L)));
+    }
+
+    @Test
+    void testSort()
+    {
+        assertThat(operator(
+                new SortOperator(
+                        allocator,
+                        List.of(SortKey.ascending(0), SortKey.descending(1).withNullsFirst()),
+                        new ConstantTableOperator(
+                                allocator,
+                                2,
+                                List.of(
+                                        row(3L, 1L),
+                                        row(null, 5L),
+                                        row(-2L, 7L),
+                                        row(3L, null),
+                                        row(3L, 9L),
+                                        row(-2L, -7L))))))
+                .matchesExactly(List.of(
+                        row(-2L, 7L),
+                        row(-2L, -7L),
+                        row(3L, null),
+                        row(3L, 9L),
+                        row(3L, 1L),
+                        row(null, 5L)));
+    }
+
+    @Test
+    void testSortLarge()
+    {
+        List<Row> rows = new ArrayList<>();
+        for (long i = 0; i < 5000; i++) {
+            rows.add(row(i % 13 == 0 ? null : (i * 37) % 11 - 5, i % 17 == 0 ? null : (i * 7919) % 1000 - 500, i));
+        }
+
+        List<Row> expected = rows.stream()
+                .sorted(Comparator.<Row, Long>comparing(row -> row.values()[0], Comparator.nullsFirst(Comparator.reverseOrder()))
+                        .thenComparing(row -> row.values()[1], Comparator.nullsLast(Comparator.naturalOrder()))
+                        .thenComparing(row -> row.values()[2]))
+                .toList();
+
+        assertThat(operator(
+                new SortOperator(
+                        allocator,
+                        List.of(SortKey.descending(0).withNullsFirst(), SortKey.ascending(1), SortKey.ascending(2)),
+                        new ConstantTableOperator(allocator, 3, rows))))
+                .matchesExactly(expected);
     }
 
-    @Test
-    void testConstantTable()
-    {
-        assertThat(operator(new ConstantTableOperator(
+    @Test
+    void testSortWithSpill()
+            throws IOException
+    {
+        List<Row> expected = new ArrayList<>();
+        for (long i = 0; i < 20_000; i++) {
+            expected.add(row(i % 17 == 0 ? null : (i * 7919) % 1000 - 500, i));
+        }
+        expected.sort(Comparator.<Row, Long>comparing(row -> row.values()[0], Comparator.nullsLast(Comparator.reverseOrder()))
+                .thenComparing(row -> row.values()[1]));
+
+        Path directory = Files.createTempDirectory("nitro-sort");
+        SortOperator operator = new SortOperator(
+                allocator,
+                List.of(SortKey.descending(0), SortKey.ascending(1)),
+                new ProjectOperator(
+                        allocator,
+                        new ProjectOperator.Execution(
+                                List.of(new ProjectOperator.Invocation(scramble(), List.of(-1), I64Vector::new)),
+                                List.of(0, -1)),
+                        new GeneratorOperator(allocator, 20_000, 500, List.of(new SequenceGenerator(0)))),
+                64 * 1024,
+                directory);
+
+        // the first batch forces the whole input to be consumed
+        Mask first = operator.next();
+        try (Stream<Path> runs = Files.list(directory)) {
+            assertThat(runs.count()).isGreaterThan(1);
+        }
+
+        assertThat(OperatorAssertions.OperatorAssert.toRows(operator))
+                .containsExactlyElementsOf(expected.subList(first.count(), expected.size()));
+        try (Stream<Path> runs = Files.list(directory)) {
+            assertThat(runs.count()).isZero();
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    void testTopNMultipleKeys()
+    {
+        List<Row> expected = new ArrayList<>();
+        for (long i = 0; i < 5000; i++) {
+            expected.add(row(i % 17 == 0 ? null : (i * 7919) % 1000 - 500, i));
+        }
+        expected.sort(Comparator.<Row, Long>comparing(row -> row.values()[0], Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(row -> row.values()[1], Comparator.reverseOrder()));
+
+        assertThat(operator(
+                new TopNOperator(
+                        allocator,
+                        400,
+                        List.of(SortKey.ascending(0).withNullsFirst(), SortKey.descending(1)),
+                        new ProjectOperator(
+                                allocator,
+                                new ProjectOperator.Execution(
+                                        List.of(new ProjectOperator.Invocation(scramble(), List.of(-1), I64Vector::new)),
+                                        List.of(0, -1)),
+                                new GeneratorOperator(allocator, 5000, 300, List.of(new SequenceGenerator(0)))))))
+                .matchesExactly(expected.subList(0, 400));
+    }
+
+    @Test
+    void testTopNThresholdConstrainsSource()
+    {
+        AtomicLong evaluated = new AtomicLong();
+        Function multiply = multiply(10);
+        Function counting = (output, inputs, mask) -> {
+            evaluated.addAndGet(mask.count());
+            multiply.apply(output, inputs, mask);
+        };
+
+        assertThat(operator(
+                new TopNOperator(
+                        allocator,
+                        3,
+                        List.of(SortKey.ascending(0)),
+                        new ProjectOperator(
+                                allocator,
+                                new ProjectOperator.Execution(
+                                        List.of(new ProjectOperator.Invocation(counting, List.of(-1), I64Vector::new)),
+                                        List.of(-1, 0)),
+                                new GeneratorOperator(allocator, 100_000, 1000, List.of(new SequenceGenerator(0)))))))
+                .matchesExactly(List.of(row(0L, 0L), row(1L, 10L), row(2L, 20L)));
+
+        // once the first batch fills the heap, no later row can beat it
+        assertThat(evaluated.get()).isEqualTo(1000L);
+    }
+
+    @Test
+    void testTopNThresholdWithProjectedSecondKey()
+    {
+        // the first batch is filtered down to a few rows, so the projected key is first evaluated
+        // into a small buffer. Later batches are full, but the threshold narrows them to a prefix
+        assertThat(operator(
+                new TopNOperator(
+                        allocator,
+                        3,
+                        List.of(SortKey.ascending(0), SortKey.ascending(1)),
+                        new ProjectOperator(
+                                allocator,
+                                new ProjectOperator.Execution(
+                                        List.of(
+                                                new ProjectOperator.Invocation(modulo(1000), List.of(-1), I64Vector::new),
+                                                new ProjectOperator.Invocation(multiply(-1), List.of(-1), I64Vector::new)),
+                                        List.of(0, 1)),
+                                new FilterOperator(
+                                        0,
+                                        new I64Predicate(value -> value >= 1000 || value < 5),
+                                        new GeneratorOperator(allocator, 10_000, 1000, List.of(new SequenceGenerator(0))))))))
+                .matchesExactly(List.of(
+                        row(0L, -9000L),
+                        row(0L, -8000L),
+                        row(0L, -7000L)));
+    }
+
+    @Test
+    void testTopNReplacingEveryRow()
+    {
+        // every row sorts before the ones seen so far, so retained rows keep getting evicted
+        assertThat(operator(
+                new TopNOperator(
+                        allocator,
+                        3,
+                        List.of(SortKey.ascending(0)),
+                        new ProjectOperator(
+                                allocator,
+                                new ProjectOperator.Execution(
+                                        List.of(new ProjectOperator.Invocation(multiply(-1), List.of(-1), I64Vector::new)),
+                                        List.of(0, -1)),
+                                new GeneratorOperator(allocator, 20_000, 10, List.of(new SequenceGenerator(0)))))))
+                .matchesExactly(List.of(
+                        row(-19_999L, 19_999L),
+                        row(-19_998L, 19_998L),
+                        row(-19_997L, 19_997L)));
+    }
+
+    @Test
+    void testTopNNullsLast()
+    {
+        assertThat(operator(
+                new TopNOperator(
+                        allocator,
+                        3,
+                        0,
+                        narrow(new ConstantTableOperator(
+                                allocator,
+                                1,
+                                List.of(row(5L), row((Long) null), row(-3L), row(8L)))))))
+                .matchesExactly(List.of(row(8L), row(5L), row(-3L)));
+
+        assertThat(operator(
+                new TopNOperator(
+                        allocator,
+                        3,
+                        List.of(SortKey.ascending(0)),
+                        narrow(new ConstantTableOperator(
+                                allocator,
+                                1,
+                                List.of(row(5L), row((Long) null), row(8L)))))))
+                .matchesExactly(List.of(row(5L), row(8L), row((Long) null)));
+    }
+
+    @Test
+    void testAggregation()
+    {
+        assertThat(operator(
+                new AggregationOperator(
+                        allocator,
+                        List.of(
+                                new First(0),
+                                new Min(0),
+                                new Max(0),
+                                new Sum(0),
+                                new CountAll()),
+                        new GeneratorOperator(
+                                allocator,
+                                50,
+                                10,
+                                List.of(new SequenceGenerator(100))))))
+                .matchesExactly(List.of(row(100L, 100L, 149L, 6225L, 50L)));
+
+        assertThat(operator(
+                new AggregationOperator(
+                        allocator,
+                        List.of(
+                                new First(0),
+                                new Min(0),
+                                new Max(0),
+                                new Sum(0),
+                                new CountAll()),
+                        new FilterOperator(
+                                0,
+                                new I64Predicate(value -> value % 2 == 0),
+                                new GeneratorOperator(
+                                        allocator,
+                                        50,
+                                        10,
+                                        List.of(new SequenceGenerator(100)))))))
+                .matchesExactly(List.of(row(100L, 100L, 148L, 3100L, 25L)));
+    }
+
+    @Test
+    void testCountColumn()
+    {
+        assertThat(operator(
+                new AggregationOperator(
+                        allocator,
+                        List.of(
+                                new CountColumn(0),
+                                new CountColumn(1),
+                                new CountColumn(2)),
+                        new ConstantTableOperator(
+                                allocator,
+                                3,
+                                List.of(
+                                        row(1L, null, 10L),
+                                        row(2L, null, 20L),
+                                        row(null, null, 30L),
+                                        row(4L, null, 40L),
+                                        row(5L, null, 50L))))))
+                .matchesExactly(List.of(row(4L, 0L, 5L)));
+    }
+
+    @Test
+    void testGroupedAggregation()
+    {
+        assertThat(operator(
+                new GroupedAggregationOperator(
+                        allocator,
+                        0,
+                        List.of(
+                                new First(1), // key
+                                new Min(2),
+                                new Max(2),
+                                new Sum(2),
+                                new CountAll()),
+                        new GroupOperator(
+                                allocator,
+                                0,
+                                new ProjectOperator(
+                                        allocator,
+                                        new ProjectOperator.Execution(
+                                                List.of(new ProjectOperator.Invocation(
+                                                        (output, inputs, mask) -> {
+                                                            I64Vector in = (I64Vector) inputs[0];
+                                                            I64Vector out = (I64Vector) output;
+                                                            for (int i = 0; i <= mask.maxPosition(); i++) {
+                                                                out.nulls()[i] = in.nulls()[i];
+                                                                out.values()[i] = in.values()[i] % 10 + 13;
+                                                            }
+                                                        },
+                                                        List.of(-1),
+                                                        I64Vector::new)),
+                                                List.of(0, -1)),
+                                        new GeneratorOperator(
+                                                allocator,
+                                                50,
+                                                10,
+                                                List.of(new SequenceGenerator(100))))))))
+                .matchesExactly(List.of(
+                        row(13L, 100L, 140L, 600L, 5L),
+                        row(14L, 101L, 141L, 605L, 5L),
+                        row(15L, 102L, 142L, 610L, 5L),
+                        row(16L, 103L, 143L, 615L, 5L),
+                        row(17L, 104L, 144L, 620L, 5L),
+                        row(18L, 105L, 145L, 625L, 5L),
+                        row(19L, 106L, 146L, 630L, 5L),
+                        row(20L, 107L, 147L, 635L, 5L),
+                        row(21L, 108L, 148L, 640L, 5L),
+                        row(22L, 109L, 149L, 645L, 5L)));
+    }
+
+    @Test
+    void testConstantTable()
+    {
+        assertThat(operator(new ConstantTableOperator(
+                allocator,
+                3,
+                List.of(
+                        row(1L, 10L, 100L),
+                        row(2L, 20L, 200L),
+                        row(null, 30L, 300L),
+                        row(4L, null, 400L),
+                        row(5L, 50L, null)))))
+                .matchesExactly(List.of(
+                        row(1L, 10L, 100L),
+                        row(2L, 20L, 200L),
+                        row(null, 30L, 300L),
+                        row(4L, null, 400L),
+                        row(5L, 50L, null)));
+    }
+
+    @Test
+    void testNestedLoop()
+    {
+        assertThat(operator(
+                new NestedLoopJoinOperator(
+                        allocator,
+                        new ConstantTableOperator(
+                                allocator,
+                                1,
+                                List.of(
+                                        row(1L),
+                                        row(2L),
+                                        row(3L))),
+                        new ConstantTableOperator(
+                                allocator,
+                                1,
+                                List.of(
+                                        row(10L),
+                                        row(20L),
+                                        row(30L))))))
+                .matches(List.of(
+                        row(1L, 10L),
+                        row(1L, 20L),
+                        row(1L, 30L),
+                        row(2L, 10L),
+                        row(2L, 20L),
+                        row(2L, 30L),
+                        row(3L, 10L),
+                        row(3L, 20L),
+                        row(3L, 30L)));
+    }
+
+    @Test
+    void testNestedLoop1()
+    {
+        assertThat(operator(
+                new NestedLoopJoinOperator(
+                        allocator,
+                        new ConstantTableOperator(
+                                allocator,
+                                1,
+                                List.of(row(1L))),
+                        new GeneratorOperator(
+                                allocator,
+                                10,
+                                5,
+                                List.of(new SequenceGenerator(0))))))
+                .matches(List.of(
+                        row(1L, 0L),
+                        row(1L, 1L),
+                        row(1L, 2L),
+                        row(1L, 3L),
+                        row(1L, 4L),
+                        row(1L, 5L),
+                        row(1L, 6L),
+                        row(1L, 7L),
+                        row(1L, 8L),
+                        row(1L, 9L)));
+    }
+
+    @Test
+    void testNestedLoop2()
+    {
+        assertThat(operator(
+                new NestedLoopJoinOperator(
+                        allocator,
+                        new GeneratorOperator(allocator, 6, 2, List.of(new SequenceGenerator(0))),
+                        new GeneratorOperator(allocator, 3, 1, List.of(new SequenceGenerator(10))))))
+                .matches(List.of(
+                        row(0L, 10L),
+                        row(0L, 11L),
+                        row(0L, 12L),
+                        row(1L, 10L),
+                        row(1L, 11L),
+                        row(1L, 12L),
+                        row(2L, 10L),
+                        row(2L, 11L),
+                        row(2L, 12L),
+                        row(3L, 10L),
+                        row(3L, 11L),
+                        row(3L, 12L),
+                        row(4L, 10L),
+                        row(4L, 11L),
+                        row(4L, 12L),
+                        row(5L, 10L),
+                        row(5L, 11L),
+                        row(5L, 12L)));
+    }
+
+    @Test
+    void testNestedLoop3()
+    {
+        assertThat(operator(
+                new NestedLoopJoinOperator(
+                        allocator,
+                        new GeneratorOperator(allocator, 3, 1, List.of(new SequenceGenerator(0))),
+                        new GeneratorOperator(allocator, 6, 2, List.of(new SequenceGenerator(10))))))
+                .matches(List.of(
+                        row(0L, 10L),
+                        row(0L, 11L),
+                        row(0L, 12L),
+                        row(0L, 13L),
+                        row(0L, 14L),
+                        row(0L, 15L),
+                        row(1L, 10L),
+                        row(1L, 11L),
+                        row(1L, 12L),
+                        row(1L, 13L),
+                        row(1L, 14L),
+                        row(1L, 15L),
+                        row(2L, 10L),
+                        row(2L, 11L),
+                        row(2L, 12L),
+                        row(2L, 13L),
+                        row(2L, 14L),
+                        row(2L, 15L)));
+    }
+
+    @Test
+    void testNestedLoopNarrowColumns()
+    {
+        // the small side is replicated for each row of the large side
+        assertThat(operator(
+                new AggregationOperator(
+                        allocator,
+                        List.of(new Sum(0), new CountColumn(0), new Sum(1), new CountColumn(1), new CountAll()),
+                        new NestedLoopJoinOperator(
+                                allocator,
+                                narrow(new ConstantTableOperator(allocator, 1, List.of(row(1L), row(2L), row((Long) null)))),
+                                narrow(new GeneratorOperator(allocator, 2000, 100, List.of(new SequenceGenerator(0))))))))
+                .matchesExactly(List.of(row(6000L, 4000L, 5_997_000L, 6000L, 6000L)));
+
+        // each row of the small side is replicated across a batch of the large side, which has inactive positions
+        assertThat(operator(
+                new AggregationOperator(
+                        allocator,
+                        List.of(new Sum(0), new CountColumn(0), new Sum(1), new CountColumn(1), new CountAll()),
+                        new NestedLoopJoinOperator(
+                                allocator,
+                                narrow(new FilterOperator(
+                                        0,
+                                        new I64Predicate(value -> value % 2 == 0),
+                                        new GeneratorOperator(allocator, 2000, 100, List.of(new SequenceGenerator(0))))),
+                                narrow(new ConstantTableOperator(allocator, 1, List.of(row(1L), row(2L), row((Long) null))))))))
+                .matchesExactly(List.of(row(2_997_000L, 3000L, 3000L, 2000L, 3000L)));
+    }
+
+    private ProjectOperator narrow(Operator source)
+    {
+        FunctionRegistry.ResolvedFunction narrow = new FunctionRegistry().resolveCast(I64, I32, true);
+        return new ProjectOperator(
+                allocator,
+                new ProjectOperator.Execution(
+                        List.of(new ProjectOperator.Invocation(narrow.function(), List.of(-1), narrow.allocator())),
+                        List.of(0)),
+                source);
+    }
+
+    @Test
+    void testBlockNestedLoopJoin()
+    {
+        assertThat(operator(
+                new BlockNestedLoopJoinOperator(
+                        allocator,
+                        new ConstantTableOperator(
+                                allocator,
+                                2,
+                                List.of(
+                                        row(1L, 100L),
+                                        row(2L, 200L),
+                                        row(null, 300L),
+                                        row(3L, 400L))),
+                        new ConstantTableOperator(
+                                allocator,
+                                1,
+                                List.of(
+                                        row(2L),
+                                        row(0L),
+                                        row((Long) null),
+                                        row(3L))),
+                        new I64JoinPredicate(0, 0, (outer, inner) -> outer < inner))))
+                .matches(List.of(
+                        row(1L, 100L, 2L),
+                        row(1L, 100L, 3L),
+                        row(2L, 200L, 3L)));
+    }
+
+    @Test
+    void testBlockNestedLoopJoinAcrossTiles()
+    {
+        // pairs where the inner value is within 2 of the outer one
+        assertThat(operator(
+                new AggregationOperator(
+                        allocator,
+                        List.of(new Sum(0), new Sum(1), new CountAll()),
+                        new BlockNestedLoopJoinOperator(
+                                allocator,
+                                new FilterOperator(
+                                        0,
+                                        new I64Predicate(value -> value % 3 != 0),
+                                        new GeneratorOperator(allocator, 3000, 700, List.of(new SequenceGenerator(0)))),
+                                new GeneratorOperator(allocator, 5000, 300, List.of(new SequenceGenerator(0))),
+                                new I64JoinPredicate(0, 0, (outer, inner) -> Math.abs(outer - inner) <= 2)))))
+                .matchesExactly(List.of(row(14_999_999L, 15_000_001L, 9999L)));
+    }
+
+    @Test
+    void testNestedLoopOfNestedLoop()
+    {
+        // the outer columns of the second join are run-length encoded already, and get replicated again
+        assertThat(operator(
+                new AggregationOperator(
+                        allocator,
+                        List.of(new Sum(0), new CountColumn(0), new Sum(1), new Sum(2), new CountAll()),
+                        nestedLoopOfNestedLoop())))
+                .matchesExactly(List.of(row(1400L, 200L, 300L, 9900L, 200L)));
+
+        // replicated keys and filter values
+        assertThat(operator(
+                new HashAggregationOperator(
+                        allocator,
+                        List.of(1),
+                        List.of(new Sum(2), new CountAll()),
+                        new FilterOperator(
+                                0,
+                                new I64Predicate(value -> value == 7),
+                                nestedLoopOfNestedLoop()))))
+                .matches(List.of(
+                        row(1L, 4950L, 100L),
+                        row(2L, 4950L, 100L)));
+    }
+
+    private NestedLoopJoinOperator nestedLoopOfNestedLoop()
+    {
+        return new NestedLoopJoinOperator(
+                allocator,
+                new NestedLoopJoinOperator(
+                        allocator,
+                        new ConstantTableOperator(allocator, 1, List.of(row(7L))),
+                        new ConstantTableOperator(allocator, 1, List.of(row(1L), row(2L)))),
+                new GeneratorOperator(allocator, 100, 100, List.of(new SequenceGenerator(0))));
+    }
+
+    @Test
+    void testNestedLoopEmptyBuild()
+    {
+        assertThat(operator(
+                new NestedLoopJoinOperator(
+                        allocator,
+                        new GeneratorOperator(allocator, 10, 2, List.of(new SequenceGenerator(0))),
+                        new ConstantTableOperator(allocator, 1, List.of()))))
+                .matches(List.of());
+    }
+
+    @Test
+    void testNestedLoopEmptyProbe()
+    {
+        assertThat(operator(
+                new NestedLoopJoinOperator(
+                        allocator,
+                        new ConstantTableOperator(allocator, 1, List.of()),
+                        new GeneratorOperator(allocator, 10, 2, List.of(new SequenceGenerator(0))))))
+                .matches(List.of());
+    }
+
+    @Test
+    void testHashJoin()
+    {
+        assertThat(operator(
+                new HashJoinOperator(
+                        allocator,
+                        new ConstantTableOperator(
+                                allocator,
+                                3,
+                                List.of(
+                                        row(1L, 10L, 100L),
+                                        row(2L, 20L, 200L),
+                                        row(2L, 20L, 201L),
+                                        row(3L, 30L, 300L),
+                                        row(null, 40L, 400L),
+                                        row(5L, null, 500L))),
+                        List.of(0, 1),
+                        new ConstantTableOperator(
+                                allocator,
+                                3,
+                                List.of(
+                                        row(-1L, 2L, 20L),
+                                        row(-2L, 1L, 10L),
+                                        row(-3L, 2L, 20L),
+                                        row(-4L, 3L, 31L),
+                                        row(-5L, null, 40L),
+                                        row(-6L, 5L, null))),
+                        List.of(1, 2))))
+                .matches(List.of(
+                        row(1L, 10L, 100L, -2L, 1L, 10L),
+                        row(2L, 20L, 200L, -1L, 2L, 20L),
+                        row(2L, 20L, 200L, -3L, 2L, 20L),
+                        row(2L, 20L, 201L, -1L, 2L, 20L),
+                        row(2L, 20L, 201L, -3L, 2L, 20L)));
+    }
+
+    @Test
+    void testHashJoinAcrossBatches()
+    {
+        // each probe row in [0, 10) matches 300 build rows, so matches span multiple output batches
+        assertThat(operator(
+                new AggregationOperator(
+                        allocator,
+                        List.of(new CountAll(), new Sum(0), new Sum(1)),
+                        new HashJoinOperator(
+                                allocator,
+                                new GeneratorOperator(allocator, 3000, 100, List.of(new SequenceGenerator(0))),
+                                List.of(0),
+                                new GeneratorOperator(allocator, 3000, 100, List.of(new SequenceGenerator(0, 10))),
+                                List.of(0)))))
+                .matchesExactly(List.of(row(3000L, 13500L, 13500L)));
+    }
+
+    @Test
+    void testHashJoinRadixPartitioned()
+    {
+        // each probe row in [0, 50000) matches 2 build rows
+        assertThat(operator(
+                new AggregationOperator(
+                        allocator,
+                        List.of(new CountAll(), new Sum(0), new Sum(1)),
+                        new HashJoinOperator(
+                                allocator,
+                                new GeneratorOperator(allocator, 200_000, 1000, List.of(new SequenceGenerator(0))),
+                                List.of(0),
+                                new GeneratorOperator(allocator, 100_000, 1000, List.of(new SequenceGenerator(0, 50_000))),
+                                List.of(0),
+                                JoinType.INNER,
+                                HashJoinOperator.Options.DEFAULT.withPartitioning(HashJoinOperator.Partitioning.RADIX)))))
+                .matchesExactly(List.of(row(100_000L, 2_499_950_000L, 2_499_950_000L)));
+    }
+
+    @Test
+    void testJoinHashTableTwoPassPartitioning()
+    {
+        // reaching more partition bits than fit in one pass through the operator takes millions of build rows
+        int partitionBits = 12;
+        assertThat(partitionBits).isGreaterThan(8);
+
+        // every key in [0, 10000) appears in 2 build rows
+        I64Vector buildKeys = new I64Vector(20_000);
+        for (int i = 0; i < buildKeys.length(); i++) {
+            buildKeys.values()[i] = i % 10_000;
+        }
+        ColumnarBuffer build = new ColumnarBuffer(allocator, new Allocator.Context("join-hash-table"), List.of(VectorType.I64));
+        build.append(new Vector[] {buildKeys}, Mask.all(buildKeys.length()));
+        JoinHashTable table = new JoinHashTable(build, new int[] {0}, partitionBits);
+
+        I64Vector probeKeys = new I64Vector(20_000);
+        for (int i = 0; i < probeKeys.length(); i++) {
+            probeKeys.values()[i] = i;
+        }
+        int[] order = table.partitionOrder(new Vector[] {probeKeys}, probeKeys.length());
+        assertThat(order).containsExactlyInAnyOrder(IntStream.range(0, probeKeys.length()).toArray());
+
+        // probe in partition order, like the operator does
+        I64Vector orderedKeys = new I64Vector(order.length);
+        Vectors.gather(probeKeys, order, order.length, orderedKeys);
+        int[] matches = new int[order.length];
+        table.lookup(new Vector[] {orderedKeys}, Mask.all(order.length), matches);
+
+        long[] tableKeys = ((I64Vector) table.rows().column(0)).values();
+        for (int position = 0; position < order.length; position++) {
+            long key = orderedKeys.values()[position];
+            int count = 0;
+            for (int row = matches[position]; row != -1; row = table.nextRow(row)) {
+                assertThat(tableKeys[row]).isEqualTo(key);
+                count++;
+            }
+            assertThat(count).isEqualTo(key < 10_000 ? 2 : 0);
+        }
+    }
+
+    @Test
+    void testHashJoinRuntimeFilter()
+    {
+        CountingGenerator payload = new CountingGenerator(new SequenceGenerator(1000));
+
+        assertThat(operator(
+                new HashJoinOperator(
+                        allocator,
+                        new GeneratorOperator(
+                                allocator,
+                                100,
+                                10,
+                                List.of(new SequenceGenerator(0), payload)),
+                        List.of(0),
+                        new ConstantTableOperator(
+                                allocator,
+                                1,
+                                List.of(row(5L), row(7L), row(42L), row(500L))),
+                        List.of(0))))
+                .matches(List.of(
+                        row(5L, 1005L, 5L),
+                        row(7L, 1007L, 7L),
+                        row(42L, 1042L, 42L)));
+
+        // the payload column is only produced for the rows that pass the runtime filter
+        assertThat(payload.produced()).isEqualTo(3);
+    }
+
+    @Test
+    void testHashJoinEmptyBuild()
+    {
+        assertThat(operator(
+                new HashJoinOperator(
+                        allocator,
+                        new GeneratorOperator(allocator, 10, 2, List.of(new SequenceGenerator(0))),
+                        List.of(0),
+                        new ConstantTableOperator(allocator, 1, List.of()),
+                        List.of(0))))
+                .matches(List.of());
+    }
+
+    @Test
+    void testLeftJoin()
+    {
+        assertThat(operator(outerJoin(JoinType.LEFT)))
+                .matches(List.of(
+                        row(1L, 10L, null, null),
+                        row(2L, 20L, 2L, 200L),
+                        row(2L, 20L, 2L, 201L),
+                        row(null, 30L, null, null),
+                        row(4L, 40L, null, null)));
+
+        assertThat(operator(
+                new HashJoinOperator(
+                        allocator,
+                        new ConstantTableOperator(allocator, 2, List.of(row(1L, 10L), row(2L, 20L))),
+                        List.of(0),
+                        new ConstantTableOperator(allocator, 2, List.of()),
+                        List.of(0),
+                        JoinType.LEFT)))
+                .matches(List.of(
+                        row(1L, 10L, null, null),
+                        row(2L, 20L, null, null)));
+    }
+
+    @Test
+    void testOuterJoinNullExtendedTypes()
+    {
+        // the probe side has rows but none match, so its types are only known from batches that produce no output
+        HashJoinOperator unmatched = new HashJoinOperator(
+                allocator,
+                narrow(new ConstantTableOperator(allocator, 1, List.of(row(5L), row(6L)))),
+                List.of(0),
+                narrow(new ConstantTableOperator(allocator, 1, List.of(row(1L), row(2L)))),
+                List.of(0),
+                JoinType.RIGHT);
+        assertThat(unmatched.next().count()).isEqualTo(2);
+        assertThat(unmatched.column(0)).isInstanceOf(I32Vector.class);
+        unmatched.close();
+
+        // an empty build side still produces a batch with typed columns
+        HashJoinOperator emptyBuild = new HashJoinOperator(
+                allocator,
+                narrow(new ConstantTableOperator(allocator, 1, List.of(row(1L), row(2L)))),
+                List.of(0),
+                narrow(new ConstantTableOperator(allocator, 1, List.of())),
+                List.of(0),
+                JoinType.LEFT);
+        assertThat(emptyBuild.next().count()).isEqualTo(2);
+        assertThat(emptyBuild.column(1)).isInstanceOf(I32Vector.class);
+        emptyBuild.close();
+
+        // with a probe side that produces no batches, the types have to be declared
+        HashJoinOperator declared = new HashJoinOperator(
+                allocator,
+                new GeneratorOperator(allocator, 0, List.of(new SequenceGenerator(0))),
+                List.of(0),
+                narrow(new ConstantTableOperator(allocator, 1, List.of(row(1L), row(2L)))),
+                List.of(0),
+                JoinType.FULL,
+                HashJoinOperator.Options.DEFAULT.withColumnTypes(List.of(I32), List.of(I32)));
+        assertThat(declared.next().count()).isEqualTo(2);
+        assertThat(declared.column(0)).isInstanceOf(I32Vector.class);
+        declared.close();
+
+        assertThatThrownBy(() -> OperatorAssertions.OperatorAssert.toRows(
+                new HashJoinOperator(
+                        allocator,
+                        new GeneratorOperator(allocator, 0, List.of(new SequenceGenerator(0))),
+                        List.of(0),
+                        narrow(new ConstantTableOperator(allocator, 1, List.of(row(1L)))),
+                        List.of(0),
+                        JoinType.RIGHT)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Type of probe column 0 is unknown");
+
+        assertThatThrownBy(() -> OperatorAssertions.OperatorAssert.toRows(
+                new HashJoinOperator(
+                        allocator,
+                        narrow(new ConstantTableOperator(allocator, 1, List.of(row(1L)))),
+                        List.of(0),
+                        new GeneratorOperator(allocator, 0, List.of(new SequenceGenerator(0))),
+                        List.of(0),
+                        JoinType.LEFT)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Type of build column 0 is unknown");
+    }
+
+    @Test
+    void testRightJoin()
+    {
+        assertThat(operator(outerJoin(JoinType.RIGHT)))
+                .matches(List.of(
+                        row(2L, 20L, 2L, 200L),
+                        row(2L, 20L, 2L, 201L),
+                        row(null, null, 3L, 300L),
+                        row(null, null, null, 400L)));
+    }
+
+    @Test
+    void testFullJoin()
+    {
+        assertThat(operator(outerJoin(JoinType.FULL)))
+                .matches(List.of(
+                        row(1L, 10L, null, null),
+                        row(2L, 20L, 2L, 200L),
+                        row(2L, 20L, 2L, 201L),
+                        row(null, 30L, null, null),
+                        row(4L, 40L, null, null),
+                        row(null, null, 3L, 300L),
+                        row(null, null, null, 400L)));
+
+        // 1500 matches, 1500 probe rows and 1500 build rows without a match
+        assertThat(operator(
+                new AggregationOperator(
+                        allocator,
+                        List.of(new CountAll(), new CountColumn(0), new CountColumn(1)),
+                        new HashJoinOperator(
+                                allocator,
+                                new GeneratorOperator(allocator, 3000, 100, List.of(new SequenceGenerator(0))),
+                                List.of(0),
+                                new GeneratorOperator(allocator, 3000, 100, List.of(new SequenceGenerator(1500))),
+                                List.of(0),
+                                JoinType.FULL,
+                                HashJoinOperator.Options.DEFAULT.withPartitioning(HashJoinOperator.Partitioning.RADIX)))))
+                .matchesExactly(List.of(row(4500L, 3000L, 3000L)));
+    }
+
+    private HashJoinOperator outerJoin(JoinType joinType)
+    {
+        return new HashJoinOperator(
+                allocator,
+                new ConstantTableOperator(
+                        allocator,
+                        2,
+                        List.of(
+                                row(1L, 10L),
+                                row(2L, 20L),
+                                row(null, 30L),
+                                row(4L, 40L))),
+                List.of(0),
+                new ConstantTableOperator(
+                        allocator,
+                        2,
+                        List.of(
+                                row(2L, 200L),
+                                row(2L, 201L),
+                                row(3L, 300L),
+                                row(null, 400L))),
+                List.of(0),
+                joinType);
+    }
+
+    @Test
+    void testMergeJoin()
+    {
+        assertThat(operator(
+                new MergeJoinOperator(
+                        allocator,
+                        new ConstantTableOperator(
+                                allocator,
+                                2,
+                                List.of(
+                                        row(null, 0L),
+                                        row(1L, 10L),
+                                        row(2L, 20L),
+                                        row(2L, 21L),
+                                        row(4L, 40L),
+                                        row(5L, 50L))),
+                        0,
+                        new ConstantTableOperator(
+                                allocator,
+                                2,
+                                List.of(
+                                        row(2L, 200L),
+                                        row(2L, 201L),
+                                        row(3L, 300L),
+                                        row(5L, 500L),
+                                        row(5L, 501L),
+                                        row(null, 0L))),
+                        0)))
+                .matches(List.of(
+                        row(2L, 20L, 2L, 200L),
+                        row(2L, 20L, 2L, 201L),
+                        row(2L, 21L, 2L, 200L),
+                        row(2L, 21L, 2L, 201L),
+                        row(5L, 50L, 5L, 500L),
+                        row(5L, 50L, 5L, 501L)));
+    }
+
+    @Test
+    void testJoinNaNKeys()
+    {
+        // NaN never matches, like null, whether the join is by hash or by merge
+        List<Row> expected = List.of(
+                row(10L, 100L),
+                row(20L, 200L));
+
+        assertThat(operator(payloads(
+                new HashJoinOperator(
+                        allocator,
+                        doubleKeys(List.of(row(null, 0L), row(1L, 10L), row(2L, 20L), row(-1L, 30L))),
+                        List.of(0),
+                        doubleKeys(List.of(row(null, 400L), row(1L, 100L), row(2L, 200L), row(-1L, 300L))),
+                        List.of(0)))))
+                .matches(expected);
+
+        assertThat(operator(payloads(
+                new MergeJoinOperator(
+                        allocator,
+                        doubleKeys(List.of(row(null, 0L), row(1L, 10L), row(2L, 20L), row(-1L, 30L))),
+                        0,
+                        doubleKeys(List.of(row(null, 400L), row(1L, 100L), row(2L, 200L), row(-1L, 300L))),
+                        0))))
+                .matches(expected);
+    }
+
+    /**
+     * Rows of (key, payload), with the key as a double that's NaN where it's negative
+     */
+    private ProjectOperator doubleKeys(List<Row> rows)
+    {
+        return new ProjectOperator(
+                allocator,
+                new ProjectOperator.Execution(
+                        List.of(new ProjectOperator.Invocation(nanIfNegative(), List.of(-1), F64Vector::new)),
+                        List.of(0, -2)),
+                new ConstantTableOperator(allocator, 2, rows));
+    }
+
+    /**
+     * The payloads of a join of two inputs of (key, payload)
+     */
+    private ProjectOperator payloads(Operator join)
+    {
+        return new ProjectOperator(
+                allocator,
+                new ProjectOperator.Execution(List.of(), List.of(-2, -4)),
+                join);
+    }
+
+    @Test
+    void testMergeJoinAcrossBatches()
+    {
+        // keys [0, 100) repeated 3 times on the left and [0, 50) repeated 4 times on the right, with runs spanning batches
+        assertThat(operator(
+                new AggregationOperator(
+                        allocator,
+                        List.of(new CountAll(), new Sum(0), new Sum(1)),
+                        new MergeJoinOperator(
+                                allocator,
+                                new GeneratorOperator(allocator, 300, 7, List.of(new RunGenerator(3))),
+                                0,
+                                new GeneratorOperator(allocator, 200, 5, List.of(new RunGenerator(4))),
+                                0))))
+                .matchesExactly(List.of(row(600L, 14700L, 14700L)));
+    }
+
+    @Test
+    void testRangeJoin()
+    {
+        // ts BETWEEN start AND end
+        assertThat(operator(rangeJoin(Optional.of(Bound.inclusive(0)), Optional.of(Bound.inclusive(1)))))
+                .matches(List.of(
+                        row(1L, 100L, 0L, 4L, 1000L),
+                        row(5L, 101L, 3L, 6L, 1001L),
+                        row(10L, 102L, 8L, 12L, 1002L)));
+
+        // ts > start
+        assertThat(operator(rangeJoin(Optional.of(Bound.exclusive(0)), Optional.empty())))
+                .matches(List.of(
+                        row(1L, 100L, 0L, 4L, 1000L),
+                        row(5L, 101L, 0L, 4L, 1000L),
+                        row(5L, 101L, 3L, 6L, 1001L),
+                        row(10L, 102L, 0L, 4L, 1000L),
+                        row(10L, 102L, 3L, 6L, 1001L),
+                        row(10L, 102L, 8L, 12L, 1002L)));
+
+        // ts < end
+        assertThat(operator(rangeJoin(Optional.empty(), Optional.of(Bound.exclusive(1)))))
+                .matches(List.of(
+                        row(1L, 100L, 0L, 4L, 1000L),
+                        row(1L, 100L, 3L, 6L, 1001L),
+                        row(1L, 100L, 8L, 12L, 1002L),
+                        row(1L, 100L, null, 5L, 1003L),
+                        row(1L, 100L, 20L, 30L, 1004L),
+                        row(5L, 101L, 3L, 6L, 1001L),
+                        row(5L, 101L, 8L, 12L, 1002L),
+                        row(5L, 101L, 20L, 30L, 1004L),
+                        row(10L, 102L, 8L, 12L, 1002L),
+                        row(10L, 102L, 20L, 30L, 1004L)));
+    }
+
+    @Test
+    void testRangeJoinAcrossBatches()
+    {
+        // windows [i, i + 10] for i in [0, 1000), so values >= 10 fall in 11 windows
+        assertThat(operator(
+                new AggregationOperator(
+                        allocator,
+                        List.of(new CountAll(), new Sum(0)),
+                        new RangeJoinOperator(
+                                allocator,
+                                new GeneratorOperator(allocator, 1000, 100, List.of(new SequenceGenerator(0))),
+                                0,
+                                new GeneratorOperator(allocator, 1000, 100, List.of(new SequenceGenerator(0), new SequenceGenerator(10))),
+                                Optional.of(Bound.inclusive(0)),
+                                Optional.of(Bound.inclusive(1))))))
+                .matchesExactly(List.of(row(10945L, 5494335L)));
+    }
+
+    @Test
+    void testRangeJoinWideInterval()
+    {
+        // a wide interval that sorts first is found without scanning past the narrow ones in between
+        List<Row> intervals = new ArrayList<>();
+        intervals.add(row(0L, 1_000_000L));
+        for (long i = 0; i < 1000; i++) {
+            intervals.add(row(i * 10, i * 10 + 5));
+        }
+
+        // every value is in the wide interval, and the ones with value % 10 <= 5 in a narrow one too
+        assertThat(operator(
+                new AggregationOperator(
+                        allocator,
+                        List.of(new CountAll(), new Sum(0)),
+                        new RangeJoinOperator(
+                                allocator,
+                                new GeneratorOperator(allocator, 10_000, 100, List.of(new SequenceGenerator(0))),
+                                0,
+                                new ConstantTableOperator(allocator, 2, intervals),
+                                Optional.of(Bound.inclusive(0)),
+                                Optional.of(Bound.inclusive(1))))))
+                .matchesExactly(List.of(row(16_000L, 79_980_000L)));
+    }
+
+    private RangeJoinOperator rangeJoin(Optional<Bound> lower, Optional<Bound> upper)
+    {
+        return new RangeJoinOperator(
+                allocator,
+                new ConstantTableOperator(
+                        allocator,
+                        2,
+                        List.of(
+                                row(1L, 100L),
+                                row(5L, 101L),
+                                row(10L, 102L),
+                                row(null, 103L))),
+                0,
+                new ConstantTableOperator(
+                        allocator,
+                        3,
+                        List.of(
+                                row(0L, 4L, 1000L),
+                                row(3L, 6L, 1001L),
+                                row(8L, 12L, 1002L),
+                                row(null, 5L, 1003L),
+                                row(20L, 30L, 1004L))),
+                lower,
+                upper);
+    }
+
+    @Test
+    void testAsOfJoin()
+    {
+        Operator events = new ConstantTableOperator(
+                allocator,
+                2,
+                List.of(
+                        row(1L, 1L),
+                        row(3L, 1L),
+                        row(3L, 2L),
+                        row(5L, 1L),
+                        row(7L, 2L),
+                        row(null, 1L),
+                        row(8L, 3L)));
+
+        Operator prices = new ConstantTableOperator(
                 allocator,
                 3,
                 List.of(
-                        row(1L, 10L, 100L),
-                        row(2L, 20L, 200L),
-                        row(null, 30L, 300L),
-                        row(4L, null, 400L),
-                        row(5L, 50L, null)))))
+                        row(0L, 1L, 10L),
+                        row(2L, 1L, 20L),
+                        row(2L, 2L, 200L),
+                        row(4L, 1L, 40L),
+                        row(6L, 2L, 600L),
+                        row(9L, 1L, 90L)));
+
+        assertThat(operator(new AsOfJoinOperator(allocator, events, 0, 1, prices, 0, 1)))
                 .matchesExactly(List.of(
-                        row(1L, 10L, 100L),
-                        row(2L, 20L, 200L),
-                        row(null, 30L, 300L),
-                        row(4L, null, 400L),
-                        row(5L, 50L, null)));
+                        row(1L, 1L, 0L, 1L, 10L),
+                        row(3L, 1L, 2L, 1L, 20L),
+                        row(3L, 2L, 2L, 2L, 200L),
+                        row(5L, 1L, 4L, 1L, 40L),
+                        row(7L, 2L, 6L, 2L, 600L),
+                        row(null, 1L, null, null, null),
+                        row(8L, 3L, null, null, null)));
     }
 
     @Test
-    void testNestedLoop()
+    void testAsOfJoinWithoutKey()
     {
         assertThat(operator(
-                new NestedLoopJoinOperator(
+                new AsOfJoinOperator(
                         allocator,
-                        new ConstantTableOperator(
-                                allocator,
-                                1,
-                                List.of(
-                                        row(1L),
-                                        row(2L),
-                                        row(3L))),
-                        new ConstantTableOperator(
-                                allocator,
-                                1,
-                                List.of(
-                                        row(10L),
-                                        row(20L),
-                                        row(30L))))))
-                .matches(List.of(
-                        row(1L, 10L),
-                        row(1L, 20L),
-                        row(1L, 30L),
-                        row(2L, 10L),
-                        row(2L, 20L),
-                        row(2L, 30L),
-                        row(3L, 10L),
-                        row(3L, 20L),
-                        row(3L, 30L)));
+                        new ConstantTableOperator(allocator, 1, List.of(row(-1L), row(1L), row(3L), row(7L))),
+                        0,
+                        new ConstantTableOperator(allocator, 2, List.of(row(0L, 10L), row(2L, 20L), row(2L, 21L), row(5L, 50L))),
+                        0)))
+                .matchesExactly(List.of(
+                        row(-1L, null, null),
+                        row(1L, 0L, 10L),
+                        row(3L, 2L, 21L),
+                        row(7L, 5L, 50L)));
     }
 
     @Test
-    void testNestedLoop1()
+    void testAsOfJoinAcrossBatches()
     {
+        // the latest right row for (t, t % 10) is always the one at time t, so value == t
         assertThat(operator(
-                new NestedLoopJoinOperator(
+                new AggregationOperator(
                         allocator,
-                        new ConstantTableOperator(
+                        List.of(new CountAll(), new CountColumn(4), new Sum(4)),
+                        new AsOfJoinOperator(
                                 allocator,
+                                new GeneratorOperator(allocator, 10_000, 100, List.of(new SequenceGenerator(0), new SequenceGenerator(0, 10))),
+                                0,
                                 1,
-                                List.of(row(1L))),
-                        new GeneratorOperator(
-                                allocator,
-                                10,
-                                5,
-                                List.of(new SequenceGenerator(0))))))
-                .matches(List.of(
-                        row(1L, 0L),
-                        row(1L, 1L),
-                        row(1L, 2L),
-                        row(1L, 3L),
-                        row(1L, 4L),
-                        row(1L, 5L),
-                        row(1L, 6L),
-                        row(1L, 7L),
-                        row(1L, 8L),
-                        row(1L, 9L)));
+                                new GeneratorOperator(allocator, 10_000, 64, List.of(new SequenceGenerator(0), new SequenceGenerator(0, 10), new SequenceGenerator(0))),
+                                0,
+                                1))))
+                .matchesExactly(List.of(row(10_000L, 10_000L, 49_995_000L)));
     }
 
     @Test
-    void testNestedLoop2()
+    void testAsOfJoinLeftBeforeRight()
     {
+        // the first left batches are output before any right row is seen, but already with the narrowed value type
+        AsOfJoinOperator join = asOfJoinWithNarrowValues();
+        assertThat(join.next().count()).isEqualTo(1000);
+        assertThat(join.column(2)).isInstanceOf(I32Vector.class);
+        join.close();
+
         assertThat(operator(
-                new NestedLoopJoinOperator(
+                new AggregationOperator(
                         allocator,
-                        new GeneratorOperator(allocator, 6, 2, List.of(new SequenceGenerator(0))),
-                        new GeneratorOperator(allocator, 3, 1, List.of(new SequenceGenerator(10))))))
+                        List.of(new CountAll(), new CountColumn(2), new Sum(2)),
+                        asOfJoinWithNarrowValues())))
+                .matchesExactly(List.of(row(5000L, 3000L, 10_498_500L)));
+    }
+
+    private AsOfJoinOperator asOfJoinWithNarrowValues()
+    {
+        FunctionRegistry.ResolvedFunction narrow = new FunctionRegistry().resolveCast(I64, I32, true);
+        return new AsOfJoinOperator(
+                allocator,
+                new GeneratorOperator(allocator, 5000, 1000, List.of(new SequenceGenerator(0))),
+                0,
+                new ProjectOperator(
+                        allocator,
+                        new ProjectOperator.Execution(
+                                List.of(new ProjectOperator.Invocation(narrow.function(), List.of(-2), narrow.allocator())),
+                                List.of(-1, 0)),
+                        new GeneratorOperator(allocator, 3000, 1000, List.of(new SequenceGenerator(2000), new SequenceGenerator(2000)))),
+                0);
+    }
+
+    @Test
+    void testSemiJoin()
+    {
+        assertThat(operator(semiJoin(SemiJoinOperator.Type.SEMI, List.of(row(2L), row(3L), row(3L), row((Long) null), row(7L)))))
                 .matches(List.of(
-                        row(0L, 10L),
-                        row(0L, 11L),
-                        row(0L, 12L),
-                        row(1L, 10L),
-                        row(1L, 11L),
-                        row(1L, 12L),
-                        row(2L, 10L),
-                        row(2L, 11L),
-                        row(2L, 12L),
-                        row(3L, 10L),
-                        row(3L, 11L),
-                        row(3L, 12L),
-                        row(4L, 10L),
-                        row(4L, 11L),
-                        row(4L, 12L),
-                        row(5L, 10L),
-                        row(5L, 11L),
-                        row(5L, 12L)));
+                        row(2L, 20L),
+                        row(3L, 30L)));
+
+        assertThat(operator(semiJoin(SemiJoinOperator.Type.SEMI, List.of())))
+                .matches(List.of());
     }
 
     @Test
-    void testNestedLoop3()
+    void testAntiJoin()
     {
-        assertThat(operator(
-                new NestedLoopJoinOperator(
-                        allocator,
-                        new GeneratorOperator(allocator, 3, 1, List.of(new SequenceGenerator(0))),
-                        new GeneratorOperator(allocator, 6, 2, List.of(new SequenceGenerator(10))))))
+        assertThat(operator(semiJoin(SemiJoinOperator.Type.ANTI, List.of(row(2L), row(3L), row(3L), row((Long) null), row(7L)))))
                 .matches(List.of(
-                        row(0L, 10L),
-                        row(0L, 11L),
-                        row(0L, 12L),
-                        row(0L, 13L),
-                        row(0L, 14L),
-                        row(0L, 15L),
                         row(1L, 10L),
-                        row(1L, 11L),
-                        row(1L, 12L),
-                        row(1L, 13L),
-                        row(1L, 14L),
-                        row(1L, 15L),
-                        row(2L, 10L),
-                        row(2L, 11L),
-                        row(2L, 12L),
-                        row(2L, 13L),
-                        row(2L, 14L),
-                        row(2L, 15L)));
+                        row(null, 40L)));
+
+        assertThat(operator(semiJoin(SemiJoinOperator.Type.ANTI, List.of())))
+                .matches(List.of(
+                        row(1L, 10L),
+                        row(2L, 20L),
+                        row(3L, 30L),
+                        row(null, 40L)));
     }
 
     @Test
-    void testNestedLoopEmptyBuild()
+    void testNullAwareAntiJoin()
     {
-        assertThat(operator(
-                new NestedLoopJoinOperator(
-                        allocator,
-                        new GeneratorOperator(allocator, 10, 2, List.of(new SequenceGenerator(0))),
-                        new ConstantTableOperator(allocator, 1, List.of()))))
+        assertThat(operator(semiJoin(SemiJoinOperator.Type.NULL_AWARE_ANTI, List.of(row(2L), row(3L), row(7L)))))
+                .matches(List.of(row(1L, 10L)));
+
+        // x NOT IN (..., null) is never true
+        assertThat(operator(semiJoin(SemiJoinOperator.Type.NULL_AWARE_ANTI, List.of(row(2L), row((Long) null)))))
                 .matches(List.of());
+
+        // x NOT IN (<empty>) is always true, even for a null x
+        assertThat(operator(semiJoin(SemiJoinOperator.Type.NULL_AWARE_ANTI, List.of())))
+                .matches(List.of(
+                        row(1L, 10L),
+                        row(2L, 20L),
+                        row(3L, 30L),
+                        row(null, 40L)));
     }
 
     @Test
-    void testNestedLoopEmptyProbe()
+    void testSemiJoinEmptyBuildNarrowKeys()
     {
-        assertThat(operator(
-                new NestedLoopJoinOperator(
-                        allocator,
-                        new ConstantTableOperator(allocator, 1, List.of()),
-                        new GeneratorOperator(allocator, 10, 2, List.of(new SequenceGenerator(0))))))
+        List<Row> probe = List.of(row(1L), row(2L), row((Long) null));
+
+        assertThat(operator(new SemiJoinOperator(
+                allocator,
+                narrow(new ConstantTableOperator(allocator, 2, probe)),
+                List.of(0),
+                new ConstantTableOperator(allocator, 1, List.of()),
+                List.of(0),
+                SemiJoinOperator.Type.SEMI)))
                 .matches(List.of());
+
+        for (SemiJoinOperator.Type type : List.of(SemiJoinOperator.Type.ANTI, SemiJoinOperator.Type.NULL_AWARE_ANTI)) {
+            assertThat(operator(new SemiJoinOperator(
+                    allocator,
+                    narrow(new ConstantTableOperator(allocator, 2, probe)),
+                    List.of(0),
+                    new ConstantTableOperator(allocator, 1, List.of()),
+                    List.of(0),
+                    type)))
+                    .matches(probe);
+        }
+    }
+
+    private SemiJoinOperator semiJoin(SemiJoinOperator.Type type, List<Row> build)
+    {
+        return new SemiJoinOperator(
+                allocator,
+                new ConstantTableOperator(
+                        allocator,
+                        2,
+                        List.of(
+                                row(1L, 10L),
+                                row(2L, 20L),
+                                row(3L, 30L),
+                                row(null, 40L))),
+                List.of(0),
+                new ConstantTableOperator(allocator, 1, build),
+                List.of(0),
+                type);
     }
 
     @Test
@@ -656,6 +2230,217 @@ public class TestOperators
                         row(9L, 162L, -81L)));
     }
 
+    @Test
+    void testProjectWithResolvedFunctions()
+    {
+        FunctionRegistry registry = new FunctionRegistry();
+        FunctionRegistry.ResolvedFunction add = registry.resolve("add", List.of(I64, I64));
+        FunctionRegistry.ResolvedFunction divide = registry.resolve("divide", List.of(I64, I64));
+        FunctionRegistry.ResolvedFunction lessThan = registry.resolve("less_than", List.of(I64, I64));
+        FunctionRegistry.ResolvedFunction negate = registry.resolve("negate", List.of(I64), false);
+
+        /*
+           %0 = %x + %y
+           %1 = %x / %y
+           %2 = %x < %y
+           %3 = -%z
+         */
+        assertThat(operator(
+                new ProjectOperator(
+                        allocator,
+                        new ProjectOperator.Execution(
+                                List.of(
+                                        new ProjectOperator.Invocation(add.function(), List.of(-1, -2), add.allocator()),
+                                        new ProjectOperator.Invocation(divide.function(), List.of(-1, -2), divide.allocator()),
+                                        new ProjectOperator.Invocation(lessThan.function(), List.of(-1, -2), lessThan.allocator()),
+                                        new ProjectOperator.Invocation(negate.function(), List.of(-3), negate.allocator())),
+                                List.of(0, 1, 2, 3)),
+                        new ConstantTableOperator(
+                                allocator,
+                                3,
+                                List.of(
+                                        row(10L, 2L, 1L),
+                                        row(null, 0L, 2L),
+                                        row(3L, null, 3L),
+                                        row(7L, 8L, 4L))))))
+                .matchesExactly(List.of(
+                        row(12L, 5L, 0L, -1L),
+                        row(null, null, null, -2L),
+                        row(null, null, null, -3L),
+                        row(15L, 0L, 1L, -4L)));
+
+        assertThatThrownBy(() -> registry.resolve("add", List.of(I64, F64)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Function not found: add(i64, f64)");
+    }
+
+    @Test
+    void testAggregationOverNarrowedColumn()
+    {
+        FunctionRegistry registry = new FunctionRegistry();
+        FunctionRegistry.ResolvedFunction narrow = registry.resolveCast(I64, I32, true);
+
+        assertThat(operator(
+                new AggregationOperator(
+                        allocator,
+                        List.of(
+                                new First(0),
+                                new Min(0),
+                                new Max(0),
+                                new Sum(0),
+                                new CountColumn(0)),
+                        new ProjectOperator(
+                                allocator,
+                                new ProjectOperator.Execution(
+                                        List.of(new ProjectOperator.Invocation(narrow.function(), List.of(-1), narrow.allocator())),
+                                        List.of(0)),
+                                new ConstantTableOperator(
+                                        allocator,
+                                        1,
+                                        List.of(
+                                                row(2_000_000_000L),
+                                                row((Long) null),
+                                                row(-5L),
+                                                row(2_000_000_000L)))))))
+                .matchesExactly(List.of(row(2_000_000_000L, -5L, 2_000_000_000L, 3_999_999_995L, 3L)));
+
+        assertThatThrownBy(() -> OperatorAssertions.OperatorAssert.toRows(
+                new ProjectOperator(
+                        allocator,
+                        new ProjectOperator.Execution(
+                                List.of(new ProjectOperator.Invocation(narrow.function(), List.of(-1), narrow.allocator())),
+                                List.of(0)),
+                        new ConstantTableOperator(
+                                allocator,
+                                1,
+                                List.of(row(1L), row(3_000_000_000L))))))
+                .isInstanceOf(ArithmeticException.class)
+                .hasMessage("Value 3000000000 is out of range for i32");
+    }
+
+    /**
+     * Produces 0, 1, 2, ..., repeating each value the given number of times.
+     */
+    private static class RunGenerator
+            implements I64Generator
+    {
+        private final int runLength;
+        private long index = -1;
+
+        public RunGenerator(int runLength)
+        {
+            this.runLength = runLength;
+        }
+
+        @Override
+        public void next()
+        {
+            index++;
+        }
+
+        @Override
+        public long value()
+        {
+            return index / runLength;
+        }
+
+        @Override
+        public boolean isNull()
+        {
+            return false;
+        }
+    }
+
+    private static class CountingGenerator
+            implements I64Generator
+    {
+        private final I64Generator delegate;
+        private long produced;
+
+        public CountingGenerator(I64Generator delegate)
+        {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void next()
+        {
+            produced++;
+            delegate.next();
+        }
+
+        @Override
+        public long value()
+        {
+            return delegate.value();
+        }
+
+        @Override
+        public boolean isNull()
+        {
+            return delegate.isNull();
+        }
+
+        @Override
+        public void skip(int count)
+        {
+            delegate.skip(count);
+        }
+
+        public long produced()
+        {
+            return produced;
+        }
+    }
+
+    /**
+     * Maps i to (i * 7919) % 1000 - 500, or to null if i is a multiple of 17
+     */
+    private static Function scramble()
+    {
+        return (output, inputs, mask) -> {
+            I64Vector in = (I64Vector) inputs[0];
+            I64Vector out = (I64Vector) output;
+            for (int i = 0; i <= mask.maxPosition(); i++) {
+                out.nulls()[i] = in.values()[i] % 17 == 0;
+                out.values()[i] = (in.values()[i] * 7919) % 1000 - 500;
+            }
+        };
+    }
+
+    /**
+     * Inverse of {@link Vectors#hash(long)}
+     */
+    private static Function unhash()
+    {
+        return (output, inputs, mask) -> {
+            I64Vector in = (I64Vector) inputs[0];
+            I64Vector out = (I64Vector) output;
+            for (int i = 0; i <= mask.maxPosition(); i++) {
+                long value = in.values()[i];
+                value ^= value >>> 33;
+                value *= 0x9cb4b2f8129337dbL;
+                value ^= value >>> 33;
+                value *= 0x4f74430c22a54005L;
+                value ^= value >>> 33;
+                out.nulls()[i] = in.nulls()[i];
+                out.values()[i] = value;
+            }
+        };
+    }
+
+    private static Function nanIfNegative()
+    {
+        return (output, inputs, mask) -> {
+            I64Vector in = (I64Vector) inputs[0];
+            F64Vector out = (F64Vector) output;
+            for (int i = 0; i <= mask.maxPosition(); i++) {
+                out.nulls()[i] = in.nulls()[i];
+                out.values()[i] = in.values()[i] < 0 ? Double.NaN : in.values()[i];
+            }
+        };
+    }
+
     private static Function multiply(long value)
     {
         return (output, inputs, mask) -> {
@@ -668,6 +2453,18 @@ public class TestOperators
         };
     }
 
+    private static Function modulo(long value)
+    {
+        return (output, inputs, mask) -> {
+            I64Vector in = (I64Vector) inputs[0];
+            I64Vector out = (I64Vector) output;
+            for (int i = 0; i <= mask.maxPosition(); i++) {
+                out.nulls()[i] = in.nulls()[i];
+                out.values()[i] = in.values()[i] % value;
+            }
+        };
+    }
+
     private static Function divide(long value)
     {
         return (output, inputs, mask) -> {